@@ -6,26 +6,59 @@ import java.io.Writer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import org.apache.logging.log4j.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.jakewharton.fliptables.FlipTableConverters;
 
+import no.systema.altinn.entities.PrettyPrintAccess;
 import no.systema.altinn.entities.PrettyPrintAttachments;
+import no.systema.altinn.entities.PrettyPrintBufferPool;
+import no.systema.altinn.entities.PrettyPrintChecksum;
+import no.systema.altinn.entities.PrettyPrintHostGuard;
+import no.systema.altinn.entities.PrettyPrintLimiterSample;
 import no.systema.altinn.entities.PrettyPrintMessages;
+import no.systema.altinn.entities.PrettyPrintServiceMetadata;
+import no.systema.altinn.entities.PrettyPrintTiming;
+import no.systema.altinn.entities.RetryEntry;
+import no.systema.altinn.entities.RunTrace;
+import no.systema.altinn.integration.AccessCache;
 import no.systema.altinn.integration.ActionsServiceManager;
+import no.systema.altinn.integration.AdaptiveConcurrencyLimiter;
+import no.systema.altinn.integration.AltinnHostGuard;
+import no.systema.altinn.integration.AttachmentWriter;
+import no.systema.altinn.integration.BackfillCheckpoint;
+import no.systema.altinn.integration.BlobStore;
+import no.systema.altinn.integration.BridfUserCache;
+import no.systema.altinn.integration.ByteBufferPool;
+import no.systema.altinn.integration.ChecksumManifest;
+import no.systema.altinn.integration.ClusterCoordinator;
+import no.systema.altinn.integration.FileReadyLog;
+import no.systema.altinn.integration.FirmaltCache;
+import no.systema.altinn.integration.InboxMirror;
+import no.systema.altinn.integration.MessageIndex.IndexedMessage;
+import no.systema.altinn.integration.MessageQuery;
+import no.systema.altinn.integration.MetadataCache;
+import no.systema.altinn.integration.RetryJournal;
+import no.systema.altinn.integration.RunTraceRecorder;
 import no.systema.jservices.common.dao.FirmaltDao;
-import no.systema.jservices.common.dao.services.BridfDaoService;
 import no.systema.jservices.common.util.Log4jUtils;
 import no.systema.jservices.common.util.StringUtils;
 /**
@@ -52,6 +85,8 @@ public class DownloadController {
 	 * forceAll=true , removes date-filter on GET attachment.
 	 * gtDato=set, filter on CreatedDate in www.altin..no, overrides forceAll=true
 	 * 
+	 * Timing per orgnr and phase is appended, as table and JSON. See also showRunTraces.do
+	 * 
 	 * @param session
 	 * @param request, user 
 	 * @return status
@@ -67,18 +102,19 @@ public class DownloadController {
 			String user = request.getParameter("user");
 			Assert.notNull(user, "user must be delivered."); 
 
-			String userName = bridfDaoService.getUserName(user);
+			String userName = bridfUserCache.getUserName(user);
 			Assert.notNull(userName, "userName not found in Bridf."); 
 			
 			//Ignoring date-filter
 			String forceAll = request.getParameter("forceAll");
 			//Greater than date
 			String gtDato = request.getParameter("gtDato");
+			RunTrace trace = runTraceRecorder.begin("downloadDagsobjor.do");
 			if (StringUtils.hasValue(gtDato)) {
-				dagsoppgors = serviceManager.putDagsobjorAttachmentsToPath(Boolean.valueOf(forceAll),getFromCreatedDate(gtDato));
+				dagsoppgors = serviceManager.putDagsobjorAttachmentsToPath(Boolean.valueOf(forceAll),getFromCreatedDate(gtDato), trace);
 				sb.append("Dagsoppgjors-filer i meldinger fra Skattetaen er nedlasted. Med filter på gtDato (CreatedDate i altinn). \n \n");
 			} else {
-				dagsoppgors = serviceManager.putDagsobjorAttachmentsToPath(Boolean.valueOf(forceAll), null);
+				dagsoppgors = serviceManager.putDagsobjorAttachmentsToPath(Boolean.valueOf(forceAll), null, trace);
 				if (StringUtils.hasValue(forceAll) && Boolean.valueOf(forceAll).booleanValue()) {
 					sb.append("Dagsoppgjors-filer i meldinger fra Skattetaen er nedlasted. Uten filter! \n \n");
 				} else {
@@ -91,6 +127,11 @@ public class DownloadController {
 			
 			sb.append(FlipTableConverters.fromIterable(dagsoppgors, PrettyPrintAttachments.class));
 			
+			sb.append("\n \nTidsbruk, runId=" + trace.getRunId() + ":\n");
+			sb.append(FlipTableConverters.fromIterable(trace.getPrettyPrint(), PrettyPrintTiming.class));
+			sb.append("\n");
+			sb.append(runTraceRecorder.toJson(trace));
+			
 		} catch (Exception e) {
 			// write std.output error output
 			e.printStackTrace();
@@ -110,9 +151,13 @@ public class DownloadController {
 	 * Read all meldinger i virksomhet(er)s innboks(er)
 	 * 
 	 * 
-	 * @Example: http://gw.systema.no:8080/altinn-proxy/readInnboks.do?user=FREDRIK&forceDetails=false&ignoreStatus=false
+	 * Served from local mirror, see {@linkplain InboxMirror}.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/readInnboks.do?user=FREDRIK&forceDetails=false&ignoreStatus=false&refresh=false
 	 * forceDetails=true is adding more data on using 'self'-link, not recommeded to use.
 	 * ignoreStatus=true not including Status Ulest and Lest
+	 * refresh=true get messages changed since last refresh from Altinn.
+	 * live=true bypass mirror, get all from Altinn.
 	 * 
 	 * @param session
 	 * @param request, user 
@@ -128,14 +173,23 @@ public class DownloadController {
 			String user = request.getParameter("user");
 			Assert.notNull(user, "user must be delivered."); 
 
-			String userName = bridfDaoService.getUserName(user);
+			String userName = bridfUserCache.getUserName(user);
 			Assert.notNull(userName, "userName not found in Bridf."); 
 			
 			String forceDetails = request.getParameter("forceDetails");
 			
 			String ignoreStatus = request.getParameter("ignoreStatus");
 			
-			List<PrettyPrintMessages> messages = serviceManager.getMessages(Boolean.valueOf(forceDetails), Boolean.valueOf(ignoreStatus));
+			String refresh = request.getParameter("refresh");
+
+			String live = request.getParameter("live");
+			
+			List<PrettyPrintMessages> messages;
+			if (Boolean.valueOf(live)) {
+				messages = serviceManager.getMessages(Boolean.valueOf(forceDetails), Boolean.valueOf(ignoreStatus));
+			} else {
+				messages = serviceManager.getMirroredMessages(Boolean.valueOf(forceDetails), Boolean.valueOf(ignoreStatus), Boolean.valueOf(refresh));
+			}
 			
 			logger.info("serviceManager.getMessages()");
 			logger.info(FlipTableConverters.fromIterable(messages, PrettyPrintMessages.class));
@@ -177,7 +231,7 @@ public class DownloadController {
 			String user = request.getParameter("user");
 			Assert.notNull(user, "user must be delivered."); 
 
-			String userName = bridfDaoService.getUserName(user);
+			String userName = bridfUserCache.getUserName(user);
 			Assert.notNull(userName, "userName not found in Bridf."); 
 
 			String fileName = request.getParameter("filename");
@@ -201,6 +255,627 @@ public class DownloadController {
 
 	}
 	
+	/**
+	 * Show timing of the last download runs, newest first.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showRunTraces.do?user=FREDRIK&runId=1a2b3c4d&format=json
+	 * runId=set, show only this run
+	 * format=json, default is table
+	 * 
+	 * @param session
+	 * @param request, user 
+	 * @return status
+	 */	
+	@RequestMapping(value="showRunTraces.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showRunTraces(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showRunTraces.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String runId = request.getParameter("runId");
+			String format = request.getParameter("format");
+
+			List<RunTrace> traces = runTraceRecorder.getTraces();
+			if (StringUtils.hasValue(runId)) {
+				RunTrace trace = runTraceRecorder.getTrace(runId);
+				Assert.notNull(trace, "runId not found, could be evicted."); 
+				traces = Collections.singletonList(trace);
+			}
+
+			if ("json".equals(format)) {
+				sb.append(runTraceRecorder.toJson(traces));
+			} else {
+				traces.forEach(trace -> {
+					sb.append("runId=" + trace.getRunId() + ", trigger=" + trace.getTrigger() + ", started=" + trace.getStarted() + ", finished=" + trace.getFinished() + "\n");
+					sb.append(FlipTableConverters.fromIterable(trace.getPrettyPrint(), PrettyPrintTiming.class));
+					sb.append("\n \n");
+				});
+			}
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Show circuit breaker and rate limiter state per Altinn host, and the adaptive concurrency limit with its latest samples.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showAltinnHosts.do?user=FREDRIK
+	 * 
+	 * @param session
+	 * @param request, user 
+	 * @return status
+	 */	
+	@RequestMapping(value="showAltinnHosts.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showAltinnHosts(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showAltinnHosts.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			sb.append("Altinn hosts: \n \n");
+			sb.append(FlipTableConverters.fromIterable(hostGuard.getStatus(), PrettyPrintHostGuard.class));
+
+			sb.append("\n \nConcurrency limit=" + (int) concurrencyLimiter.getLimit() + ", inFlight=" + concurrencyLimiter.getInFlight() + ", baselineMs=" + concurrencyLimiter.getBaselines() + "\n \n");
+			sb.append(FlipTableConverters.fromIterable(concurrencyLimiter.getSamples(), PrettyPrintLimiterSample.class));
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Query messages in local mirror, see {@linkplain InboxMirror}. No calls to Altinn, use readInnboks.do?refresh=true to refresh.
+	 * 
+	 * Filter as OData $filter in {@linkplain ActionsUriBuilder}, see {@linkplain MessageQuery}.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/queryMessages.do?user=FREDRIK&filter=ServiceCode eq '5012' and Status eq 'Ulest' and CreatedDate ge datetime'2018-01-01'&top=100
+	 * 
+	 * @param session
+	 * @param request, user, filter, top 
+	 * @return json
+	 */	
+	@RequestMapping(value="queryMessages.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String queryMessages(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("queryMessages.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String filter = request.getParameter("filter");
+			String top = request.getParameter("top");
+			
+			long start = System.nanoTime();
+			MessageQuery query = MessageQuery.parse(filter);
+			List<IndexedMessage> messages = inboxMirror.find(query, top != null ? Integer.parseInt(top) : 0);
+			
+			Map<String, Object> result = new LinkedHashMap<String, Object>();
+			result.put("filter", query.getConditions().toString());
+			result.put("mirrored", inboxMirror.size());
+			result.put("count", messages.size());
+			result.put("micros", (System.nanoTime() - start) / 1000);
+			result.put("messages", messages);
+			
+			sb.append(runTraceRecorder.toJson(result));
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Show ServiceCode/ServiceEdition in use, validated against cached Altinn metadata.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showServiceMetadata.do?user=FREDRIK&refresh=true
+	 * refresh=true reload metadata from Altinn before showing.
+	 * 
+	 * @param session
+	 * @param request, user, refresh 
+	 * @return status
+	 */	
+	@RequestMapping(value="showServiceMetadata.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showServiceMetadata(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showServiceMetadata.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String refresh = request.getParameter("refresh");
+			if (Boolean.valueOf(refresh)) {
+				serviceManager.refreshMetadata();
+			}
+
+			sb.append("Tjenester i bruk mot Altinn metadata: \n \n");
+			sb.append(FlipTableConverters.fromIterable(metadataCache.getStatus(), PrettyPrintServiceMetadata.class));
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Show cached profile and roles per orgnr. Orgnr with DENIED is skipped in download runs.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showAccess.do?user=FREDRIK&refresh=true
+	 * refresh=true reload roles from Altinn before showing.
+	 * 
+	 * @param session
+	 * @param request, user, refresh 
+	 * @return status
+	 */	
+	@RequestMapping(value="showAccess.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showAccess(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showAccess.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String refresh = request.getParameter("refresh");
+			if (Boolean.valueOf(refresh)) {
+				serviceManager.refreshAccess();
+			}
+
+			sb.append("Tilgang i Altinn pr. orgnr: \n \n");
+			sb.append(FlipTableConverters.fromIterable(accessCache.getStatus(), PrettyPrintAccess.class));
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Show hit/miss stats for Bridf user lookups, optionally invalidate.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showUserCache.do?user=FREDRIK&invalidate=OSCAR
+	 * invalidate=all clear all.
+	 * 
+	 * @param session
+	 * @param request, user, invalidate 
+	 * @return status
+	 */	
+	@RequestMapping(value="showUserCache.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showUserCache(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showUserCache.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String invalidate = request.getParameter("invalidate");
+			if (invalidate != null) {
+				bridfUserCache.invalidate("all".equals(invalidate) ? null : invalidate);
+				sb.append("Invalidated: " + invalidate + " \n");
+			}
+
+			sb.append(bridfUserCache.getStats());
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Show live nodes, and owning node per orgnr, when altinn.cluster.enabled=true.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showCluster.do?user=FREDRIK&orgnr=810514442
+	 * 
+	 * @param session
+	 * @param request, user, orgnr 
+	 * @return status
+	 */	
+	@RequestMapping(value="showCluster.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showCluster(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showCluster.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			if (!clusterCoordinator.isEnabled()) {
+				sb.append("Cluster coordination disabled, altinn.cluster.enabled=false");
+			} else {
+				sb.append("Node: " + clusterCoordinator.getNodeId() + " \n");
+				sb.append("Live nodes: " + clusterCoordinator.getLiveNodes() + " \n");
+				String orgnr = request.getParameter("orgnr");
+				if (orgnr != null) {
+					sb.append("Orgnr " + orgnr + " owned by: " + clusterCoordinator.owner(orgnr) + " \n");
+				}
+			}
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Backfill of dagsoppgjor, split in windows on CreatedDate and downloaded concurrently. Repeat to continue an interrupted backfill.
+	 * 
+	 * Files are downloaded into path define in {@linkplain FirmaltDao}.aipath
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/backfillDagsobjor.do?user=FREDRIK&fraDato=20180101&tilDato=20180401&windowDays=7
+	 * fraDato inclusive, tilDato exclusive, default today.
+	 * windowDays, default altinn.backfill.window.days
+	 * restart=true, forget progress of former backfill.
+	 * 
+	 * @param session
+	 * @param request, user, fraDato, tilDato, windowDays, restart 
+	 * @return status
+	 */	
+	@RequestMapping(value="backfillDagsobjor.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String backfillDagsobjor(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("backfillDagsobjor.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String fraDato = request.getParameter("fraDato");
+			Assert.notNull(fraDato, "fraDato must be delivered."); 
+			String tilDato = request.getParameter("tilDato");
+			String windowDays = request.getParameter("windowDays");
+			String restart = request.getParameter("restart");
+
+			if (Boolean.valueOf(restart)) {
+				backfillCheckpoint.reset();
+			}
+			LocalDate from = getFromCreatedDate(fraDato);
+			LocalDate to = StringUtils.hasValue(tilDato) ? getFromCreatedDate(tilDato) : LocalDate.now().plusDays(1);
+			RunTrace trace = runTraceRecorder.begin("backfillDagsobjor.do");
+			List<PrettyPrintAttachments> dagsoppgors = serviceManager.backfillDagsobjor(from, to, StringUtils.hasValue(windowDays) ? Integer.parseInt(windowDays) : 0, trace);
+
+			sb.append("Dagsoppgjors-filer i meldinger fra Skattetaen er nedlasted, fra " + from + " til " + to + ". \n \n");
+			sb.append(FlipTableConverters.fromIterable(dagsoppgors, PrettyPrintAttachments.class));
+			sb.append("\n \nTidsbruk, runId=" + trace.getRunId() + ":\n");
+			sb.append(FlipTableConverters.fromIterable(trace.getPrettyPrint(), PrettyPrintTiming.class));
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Show usage and wait time of direct buffers per size class, and files waiting in attachment writer.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showBufferPool.do?user=FREDRIK
+	 * 
+	 * @param session
+	 * @param request, user 
+	 * @return status
+	 */	
+	@RequestMapping(value="showBufferPool.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showBufferPool(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showBufferPool.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			sb.append("Direct buffers, allocated bytes=" + byteBufferPool.getAllocatedBytes() + " \n \n");
+			sb.append(FlipTableConverters.fromIterable(byteBufferPool.getStatus(), PrettyPrintBufferPool.class));
+			sb.append("\n Attachment writer, queued=" + attachmentWriter.getQueued() + ", waiting for fsync=" + attachmentWriter.getUnsynced() + " \n");
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Verify files in FIRMALT.aipath against SHA-256 recorded when downloaded. Files are re-read memory-mapped, in parallel.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/verifyFiles.do?user=FREDRIK&orgnr=810514442
+	 * 
+	 * @param session
+	 * @param request, user, orgnr optional, default all 
+	 * @return status per file
+	 */	
+	@RequestMapping(value="verifyFiles.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String verifyFiles(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("verifyFiles.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String orgnr = request.getParameter("orgnr");
+			Set<String> dirs = new LinkedHashSet<String>();
+			if (orgnr != null) {
+				FirmaltDao firmalt = firmaltCache.get(orgnr);
+				Assert.notNull(firmalt, "orgnr not found in FIRMALT.");
+				dirs.add(firmalt.getAipath());
+			} else {
+				firmaltCache.getSane().forEach(firmalt -> dirs.add(firmalt.getAipath()));
+			}
+			dirs.removeIf(dir -> !attachmentWriter.isLocal(dir));
+
+			long start = System.currentTimeMillis();
+			List<PrettyPrintChecksum> result = checksumManifest.verify(dirs);
+			long failed = result.stream().filter(row -> !ChecksumManifest.OK.equals(row.getStatus())).count();
+
+			sb.append("Verified " + result.size() + " files in " + dirs.size() + " directories, " + failed + " not OK, in " + (System.currentTimeMillis() - start) + " ms. \n \n");
+			sb.append(FlipTableConverters.fromIterable(result, PrettyPrintChecksum.class));
+			sb.append("\n " + blobStore.getStatus() + " \n");
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * Remove blobs no longer linked from FIRMALT.aipath, when altinn.cas.mode=link.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/pruneBlobs.do?user=FREDRIK
+	 * 
+	 * @param session
+	 * @param request, user 
+	 * @return status
+	 */	
+	@RequestMapping(value="pruneBlobs.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String pruneBlobs(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("pruneBlobs.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			Set<String> dirs = new LinkedHashSet<String>();
+			firmaltCache.getSane().forEach(firmalt -> dirs.add(firmalt.getAipath()));
+			dirs.removeIf(dir -> !attachmentWriter.isLocal(dir));
+			for (String dir : dirs) {
+				sb.append(dir + ", blobs removed=" + blobStore.prune(dir) + " \n");
+			}
+			sb.append("\n " + blobStore.getStatus() + " \n");
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
+	/**
+	 * File-ready events, as JSON array, for files committed after seq. Long-poll: without new events the request waits for one, 
+	 * up to timeoutMs, then answers an empty array. Continue with after=seq of the last event received.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/fileReady.do?user=FREDRIK&after=0&orgnr=810514442&timeoutMs=25000
+	 * 
+	 * @param session
+	 * @param request, user, after, orgnr optional, timeoutMs optional, max optional 
+	 * @return events
+	 */	
+	@RequestMapping(value="fileReady.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public DeferredResult<String> fileReady(HttpSession session, HttpServletRequest request) {
+		logger.info("fileReady.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			String after = request.getParameter("after");
+			Assert.notNull(after, "after must be delivered, 0 for all."); 
+			String orgnr = request.getParameter("orgnr");
+			String timeoutMs = request.getParameter("timeoutMs");
+			String max = request.getParameter("max");
+
+			long timeout = Math.min(StringUtils.hasValue(timeoutMs) ? Long.parseLong(timeoutMs) : eventsPollMaxMs, eventsPollMaxMs);
+			DeferredResult<String> result = new DeferredResult<String>(timeout, "[]");
+			fileReadyLog.poll(Long.parseLong(after), StringUtils.hasValue(orgnr) ? orgnr : null, StringUtils.hasValue(max) ? Integer.parseInt(max) : 1000, result);
+
+			session.invalidate();
+			return result;
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			DeferredResult<String> error = new DeferredResult<String>();
+			error.setResult("ERROR [JsonResponseOutputterController]" + writer.toString());
+			return error;
+		}
+
+	}
+
+	/**
+	 * Show failed message details and attachments waiting for retry.
+	 * 
+	 * @Example: http://gw.systema.no:8080/altinn-proxy/showRetryJournal.do?user=FREDRIK
+	 * 
+	 * @param session
+	 * @param request, user 
+	 * @return status
+	 */	
+	@RequestMapping(value="showRetryJournal.do", method={RequestMethod.GET, RequestMethod.POST})
+	@ResponseBody
+	public String showRetryJournal(HttpSession session, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+
+		logger.info("showRetryJournal.do...");
+		try {
+			String user = request.getParameter("user");
+			Assert.notNull(user, "user must be delivered."); 
+
+			String userName = bridfUserCache.getUserName(user);
+			Assert.notNull(userName, "userName not found in Bridf."); 
+
+			sb.append("Venter på ny nedlasting: \n \n");
+			sb.append(FlipTableConverters.fromIterable(retryJournal.getEntries(), RetryEntry.class));
+
+		} catch (Exception e) {
+			// write std.output error output
+			e.printStackTrace();
+			Writer writer = new StringWriter();
+			PrintWriter printWriter = new PrintWriter(writer);
+			e.printStackTrace(printWriter);
+			return "ERROR [JsonResponseOutputterController]" + writer.toString();
+		}
+
+		session.invalidate();
+		return sb.toString();
+
+	}
+
 	/**
 	 * 
 	 * @Example: http://gw.systema.no:8080/altinn-proxy/initDownloadDagsoppgjor.do?user=SYSTEMA&orgnr=810514442
@@ -219,7 +894,7 @@ public class DownloadController {
 		logger.info("initDownloadDagsoppgjor.do...");
 		try {
 			String user = request.getParameter("user");
-			String userName = bridfDaoService.getUserName(user);
+			String userName = bridfUserCache.getUserName(user);
 			if (userName == null) {
 				logger.error("user is null, must be delivered");
 				throw new RuntimeException("ERROR: parameter, user, must be delivered!");
@@ -270,9 +945,57 @@ public class DownloadController {
 	}	
 
 	@Autowired
-	private BridfDaoService bridfDaoService;
+	private BridfUserCache bridfUserCache;
 	
 	@Autowired
 	private ActionsServiceManager serviceManager;
+
+	@Autowired
+	private RunTraceRecorder runTraceRecorder;
+
+	@Autowired
+	private AltinnHostGuard hostGuard;
+
+	@Autowired
+	private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+	@Autowired
+	private RetryJournal retryJournal;
+
+	@Autowired
+	private InboxMirror inboxMirror;
+
+	@Autowired
+	private MetadataCache metadataCache;
+
+	@Autowired
+	private AccessCache accessCache;
+
+	@Autowired
+	private ClusterCoordinator clusterCoordinator;
+
+	@Autowired
+	private BackfillCheckpoint backfillCheckpoint;
+
+	@Autowired
+	private ByteBufferPool byteBufferPool;
+
+	@Autowired
+	private AttachmentWriter attachmentWriter;
+
+	@Autowired
+	private ChecksumManifest checksumManifest;
+
+	@Autowired
+	private FirmaltCache firmaltCache;
+
+	@Autowired
+	private BlobStore blobStore;
+
+	@Autowired
+	private FileReadyLog fileReadyLog;
+
+	@Value("${altinn.events.poll.max.ms}")
+	long eventsPollMaxMs;
 	
 }
@@ -0,0 +1,53 @@
+package no.systema.altinn.entities;
+
+/**
+ * Timing of one attachment within a {@linkplain MessageTrace}. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class AttachmentTrace {
+	private String fileName;
+	private long downloadMs;
+	private long bytes;
+	private long writeMs;
+
+	public AttachmentTrace(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public long getDownloadMs() {
+		return downloadMs;
+	}
+
+	public void setDownloadMs(long downloadMs) {
+		this.downloadMs = downloadMs;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public long getWriteMs() {
+		return writeMs;
+	}
+
+	public void setWriteMs(long writeMs) {
+		this.writeMs = writeMs;
+	}
+
+}
@@ -0,0 +1,88 @@
+package no.systema.altinn.entities;
+
+/**
+ * A committed attachment, visible under its name in FIRMALT.aipath. Appended to the file-ready log, see fileReady.do. <br>
+ * 
+ * seq increases by one per event, a consumer continues after the last seq it has seen. <br>
+ * path is the file, the S3 object, or for zip:/dir/ the sealed ZIP archive holding fileName as entry.
+ * With altinn.cas.mode=manifest it is the blob holding the content of fileName, see BlobStore.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class FileReadyEvent {
+	private long seq;
+	private String time;
+	private String orgnr;
+	private String messageId;
+	private String path;
+	private String fileName;
+	private long bytes;
+	private String sha256;
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public void setSeq(long seq) {
+		this.seq = seq;
+	}
+
+	public String getTime() {
+		return time;
+	}
+
+	public void setTime(String time) {
+		this.time = time;
+	}
+
+	public String getOrgnr() {
+		return orgnr;
+	}
+
+	public void setOrgnr(String orgnr) {
+		this.orgnr = orgnr;
+	}
+
+	public String getMessageId() {
+		return messageId;
+	}
+
+	public void setMessageId(String messageId) {
+		this.messageId = messageId;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public String getSha256() {
+		return sha256;
+	}
+
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+
+}
@@ -0,0 +1,49 @@
+package no.systema.altinn.entities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timing of one message within an {@linkplain OrgTrace}, detail-GET and its attachments. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class MessageTrace {
+	private String messageId;
+	private long detailMs;
+	private List<AttachmentTrace> attachments = new CopyOnWriteArrayList<AttachmentTrace>();
+
+	public MessageTrace(String messageId) {
+		this.messageId = messageId;
+	}
+
+	public AttachmentTrace attachment(String fileName) {
+		AttachmentTrace attachment = new AttachmentTrace(fileName);
+		attachments.add(attachment);
+		return attachment;
+	}
+
+	public String getMessageId() {
+		return messageId;
+	}
+
+	public void setMessageId(String messageId) {
+		this.messageId = messageId;
+	}
+
+	public long getDetailMs() {
+		return detailMs;
+	}
+
+	public void setDetailMs(long detailMs) {
+		this.detailMs = detailMs;
+	}
+
+	public List<AttachmentTrace> getAttachments() {
+		return attachments;
+	}
+
+}
@@ -0,0 +1,91 @@
+package no.systema.altinn.entities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per phase timing of one orgnr within a {@linkplain RunTrace}. <br>
+ * 
+ * Phases: auth, listing, detail (per message), download and write (per attachment) and db-update.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class OrgTrace {
+	private String orgnr;
+	private long authMs;
+	private int authCount;
+	private long listingMs;
+	private int listingCount;
+	private long dbUpdateMs;
+	private int dbUpdateCount;
+	private String error;
+	private List<MessageTrace> messages = new CopyOnWriteArrayList<MessageTrace>();
+
+	public OrgTrace(String orgnr) {
+		this.orgnr = orgnr;
+	}
+
+	public MessageTrace message(String messageId) {
+		MessageTrace message = new MessageTrace(messageId);
+		messages.add(message);
+		return message;
+	}
+
+	public synchronized void addAuth(long ms) {
+		authMs += ms;
+		authCount++;
+	}
+
+	public synchronized void addListing(long ms) {
+		listingMs += ms;
+		listingCount++;
+	}
+
+	public synchronized void addDbUpdate(long ms) {
+		dbUpdateMs += ms;
+		dbUpdateCount++;
+	}
+
+	public String getOrgnr() {
+		return orgnr;
+	}
+
+	public long getAuthMs() {
+		return authMs;
+	}
+
+	public int getAuthCount() {
+		return authCount;
+	}
+
+	public long getListingMs() {
+		return listingMs;
+	}
+
+	public int getListingCount() {
+		return listingCount;
+	}
+
+	public long getDbUpdateMs() {
+		return dbUpdateMs;
+	}
+
+	public int getDbUpdateCount() {
+		return dbUpdateCount;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public List<MessageTrace> getMessages() {
+		return messages;
+	}
+
+}
@@ -0,0 +1,66 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing cached access per orgnr. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintAccess {
+	private String orgnr;
+	private String tilgang;
+	private String roller;
+	private String bruker;
+	private String hentet;
+
+	public PrettyPrintAccess(String orgnr, String tilgang, String roller, String bruker, String hentet) {
+		this.orgnr = orgnr;
+		this.tilgang = tilgang;
+		this.roller = roller;
+		this.bruker = bruker;
+		this.hentet = hentet;
+	}
+
+	public String getOrgnr() {
+		return orgnr;
+	}
+
+	public void setOrgnr(String orgnr) {
+		this.orgnr = orgnr;
+	}
+
+	public String getTilgang() {
+		return tilgang;
+	}
+
+	public void setTilgang(String tilgang) {
+		this.tilgang = tilgang;
+	}
+
+	public String getRoller() {
+		return roller;
+	}
+
+	public void setRoller(String roller) {
+		this.roller = roller;
+	}
+
+	public String getBruker() {
+		return bruker;
+	}
+
+	public void setBruker(String bruker) {
+		this.bruker = bruker;
+	}
+
+	public String getHentet() {
+		return hentet;
+	}
+
+	public void setHentet(String hentet) {
+		this.hentet = hentet;
+	}
+
+}
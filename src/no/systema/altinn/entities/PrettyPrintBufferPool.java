@@ -0,0 +1,106 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing usage of direct buffers per size class. <br>
+ *
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintBufferPool {
+	private int storrelse;
+	private int allokert;
+	private int iBruk;
+	private int ledig;
+	private long hentet;
+	private long ventet;
+	private long venteMs;
+	private long maksVenteMs;
+	private long heap;
+
+	public PrettyPrintBufferPool(int storrelse, int allokert, int iBruk, int ledig, long hentet, long ventet, long venteMs, long maksVenteMs, long heap) {
+		this.storrelse = storrelse;
+		this.allokert = allokert;
+		this.iBruk = iBruk;
+		this.ledig = ledig;
+		this.hentet = hentet;
+		this.ventet = ventet;
+		this.venteMs = venteMs;
+		this.maksVenteMs = maksVenteMs;
+		this.heap = heap;
+	}
+
+	public int getStorrelse() {
+		return storrelse;
+	}
+
+	public void setStorrelse(int storrelse) {
+		this.storrelse = storrelse;
+	}
+
+	public int getAllokert() {
+		return allokert;
+	}
+
+	public void setAllokert(int allokert) {
+		this.allokert = allokert;
+	}
+
+	public int getIBruk() {
+		return iBruk;
+	}
+
+	public void setIBruk(int iBruk) {
+		this.iBruk = iBruk;
+	}
+
+	public int getLedig() {
+		return ledig;
+	}
+
+	public void setLedig(int ledig) {
+		this.ledig = ledig;
+	}
+
+	public long getHentet() {
+		return hentet;
+	}
+
+	public void setHentet(long hentet) {
+		this.hentet = hentet;
+	}
+
+	public long getVentet() {
+		return ventet;
+	}
+
+	public void setVentet(long ventet) {
+		this.ventet = ventet;
+	}
+
+	public long getVenteMs() {
+		return venteMs;
+	}
+
+	public void setVenteMs(long venteMs) {
+		this.venteMs = venteMs;
+	}
+
+	public long getMaksVenteMs() {
+		return maksVenteMs;
+	}
+
+	public void setMaksVenteMs(long maksVenteMs) {
+		this.maksVenteMs = maksVenteMs;
+	}
+
+	public long getHeap() {
+		return heap;
+	}
+
+	public void setHeap(long heap) {
+		this.heap = heap;
+	}
+
+}
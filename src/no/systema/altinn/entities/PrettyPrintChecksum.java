@@ -0,0 +1,66 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing verification of a downloaded file against its recorded SHA-256. <br>
+ *
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintChecksum {
+	private String katalog;
+	private String fil;
+	private long storrelse;
+	private String status;
+	private long ms;
+
+	public PrettyPrintChecksum(String katalog, String fil, long storrelse, String status, long ms) {
+		this.katalog = katalog;
+		this.fil = fil;
+		this.storrelse = storrelse;
+		this.status = status;
+		this.ms = ms;
+	}
+
+	public String getKatalog() {
+		return katalog;
+	}
+
+	public void setKatalog(String katalog) {
+		this.katalog = katalog;
+	}
+
+	public String getFil() {
+		return fil;
+	}
+
+	public void setFil(String fil) {
+		this.fil = fil;
+	}
+
+	public long getStorrelse() {
+		return storrelse;
+	}
+
+	public void setStorrelse(long storrelse) {
+		this.storrelse = storrelse;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public long getMs() {
+		return ms;
+	}
+
+	public void setMs(long ms) {
+		this.ms = ms;
+	}
+
+}
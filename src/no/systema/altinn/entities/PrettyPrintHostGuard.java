@@ -0,0 +1,66 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing circuit breaker and rate limiter per Altinn host. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintHostGuard {
+	private String host;
+	private String circuit;
+	private int kall;
+	private int feilProsent;
+	private int tokens;
+
+	public PrettyPrintHostGuard(String host, String circuit, int kall, int feilProsent, int tokens) {
+		this.host = host;
+		this.circuit = circuit;
+		this.kall = kall;
+		this.feilProsent = feilProsent;
+		this.tokens = tokens;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public void setHost(String host) {
+		this.host = host;
+	}
+
+	public String getCircuit() {
+		return circuit;
+	}
+
+	public void setCircuit(String circuit) {
+		this.circuit = circuit;
+	}
+
+	public int getKall() {
+		return kall;
+	}
+
+	public void setKall(int kall) {
+		this.kall = kall;
+	}
+
+	public int getFeilProsent() {
+		return feilProsent;
+	}
+
+	public void setFeilProsent(int feilProsent) {
+		this.feilProsent = feilProsent;
+	}
+
+	public int getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(int tokens) {
+		this.tokens = tokens;
+	}
+
+}
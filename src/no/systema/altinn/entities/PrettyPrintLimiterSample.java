@@ -0,0 +1,76 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing samples behind the adaptive concurrency limit. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintLimiterSample {
+	private String tid;
+	private String kall;
+	private long rttMs;
+	private int inFlight;
+	private int limit;
+	private String utfall;
+
+	public PrettyPrintLimiterSample(String tid, String kall, long rttMs, int inFlight, int limit, String utfall) {
+		this.tid = tid;
+		this.kall = kall;
+		this.rttMs = rttMs;
+		this.inFlight = inFlight;
+		this.limit = limit;
+		this.utfall = utfall;
+	}
+
+	public String getTid() {
+		return tid;
+	}
+
+	public void setTid(String tid) {
+		this.tid = tid;
+	}
+
+	public String getKall() {
+		return kall;
+	}
+
+	public void setKall(String kall) {
+		this.kall = kall;
+	}
+
+	public long getRttMs() {
+		return rttMs;
+	}
+
+	public void setRttMs(long rttMs) {
+		this.rttMs = rttMs;
+	}
+
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	public void setInFlight(int inFlight) {
+		this.inFlight = inFlight;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	public String getUtfall() {
+		return utfall;
+	}
+
+	public void setUtfall(String utfall) {
+		this.utfall = utfall;
+	}
+
+}
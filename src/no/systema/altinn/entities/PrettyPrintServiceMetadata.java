@@ -0,0 +1,86 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing {@linkplain ServiceCode}/{@linkplain ServiceEdition} against Altinn metadata. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintServiceMetadata {
+	private String tjeneste;
+	private String kode;
+	private int utgave;
+	private String gyldigFra;
+	private String gyldigTil;
+	private String status;
+	private String gjeldendeUtgave;
+
+	public PrettyPrintServiceMetadata(String tjeneste, String kode, int utgave, String gyldigFra, String gyldigTil, String status, String gjeldendeUtgave) {
+		this.tjeneste = tjeneste;
+		this.kode = kode;
+		this.utgave = utgave;
+		this.gyldigFra = gyldigFra;
+		this.gyldigTil = gyldigTil;
+		this.status = status;
+		this.gjeldendeUtgave = gjeldendeUtgave;
+	}
+
+	public String getTjeneste() {
+		return tjeneste;
+	}
+
+	public void setTjeneste(String tjeneste) {
+		this.tjeneste = tjeneste;
+	}
+
+	public String getKode() {
+		return kode;
+	}
+
+	public void setKode(String kode) {
+		this.kode = kode;
+	}
+
+	public int getUtgave() {
+		return utgave;
+	}
+
+	public void setUtgave(int utgave) {
+		this.utgave = utgave;
+	}
+
+	public String getGyldigFra() {
+		return gyldigFra;
+	}
+
+	public void setGyldigFra(String gyldigFra) {
+		this.gyldigFra = gyldigFra;
+	}
+
+	public String getGyldigTil() {
+		return gyldigTil;
+	}
+
+	public void setGyldigTil(String gyldigTil) {
+		this.gyldigTil = gyldigTil;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getGjeldendeUtgave() {
+		return gjeldendeUtgave;
+	}
+
+	public void setGjeldendeUtgave(String gjeldendeUtgave) {
+		this.gjeldendeUtgave = gjeldendeUtgave;
+	}
+
+}
@@ -0,0 +1,66 @@
+package no.systema.altinn.entities;
+
+/**
+ * This class is convenience object for pretty printing timing per orgnr and phase in a {@linkplain RunTrace}. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class PrettyPrintTiming {
+	private String orgnr;
+	private String fase;
+	private int antall;
+	private long millis;
+	private long bytes;
+
+	public PrettyPrintTiming(String orgnr, String fase, int antall, long millis, long bytes) {
+		this.orgnr = orgnr;
+		this.fase = fase;
+		this.antall = antall;
+		this.millis = millis;
+		this.bytes = bytes;
+	}
+
+	public String getOrgnr() {
+		return orgnr;
+	}
+
+	public void setOrgnr(String orgnr) {
+		this.orgnr = orgnr;
+	}
+
+	public String getFase() {
+		return fase;
+	}
+
+	public void setFase(String fase) {
+		this.fase = fase;
+	}
+
+	public int getAntall() {
+		return antall;
+	}
+
+	public void setAntall(int antall) {
+		this.antall = antall;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	public void setMillis(long millis) {
+		this.millis = millis;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+}
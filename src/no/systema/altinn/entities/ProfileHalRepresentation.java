@@ -0,0 +1,57 @@
+package no.systema.altinn.entities;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import de.otto.edison.hal.HalRepresentation;
+
+/**
+ * The value object for profile of authenticated user
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class ProfileHalRepresentation extends HalRepresentation {
+
+	@JsonProperty("UserId")
+	private int userId;
+	@JsonProperty("UserType")
+	private String userType;
+	@JsonProperty("UserName")
+	private String userName;
+	@JsonProperty("Email")
+	private String email;
+
+	public int getUserId() {
+		return userId;
+	}
+
+	public void setUserId(int userId) {
+		this.userId = userId;
+	}
+
+	public String getUserType() {
+		return userType;
+	}
+
+	public void setUserType(String userType) {
+		this.userType = userType;
+	}
+
+	public String getUserName() {
+		return userName;
+	}
+
+	public void setUserName(String userName) {
+		this.userName = userName;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public void setEmail(String email) {
+		this.email = email;
+	}
+
+}
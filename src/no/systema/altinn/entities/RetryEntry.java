@@ -0,0 +1,126 @@
+package no.systema.altinn.entities;
+
+/**
+ * A failed unit of work, persisted in the retry journal. <br>
+ * 
+ * type MESSAGE: uri is the message self-link, all attachments are fetched on retry. <br>
+ * type ATTACHMENT: uri is the attachment-link, written to writeFile on retry.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class RetryEntry {
+	public static final String MESSAGE = "MESSAGE";
+	public static final String ATTACHMENT = "ATTACHMENT";
+
+	private String id;
+	private String orgnr;
+	private String type;
+	private String messageId;
+	private String uri;
+	private String writeFile;
+	private String createdDate;
+	private String serviceOwner;
+	private String status;
+	private int attempts;
+	private long nextAttempt;
+	private String lastError;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getOrgnr() {
+		return orgnr;
+	}
+
+	public void setOrgnr(String orgnr) {
+		this.orgnr = orgnr;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getMessageId() {
+		return messageId;
+	}
+
+	public void setMessageId(String messageId) {
+		this.messageId = messageId;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public void setUri(String uri) {
+		this.uri = uri;
+	}
+
+	public String getWriteFile() {
+		return writeFile;
+	}
+
+	public void setWriteFile(String writeFile) {
+		this.writeFile = writeFile;
+	}
+
+	public String getCreatedDate() {
+		return createdDate;
+	}
+
+	public void setCreatedDate(String createdDate) {
+		this.createdDate = createdDate;
+	}
+
+	public String getServiceOwner() {
+		return serviceOwner;
+	}
+
+	public void setServiceOwner(String serviceOwner) {
+		this.serviceOwner = serviceOwner;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public long getNextAttempt() {
+		return nextAttempt;
+	}
+
+	public void setNextAttempt(long nextAttempt) {
+		this.nextAttempt = nextAttempt;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+}
@@ -0,0 +1,67 @@
+package no.systema.altinn.entities;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import de.otto.edison.hal.HalRepresentation;
+
+/**
+ * The value object for authorization roles
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class RoleHalRepresentation extends HalRepresentation {
+
+	@JsonProperty("RoleType")
+	private String roleType;
+	@JsonProperty("RoleDefinitionId")
+	private int roleDefinitionId;
+	@JsonProperty("RoleName")
+	private String roleName;
+	@JsonProperty("RoleDescription")
+	private String roleDescription;
+	@JsonProperty("RoleDefinitionCode")
+	private String roleDefinitionCode;
+
+	public String getRoleType() {
+		return roleType;
+	}
+
+	public void setRoleType(String roleType) {
+		this.roleType = roleType;
+	}
+
+	public int getRoleDefinitionId() {
+		return roleDefinitionId;
+	}
+
+	public void setRoleDefinitionId(int roleDefinitionId) {
+		this.roleDefinitionId = roleDefinitionId;
+	}
+
+	public String getRoleName() {
+		return roleName;
+	}
+
+	public void setRoleName(String roleName) {
+		this.roleName = roleName;
+	}
+
+	public String getRoleDescription() {
+		return roleDescription;
+	}
+
+	public void setRoleDescription(String roleDescription) {
+		this.roleDescription = roleDescription;
+	}
+
+	public String getRoleDefinitionCode() {
+		return roleDefinitionCode;
+	}
+
+	public void setRoleDefinitionCode(String roleDefinitionCode) {
+		this.roleDefinitionCode = roleDefinitionCode;
+	}
+
+}
@@ -0,0 +1,102 @@
+package no.systema.altinn.entities;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Structured timing trace of one download run, one {@linkplain OrgTrace} per orgnr. <br>
+ * 
+ * Serialized as JSON, or flattened into {@linkplain PrettyPrintTiming} for FlipTable.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class RunTrace {
+	private String runId = UUID.randomUUID().toString().substring(0, 8);
+	private String trigger;
+	private String started = LocalDateTime.now().toString();
+	private String finished;
+	private long totalMs;
+	@JsonIgnore
+	private long startNanos = System.nanoTime();
+	private List<OrgTrace> orgs = new CopyOnWriteArrayList<OrgTrace>();
+
+	public RunTrace(String trigger) {
+		this.trigger = trigger;
+	}
+
+	public OrgTrace org(String orgnr) {
+		OrgTrace org = new OrgTrace(orgnr);
+		orgs.add(org);
+		return org;
+	}
+
+	public void finish() {
+		totalMs = (System.nanoTime() - startNanos) / 1_000_000;
+		finished = LocalDateTime.now().toString();
+	}
+
+	/**
+	 * Flatten to one row per orgnr and phase, sorted as the phases are executed.
+	 * 
+	 * @return List<PrettyPrintTiming>
+	 */
+	@JsonIgnore
+	public List<PrettyPrintTiming> getPrettyPrint() {
+		List<PrettyPrintTiming> rows = new ArrayList<PrettyPrintTiming>();
+		orgs.forEach(org -> {
+			int detailCount = 0, attachmentCount = 0;
+			long detailMs = 0, downloadMs = 0, writeMs = 0, bytes = 0;
+			for (MessageTrace message : org.getMessages()) {
+				detailCount++;
+				detailMs += message.getDetailMs();
+				for (AttachmentTrace attachment : message.getAttachments()) {
+					attachmentCount++;
+					downloadMs += attachment.getDownloadMs();
+					writeMs += attachment.getWriteMs();
+					bytes += attachment.getBytes();
+				}
+			}
+			rows.add(new PrettyPrintTiming(org.getOrgnr(), "auth", org.getAuthCount(), org.getAuthMs(), 0));
+			rows.add(new PrettyPrintTiming(org.getOrgnr(), "listing", org.getListingCount(), org.getListingMs(), 0));
+			rows.add(new PrettyPrintTiming(org.getOrgnr(), "detail", detailCount, detailMs, 0));
+			rows.add(new PrettyPrintTiming(org.getOrgnr(), "download", attachmentCount, downloadMs, bytes));
+			rows.add(new PrettyPrintTiming(org.getOrgnr(), "write", attachmentCount, writeMs, bytes));
+			rows.add(new PrettyPrintTiming(org.getOrgnr(), "db-update", org.getDbUpdateCount(), org.getDbUpdateMs(), 0));
+		});
+		rows.add(new PrettyPrintTiming("*", "total", orgs.size(), totalMs, 0));
+
+		return rows;
+	}
+
+	public String getRunId() {
+		return runId;
+	}
+
+	public String getTrigger() {
+		return trigger;
+	}
+
+	public String getStarted() {
+		return started;
+	}
+
+	public String getFinished() {
+		return finished;
+	}
+
+	public long getTotalMs() {
+		return totalMs;
+	}
+
+	public List<OrgTrace> getOrgs() {
+		return orgs;
+	}
+
+}
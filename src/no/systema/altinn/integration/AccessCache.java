@@ -0,0 +1,127 @@
+package no.systema.altinn.integration;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.altinn.entities.PrettyPrintAccess;
+import no.systema.altinn.entities.ProfileHalRepresentation;
+import no.systema.altinn.entities.RoleHalRepresentation;
+
+/**
+ * Cache of profile and authorization roles per orgnr, see {@link ActionsUriBuilder#profile(String, int)} and {@link ActionsUriBuilder#roles(String, int)}. <br>
+ * 
+ * Refreshed in background by {@linkplain ActionsServiceManager}, entries older than altinn.access.ttl.minutes are not used. <br>
+ * 
+ * Access is DENIED when Altinn answers 401/403 on roles, or when altinn.access.roles is set and none of the roles match. 
+ * Else GRANTED, or UNKNOWN if roles could not be fetched. Only DENIED skips an orgnr in download runs.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("accessCache")
+public class AccessCache {
+	private static Logger logger = LogManager.getLogger(AccessCache.class);
+	public enum Access { GRANTED, DENIED, UNKNOWN }
+
+	@Value("${altinn.access.ttl.minutes}")
+	long ttlMinutes;
+
+	@Value("${altinn.access.roles}")
+	String requiredRolesProperty;
+
+	private Set<String> requiredRoles;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	@PostConstruct
+	public void init() {
+		requiredRoles = Arrays.stream(requiredRolesProperty.split(","))
+				.map(String::trim)
+				.filter(role -> !role.isEmpty())
+				.collect(Collectors.toCollection(TreeSet::new));
+		logger.info("AccessCache initialized, required roles=" + requiredRoles);
+	}
+
+	/**
+	 * @param orgnr
+	 * @param roles
+	 * @param profile, may be null
+	 * @return evaluated access
+	 */
+	public Access put(String orgnr, List<RoleHalRepresentation> roles, ProfileHalRepresentation profile) {
+		List<String> codes = roles.stream().map(RoleHalRepresentation::getRoleDefinitionCode).collect(Collectors.toList());
+		Access access = Access.GRANTED;
+		if (!requiredRoles.isEmpty() && codes.stream().noneMatch(requiredRoles::contains)) {
+			access = Access.DENIED;
+		}
+		entries.put(orgnr, new Entry(access, codes, profile != null ? profile.getUserName() : null));
+		logger.info("Orgnr:" + orgnr + ", access=" + access + ", roles=" + codes);
+
+		return access;
+	}
+
+	/**
+	 * @param orgnr
+	 * @param reason, e.g. status from Altinn
+	 */
+	public void putDenied(String orgnr, String reason) {
+		entries.put(orgnr, new Entry(Access.DENIED, new ArrayList<String>(), null));
+		logger.warn("Orgnr:" + orgnr + ", access=" + Access.DENIED + ", " + reason);
+	}
+
+	/**
+	 * @param orgnr
+	 * @return true if entry exist within ttl
+	 */
+	public boolean isFresh(String orgnr) {
+		Entry entry = entries.get(orgnr);
+		return entry != null && entry.loaded.plusMinutes(ttlMinutes).isAfter(LocalDateTime.now());
+	}
+
+	/**
+	 * @param orgnr
+	 * @return access, UNKNOWN if not fresh
+	 */
+	public Access getAccess(String orgnr) {
+		return isFresh(orgnr) ? entries.get(orgnr).access : Access.UNKNOWN;
+	}
+
+	/**
+	 * @return all cached orgnr
+	 */
+	public List<PrettyPrintAccess> getStatus() {
+		List<PrettyPrintAccess> result = new ArrayList<PrettyPrintAccess>();
+		entries.forEach((orgnr, entry) -> {
+			result.add(new PrettyPrintAccess(orgnr, isFresh(orgnr) ? entry.access.name() : Access.UNKNOWN.name(), 
+					String.join(",", entry.roles), entry.userName, entry.loaded.toString()));
+		});
+		return result;
+	}
+
+	private static class Entry {
+		final Access access;
+		final List<String> roles;
+		final String userName;
+		final LocalDateTime loaded = LocalDateTime.now();
+
+		Entry(Access access, List<String> roles, String userName) {
+			this.access = access;
+			this.roles = roles;
+			this.userName = userName;
+		}
+	}
+
+}
@@ -1,19 +1,30 @@
 package no.systema.altinn.integration;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.logging.log4j.*;
@@ -27,21 +38,29 @@ import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.jakewharton.fliptables.FlipTableConverters;
 
 import de.otto.edison.hal.Link;
 import no.systema.altinn.entities.ApiKey;
+import no.systema.altinn.entities.AttachmentTrace;
+import no.systema.altinn.entities.MessageTrace;
 import no.systema.altinn.entities.MessagesHalRepresentation;
+import no.systema.altinn.entities.OrgTrace;
 import no.systema.altinn.entities.PrettyPrintAttachments;
 import no.systema.altinn.entities.PrettyPrintMessages;
+import no.systema.altinn.entities.ProfileHalRepresentation;
+import no.systema.altinn.entities.RetryEntry;
+import no.systema.altinn.entities.RoleHalRepresentation;
+import no.systema.altinn.entities.RunTrace;
 import no.systema.altinn.entities.ServiceCode;
 import no.systema.altinn.entities.ServiceEdition;
 import no.systema.altinn.entities.ServiceOwner;
 import no.systema.altinn.entities.Status;
+import no.systema.altinn.integration.AccessCache.Access;
 import no.systema.jservices.common.dao.FirmaltDao;
-import no.systema.jservices.common.dao.services.FirmaltDaoService;
 import no.systema.jservices.common.util.DateTimeManager;
 
 /**
@@ -64,7 +83,75 @@ public class ActionsServiceManager {
 	private Authorization authorization;
 	
 	@Autowired
-	private FirmaltDaoService firmaltDaoService;
+	private FirmaltCache firmaltCache;
+
+	@Autowired
+	private RunTraceRecorder runTraceRecorder;
+
+	@Autowired
+	private AltinnHostGuard hostGuard;
+
+	@Autowired
+	private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+	@Autowired
+	private RetryJournal retryJournal;
+
+	@Autowired
+	private RunCheckpointLog checkpointLog;
+
+	@Autowired
+	private InboxMirror inboxMirror;
+
+	@Autowired
+	private MetadataCache metadataCache;
+
+	@Value("${altinn.metadata.refresh.minutes}")
+	long metadataRefreshMinutes;
+
+	@Value("${altinn.mirror.reconcile.minutes}")
+	long mirrorReconcileMinutes;
+
+	@Autowired
+	private AccessCache accessCache;
+
+	@Autowired
+	private OrgRunCoordinator runCoordinator;
+
+	@Autowired
+	private ClusterCoordinator clusterCoordinator;
+
+	@Autowired
+	private DownloadStateWriter stateWriter;
+
+	@Autowired
+	private BackfillCheckpoint backfillCheckpoint;
+
+	@Autowired
+	private TaskExecution taskExecution;
+
+	@Autowired
+	private AttachmentWriter attachmentWriter;
+
+	@Autowired
+	private ByteBufferPool bufferPool;
+
+	@Value("${altinn.backfill.parallelism}")
+	int backfillParallelism;
+
+	@Value("${altinn.backfill.window.days}")
+	int backfillWindowDays;
+
+	@Value("${altinn.access.refresh.minutes}")
+	long accessRefreshMinutes;
+
+	@Value("${altinn.shutdown.drain.ms}")
+	long drainMs;
+
+	private volatile boolean draining = false;
+	private final AtomicInteger inFlightDownloads = new AtomicInteger();
+	private final ExecutorService resumeExecutor = Executors.newSingleThreadExecutor();
+	private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
 
 	@Value("${altinn.access.use.proxy}")
     String useProxy;	
@@ -74,6 +161,12 @@ public class ActionsServiceManager {
 
     @Value("${altinn.access.proxy.port}")
     String port;	
+
+    @Value("${altinn.http.connect.timeout.ms}")
+    int connectTimeout;
+
+    @Value("${altinn.http.read.timeout.ms}")
+    int readTimeout;
 	
     @PostConstruct 
     public void init(){
@@ -84,12 +177,158 @@ public class ActionsServiceManager {
         now.format(formatter);
     	
       logger.info("ActionsServiceManager has been initialized, time="+now.format(formatter));
+      
+      if (!checkpointLog.getIncomplete().isEmpty()) {
+    	  resumeExecutor.submit(this::resumeIncompleteRuns);
+      }
+      refreshExecutor.scheduleWithFixedDelay(this::refreshMetadata, 0, metadataRefreshMinutes, TimeUnit.MINUTES);
+      refreshExecutor.scheduleWithFixedDelay(this::refreshAccess, 0, accessRefreshMinutes, TimeUnit.MINUTES);
+      refreshExecutor.scheduleWithFixedDelay(this::reconcileMirror, mirrorReconcileMinutes, mirrorReconcileMinutes, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Stop starting new downloads, and wait for in-flight downloads up to altinn.shutdown.drain.ms.
+     * Interrupted runs are kept in {@link RunCheckpointLog} and resumed on next startup.
+     */
+    @PreDestroy
+    public void shutdown() {
+    	draining = true;
+    	resumeExecutor.shutdownNow();
+    	refreshExecutor.shutdownNow();
+    	long deadline = System.currentTimeMillis() + drainMs;
+    	synchronized (inFlightDownloads) {
+    		while (inFlightDownloads.get() > 0 && System.currentTimeMillis() < deadline) {
+    			try {
+    				inFlightDownloads.wait(Math.max(1, deadline - System.currentTimeMillis()));
+    			} catch (InterruptedException e) {
+    				Thread.currentThread().interrupt();
+    				break;
+    			}
+    		}
+    	}
+    	logger.info("ActionsServiceManager drained, in-flight downloads left="+inFlightDownloads.get());
+    }
+    
+    /**
+     * Load Altinn service metadata into {@linkplain MetadataCache}, using host and apikey of first FIRMALT record.
+     * On failure former snapshot is kept until ttl.
+     */
+    public void refreshMetadata() {
+    	try {
+    		FirmaltDao firmalt = getSaneFirmaltRecords().get(0);
+    		URI uri = ActionsUriBuilder.metadata(firmalt.getAihost());
+    		HttpEntity<ApiKey> entityHeadersOnly = authorization.getHttpEntity(firmalt);
+    		metadataCache.load(HalHelper.getMetadata(getBody(uri, entityHeadersOnly, firmalt)));
+    	} catch (Exception e) {
+    		logger.warn("Could not refresh Altinn metadata, keeping former. "+e.getMessage());
+    	}
+    }
+    
+    /**
+     * Full listing for all orgnr loaded in {@linkplain InboxMirror}, evicting messages deleted or archived in Altinn.
+     */
+    public void reconcileMirror() {
+    	try {
+    		Set<String> loaded = inboxMirror.getLoaded();
+    		getSaneFirmaltRecords().stream().filter(firmalt -> loaded.contains(firmalt.getAiorg())).forEach(firmalt -> {
+    			try {
+    				OrgTrace orgTrace = new OrgTrace(firmalt.getAiorg());  //not recorded
+    				inboxMirror.reconcile(firmalt.getAiorg(), getMessages(ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg()), firmalt, orgTrace));
+    			} catch (Exception e) {
+    				logger.warn("Orgnr:"+firmalt.getAiorg()+", could not reconcile mirror, keeping former. "+e.getMessage());
+    			}
+    		});
+    	} catch (Exception e) {
+    		logger.warn("Could not reconcile mirror. "+e.getMessage());
+    	}
+    }
+    
+    /**
+     * Load profile and roles for all FIRMALT records into {@linkplain AccessCache}.
+     */
+    public void refreshAccess() {
+    	try {
+    		getSaneFirmaltRecords().forEach(this::refreshAccess);
+    	} catch (Exception e) {
+    		logger.warn("Could not refresh access. "+e.getMessage());
+    	}
+    }
+    
+    /*
+     * 401/403 on roles is cached as DENIED, other failures gives UNKNOWN and is not cached.
+     */
+    private Access refreshAccess(FirmaltDao firmalt) {
+    	try {
+    		int orgnr = Integer.parseInt(firmalt.getAiorg());
+    		HttpEntity<ApiKey> entityHeadersOnly = authorization.getHttpEntity(firmalt);
+    		List<RoleHalRepresentation> roles = HalHelper.getRoles(getBody(ActionsUriBuilder.roles(firmalt.getAihost(), orgnr), entityHeadersOnly, firmalt));
+    		ProfileHalRepresentation profile = null;
+    		try {
+    			profile = HalHelper.getProfile(getBody(ActionsUriBuilder.profile(firmalt.getAihost(), orgnr), entityHeadersOnly, firmalt));
+    		} catch (Exception e) {
+    			logger.debug("Orgnr:"+firmalt.getAiorg()+", no profile. "+e.getMessage());
+    		}
+    		return accessCache.put(firmalt.getAiorg(), roles, profile);
+    	} catch (HttpClientErrorException e) {
+    		if (e.getStatusCode() == HttpStatus.FORBIDDEN || e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+    			accessCache.putDenied(firmalt.getAiorg(), "roles answered "+e.getStatusCode());
+    			return Access.DENIED;
+    		}
+    		logger.warn("Orgnr:"+firmalt.getAiorg()+", could not get roles. "+e.getMessage());
+    		return Access.UNKNOWN;
+    	} catch (Exception e) {
+    		logger.warn("Orgnr:"+firmalt.getAiorg()+", could not get roles. "+e.getMessage());
+    		return Access.UNKNOWN;
+    	}
+    }
+    
+    /*
+     * Cheap check before listing, from AccessCache. Only DENIED skips, UNKNOWN is tried as before.
+     */
+    private boolean hasAccess(FirmaltDao firmalt, OrgTrace orgTrace) {
+    	Access access = accessCache.isFresh(firmalt.getAiorg()) ? accessCache.getAccess(firmalt.getAiorg()) : refreshAccess(firmalt);
+    	if (access == Access.DENIED) {
+    		logger.warn("Orgnr:"+firmalt.getAiorg()+", no access to dagsoppgjor in Altinn, skipped.");
+    		orgTrace.setError("Access denied");
+    		return false;
+    	}
+    	return true;
+    }
+    
+    private String getBody(URI uri, HttpEntity<ApiKey> entityHeadersOnly, FirmaltDao firmalt) {
+		ResponseEntity<String> responseEntity = exchange(firmalt, AdaptiveConcurrencyLimiter.OTHER, () -> restTemplate().exchange(uri, HttpMethod.GET, entityHeadersOnly, String.class));
+		if (responseEntity.getStatusCode() != HttpStatus.OK) {
+			throw new RuntimeException(responseEntity.getStatusCode().toString());
+		}
+		return responseEntity.getBody();
+    }
+    
+    /*
+     * Resume runs without END in checkpoint log. If FIRMALT.aidato has moved since START the run was completed.
+     */
+    private void resumeIncompleteRuns() {
+    	checkpointLog.getIncomplete().forEach((orgnr, watermark) -> {
+    		try {
+    			FirmaltDao firmalt = firmaltCache.get(orgnr);
+    			if (firmalt == null || firmalt.getAidato() != watermark) {
+    				logger.info("Orgnr:"+orgnr+", checkpointed run already completed or orgnr removed, closing.");
+    				checkpointLog.end(orgnr);
+    			} else {
+    				logger.info("Orgnr:"+orgnr+", resuming incomplete run from checkpoint.");
+    				putDagsobjorAttachmentsToPath(orgnr);
+    			}
+    		} catch (Exception e) {
+    			logger.error("Orgnr:"+orgnr+", could not resume run.", e);
+    		}
+    	});
     }
     
     
     
 	private RestTemplate restTemplate() {
 		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(connectTimeout);
+		requestFactory.setReadTimeout(readTimeout);
 
 //		logger.info("useProxy="+useProxy);
 //		logger.debug("proxyHost="+proxyHost+", port="+port);
@@ -140,12 +379,13 @@ public class ActionsServiceManager {
 		
 		firmaltDaoList.forEach(firmalt -> {
 			URI uri = ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg());
+			OrgTrace orgTrace = new OrgTrace(firmalt.getAiorg());  //not recorded
 			if (forceDetails) {
-				List<MessagesHalRepresentation> messages = getMessages(uri, firmalt);
+				List<MessagesHalRepresentation> messages = getMessages(uri, firmalt, orgTrace);
 
 				messages.forEach((message) -> {
 					String self = message.getLinks().getLinksBy("self").get(0).getHref();
-					MessagesHalRepresentation halMessage = getMessage(URI.create(self),firmalt);
+					MessagesHalRepresentation halMessage = getMessage(URI.create(self),firmalt, orgTrace, orgTrace.message(message.getMessageId()));
 					PrettyPrintMessages log = new PrettyPrintMessages(firmalt.getAiorg(), LocalDate.now().toString(),halMessage.getCreatedDate().toString(), 
 							halMessage.getSubject(), halMessage.getServiceOwner(), halMessage.getServiceCode(), halMessage.getServiceEdition(), halMessage.getStatus() );
 
@@ -156,7 +396,7 @@ public class ActionsServiceManager {
 				if (ignoreStatus) {
 				
 					logger.info("ignoreStatus, get all messages...");
-					List<MessagesHalRepresentation> messages = getMessages(uri, firmalt);
+					List<MessagesHalRepresentation> messages = getMessages(uri, firmalt, orgTrace);
 	
 					messages.forEach((message) -> {
 						PrettyPrintMessages log = new PrettyPrintMessages(firmalt.getAiorg(), LocalDate.now().toString(),message.getCreatedDate().toString(), 
@@ -171,11 +411,11 @@ public class ActionsServiceManager {
 					
 					List<MessagesHalRepresentation> dagsobjors = new ArrayList<MessagesHalRepresentation>();
 					
-					List<MessagesHalRepresentation> dagsobjorsUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, fromDate,firmalt, Status.Ulest);
+					List<MessagesHalRepresentation> dagsobjorsUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, fromDate,firmalt, Status.Ulest, orgTrace);
 					dagsobjors.addAll(dagsobjorsUlest);
 					logger.info("dagsobjorsUlest: On fromDate="+fromDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Ulest.getCode() );
 					
-					List<MessagesHalRepresentation> dagsobjorsLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, fromDate,firmalt, Status.Lest);
+					List<MessagesHalRepresentation> dagsobjorsLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, fromDate,firmalt, Status.Lest, orgTrace);
 					dagsobjors.addAll(dagsobjorsLest);
 					logger.info("dagsobjorsLest: On fromDate="+fromDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Lest.getCode() );
 					
@@ -185,11 +425,11 @@ public class ActionsServiceManager {
 					* Har en rolle som "Regnskapsmedarbeider" vil en uansett ha tilgang til å laste ned PDF- og e2b-fil fra Altinn og vil ikke bli berørt av endringen.
 					 */
 					//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
-					List<MessagesHalRepresentation> dagsobjorsFIXUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, fromDate,firmalt, Status.Ulest);
+					List<MessagesHalRepresentation> dagsobjorsFIXUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, fromDate,firmalt, Status.Ulest, orgTrace);
 					dagsobjors.addAll(dagsobjorsFIXUlest);
 					logger.info("dagsobjorsFIXUlest On fromDate="+fromDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Ulest.getCode() );
 					
-					List<MessagesHalRepresentation> dagsobjorsFIXLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, fromDate,firmalt, Status.Lest);
+					List<MessagesHalRepresentation> dagsobjorsFIXLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, fromDate,firmalt, Status.Lest, orgTrace);
 					dagsobjors.addAll(dagsobjorsFIXLest);
 					logger.info("dagsobjorsFIXLest On fromDate="+fromDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Lest.getCode() );
 					
@@ -209,6 +449,90 @@ public class ActionsServiceManager {
 
 	}
 	
+	/**
+	 * Get all messages for orgnr, served from {@linkplain InboxMirror}.
+	 * 
+	 * Same selection as {@link #getMessages(boolean, boolean)}, orgnr not yet in mirror is loaded on first call.
+	 * 
+	 * @param forceDetails - on refresh, get message on 'self'-link for messages in delta only.
+	 * @param ignoreStatus - adding real filter on fromDate = 10.
+	 * @param refresh - get messages changed since last refresh from Altinn, before serving.
+	 * @return List<PrettyPrintMessages>
+	 */
+	public List<PrettyPrintMessages> getMirroredMessages(boolean forceDetails, boolean ignoreStatus, boolean refresh) {
+		final List<PrettyPrintMessages> result = new ArrayList<PrettyPrintMessages>();
+		List<FirmaltDao> firmaltDaoList =null;
+
+		try {
+			firmaltDaoList = getSaneFirmaltRecords();
+		} catch (Exception e) {
+			logger.fatal("Something wrong with FIRMALT, aborting.");
+			return result;
+		}
+		
+		firmaltDaoList.forEach(firmalt -> {
+			if (refresh || !inboxMirror.isLoaded(firmalt.getAiorg())) {
+				refreshMirror(firmalt, forceDetails);
+			}
+			List<MessagesHalRepresentation> messages = inboxMirror.getMessages(firmalt.getAiorg());
+			
+			if (!ignoreStatus) {
+				//As ActionsUriBuilder: CreatedDate gt fromDate + 1
+				LocalDateTime createdAfter = getLatestDownloadDate(firmalt).minusDays(10).plusDays(1).atStartOfDay();
+				messages.removeIf(message -> !isDagsobjor(message) || !isLestOrUlest(message) || !isCreatedAfter(message, createdAfter));
+			}
+			
+			messages.forEach((message) -> {
+				PrettyPrintMessages log = new PrettyPrintMessages(firmalt.getAiorg(), LocalDate.now().toString(),message.getCreatedDate().toString(), 
+						message.getSubject(), message.getServiceOwner(), message.getServiceCode(), message.getServiceEdition(), message.getStatus()  );
+				result.add(log);
+			});
+		});
+		
+		return result;
+		
+	}
+	
+	/*
+	 * Get new and changed messages since watermark into InboxMirror, all messages if not loaded.
+	 */
+	private void refreshMirror(FirmaltDao firmalt, boolean forceDetails) {
+		LocalDateTime watermark = inboxMirror.getWatermark(firmalt.getAiorg());
+		URI uri = watermark == null ? ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg()) 
+				: ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg(), watermark);
+		OrgTrace orgTrace = new OrgTrace(firmalt.getAiorg());  //not recorded
+		List<MessagesHalRepresentation> delta = getMessages(uri, firmalt, orgTrace);
+		
+		if (forceDetails) {
+			List<MessagesHalRepresentation> details = new ArrayList<MessagesHalRepresentation>();
+			delta.forEach(message -> {
+				String self = message.getLinks().getLinksBy("self").get(0).getHref();
+				details.add(getMessage(URI.create(self), firmalt, orgTrace, orgTrace.message(message.getMessageId())));
+			});
+			delta = details;
+		}
+		
+		inboxMirror.apply(firmalt.getAiorg(), delta);
+		
+	}
+	
+	private boolean isDagsobjor(MessagesHalRepresentation message) {
+		if (!ServiceOwner.Skatteetaten.toString().equals(message.getServiceOwner())) {
+			return false;
+		}
+		return (ServiceCode.Dagsobjor.getCode().equals(message.getServiceCode()) && ServiceEdition.Dagsobjor.getCode() == message.getServiceEdition())
+				|| (ServiceCode.DagsobjorFIX.getCode().equals(message.getServiceCode()) && ServiceEdition.DagsobjorFIX.getCode() == message.getServiceEdition());
+	}
+
+	private boolean isLestOrUlest(MessagesHalRepresentation message) {
+		return Status.Lest.getCode().equals(message.getStatus()) || Status.Ulest.getCode().equals(message.getStatus());
+	}
+
+	private boolean isCreatedAfter(MessagesHalRepresentation message, LocalDateTime createdAfter) {
+		LocalDateTime created = InboxMirror.parse(message.getCreatedDate());
+		return created != null && created.isAfter(createdAfter);
+	}
+	
 	/**
 	 * Get all message for orgnr and specific {@link ServiceOwner}, {@link ServiceOwner}, {@link ServiceEdition}
 	 * 
@@ -219,10 +543,10 @@ public class ActionsServiceManager {
 	 * @param serviceEdition
 	 * @return List<MessagesHalRepresentation>
 	 */
-	private List<MessagesHalRepresentation> getMessages(ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, FirmaltDao firmalt) {
+	private List<MessagesHalRepresentation> getMessages(ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, FirmaltDao firmalt, OrgTrace orgTrace) {
 		final List<MessagesHalRepresentation> result = new ArrayList<MessagesHalRepresentation>();
 		URI uri = ActionsUriBuilder.messages(firmalt.getAihost(),  firmalt.getAiorg(),serviceOwner,serviceCode, serviceEdition);
-		result.addAll(getMessages(uri,firmalt));
+		result.addAll(getMessages(uri,firmalt, orgTrace));
 		
 		return result;
 		
@@ -232,12 +556,12 @@ public class ActionsServiceManager {
 	 * 
 	 * Only executed manually
 	 */
-	private List<MessagesHalRepresentation> getMessages(ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, LocalDate createdDate, FirmaltDao firmalt) {
+	private List<MessagesHalRepresentation> getMessages(ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, LocalDate createdDate, FirmaltDao firmalt, OrgTrace orgTrace) {
 		logger.info("About to get message greater than "+createdDate+ " for orgnr:"+firmalt.getAiorg());
 		final List<MessagesHalRepresentation> result = new ArrayList<MessagesHalRepresentation>();
 		URI uri = ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg(), serviceOwner, serviceCode, serviceEdition, createdDate);
 
-		result.addAll(getMessages(uri, firmalt));
+		result.addAll(getMessages(uri, firmalt, orgTrace));
 		
 		return result;
 	
@@ -245,12 +569,16 @@ public class ActionsServiceManager {
 	/*
 	 * Exclude messages, typically with Status "Ulest" or "Lest".
 	 */
-	private List<MessagesHalRepresentation> getMessages(ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, LocalDate latestDownloadDate, FirmaltDao firmalt, Status status) {
+	private List<MessagesHalRepresentation> getMessages(ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, LocalDate latestDownloadDate, FirmaltDao firmalt, Status status, OrgTrace orgTrace) {
 		logger.info("About to get message greater than "+latestDownloadDate+ " for orgnr:"+firmalt.getAiorg()+ ", and Status:"+status.getCode());
 		final List<MessagesHalRepresentation> result = new ArrayList<MessagesHalRepresentation>();
+		if (metadataCache.isExpired(serviceCode, serviceEdition, latestDownloadDate)) {
+			logger.warn("ServiceCode="+serviceCode.getCode()+", ServiceEdition="+serviceEdition.getCode()+" expired before "+latestDownloadDate+", skipping query. Current edition="+metadataCache.getCurrentEdition(serviceCode));
+			return result;
+		}
 		URI uri = ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg(), serviceOwner, serviceCode, serviceEdition, latestDownloadDate, status);
 
-		result.addAll(getMessages(uri, firmalt));
+		result.addAll(getMessages(uri, firmalt, orgTrace));
 		
 		return result;
 	
@@ -269,6 +597,18 @@ public class ActionsServiceManager {
 	 * @return List of fileNames
 	 */
 	public List<PrettyPrintAttachments> putDagsobjorAttachmentsToPath(boolean forceAll, LocalDate gtDato) {
+		return putDagsobjorAttachmentsToPath(forceAll, gtDato, runTraceRecorder.begin("putDagsobjorAttachmentsToPath"));
+	}
+
+	/**
+	 * As {@link #putDagsobjorAttachmentsToPath(boolean, LocalDate)}, timing is collected into delivered trace.
+	 * 
+	 * @param forceAll
+	 * @param gtDato
+	 * @param trace, see {@link RunTraceRecorder#begin(String)}
+	 * @return List of fileNames
+	 */
+	public List<PrettyPrintAttachments> putDagsobjorAttachmentsToPath(boolean forceAll, LocalDate gtDato, RunTrace trace) {
 		List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
 		List<FirmaltDao> firmaltDaoList =null;
 
@@ -276,63 +616,77 @@ public class ActionsServiceManager {
 			firmaltDaoList = getSaneFirmaltRecords();
 		} catch (Exception e) {
 			logger.fatal("Something wrong with FIRMALT, aborting.");
+			trace.finish();
 			return logRecords;
 		}		
 
 		
-		firmaltDaoList.forEach(firmalt -> {
-			if (gtDato != null || forceAll) {
-				List<MessagesHalRepresentation> dagsobjors = null;
-				if (gtDato != null) {
-					logger.info("Orgnr:"+firmalt.getAiorg()+ ", downloading fraDato-filtered messages from "+gtDato+", from Skatteeten on Dagsoppgjor");
-					logger.info("fraDato="+gtDato);
-					dagsobjors = getMessages(ServiceOwner.Skatteetaten, ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, gtDato, firmalt);
+		try {
+			firmaltDaoList.forEach(firmalt -> {
+				OrgTrace orgTrace = trace.org(firmalt.getAiorg());
+				if (!hasAccess(firmalt, orgTrace)) {
+					return;
+				}
+				try {
+					logRecords.addAll(retryJournaled(firmalt, orgTrace));
+					if (gtDato != null || forceAll) {
+						List<MessagesHalRepresentation> dagsobjors = null;
+						if (gtDato != null) {
+							logger.info("Orgnr:"+firmalt.getAiorg()+ ", downloading fraDato-filtered messages from "+gtDato+", from Skatteeten on Dagsoppgjor");
+							logger.info("fraDato="+gtDato);
+							dagsobjors = getMessages(ServiceOwner.Skatteetaten, ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, gtDato, firmalt, orgTrace);
 
-					/** 2018_03-02
-					 * Det har også blitt oppdaget en feil i oppsettet for enkelttjeneste for den nye ordningen for dagsoppgjør. Denne feilen berører kun de som ønsker å tildele enkeltpersoner enkelttjenester i Altinn. 
-					* For å løse dette søk opp 4125/150602 "Brev til etterskuddspliktige" og velg denne. I tillegg er det laget en ny enkelttjeneste som er riktig 5012/171208 "Elektronisk kontoutskrift tollkreditt og dagsoppgjør" som vil være gyldig i løpet av 3-4 uker. Tildel denne samtidig og den vil automatisk bli tatt i bruk når den nye tjenesten er klar.
-					* Har en rolle som "Regnskapsmedarbeider" vil en uansett ha tilgang til å laste ned PDF- og e2b-fil fra Altinn og vil ikke bli berørt av endringen.
-					 */
-					//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
-					List<MessagesHalRepresentation> dagsobjorsFIX = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, gtDato,firmalt);
-					logger.info(dagsobjorsFIX.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.DagsobjorFIX.getCode()+", ServiceEdition="+ServiceEdition.DagsobjorFIX.getCode());
-					dagsobjors.addAll(dagsobjorsFIX);					
+							/** 2018_03-02
+							 * Det har også blitt oppdaget en feil i oppsettet for enkelttjeneste for den nye ordningen for dagsoppgjør. Denne feilen berører kun de som ønsker å tildele enkeltpersoner enkelttjenester i Altinn. 
+							* For å løse dette søk opp 4125/150602 "Brev til etterskuddspliktige" og velg denne. I tillegg er det laget en ny enkelttjeneste som er riktig 5012/171208 "Elektronisk kontoutskrift tollkreditt og dagsoppgjør" som vil være gyldig i løpet av 3-4 uker. Tildel denne samtidig og den vil automatisk bli tatt i bruk når den nye tjenesten er klar.
+							* Har en rolle som "Regnskapsmedarbeider" vil en uansett ha tilgang til å laste ned PDF- og e2b-fil fra Altinn og vil ikke bli berørt av endringen.
+							 */
+							//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
+							List<MessagesHalRepresentation> dagsobjorsFIX = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, gtDato,firmalt, orgTrace);
+							logger.info(dagsobjorsFIX.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.DagsobjorFIX.getCode()+", ServiceEdition="+ServiceEdition.DagsobjorFIX.getCode());
+							dagsobjors.addAll(dagsobjorsFIX);					
 					
 				
-				} else {  //forceAll
-					logger.info("Orgnr:"+firmalt.getAiorg()+ ", downloading all messages from Skatteeten on Dagsoppgjor");
-					dagsobjors = getMessages(ServiceOwner.Skatteetaten, ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, firmalt);
+						} else {  //forceAll
+							logger.info("Orgnr:"+firmalt.getAiorg()+ ", downloading all messages from Skatteeten on Dagsoppgjor");
+							dagsobjors = getMessages(ServiceOwner.Skatteetaten, ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, firmalt, orgTrace);
 
-					/** 2018_03-02
-					 * Det har også blitt oppdaget en feil i oppsettet for enkelttjeneste for den nye ordningen for dagsoppgjør. Denne feilen berører kun de som ønsker å tildele enkeltpersoner enkelttjenester i Altinn. 
-					* For å løse dette søk opp 4125/150602 "Brev til etterskuddspliktige" og velg denne. I tillegg er det laget en ny enkelttjeneste som er riktig 5012/171208 "Elektronisk kontoutskrift tollkreditt og dagsoppgjør" som vil være gyldig i løpet av 3-4 uker. Tildel denne samtidig og den vil automatisk bli tatt i bruk når den nye tjenesten er klar.
-					* Har en rolle som "Regnskapsmedarbeider" vil en uansett ha tilgang til å laste ned PDF- og e2b-fil fra Altinn og vil ikke bli berørt av endringen.
-					 */
-					//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
-					List<MessagesHalRepresentation> dagsobjorsFIX = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, firmalt);
-					logger.info(dagsobjorsFIX.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.DagsobjorFIX.getCode()+", ServiceEdition="+ServiceEdition.DagsobjorFIX.getCode());
-					dagsobjors.addAll(dagsobjorsFIX);						
+							/** 2018_03-02
+							 * Det har også blitt oppdaget en feil i oppsettet for enkelttjeneste for den nye ordningen for dagsoppgjør. Denne feilen berører kun de som ønsker å tildele enkeltpersoner enkelttjenester i Altinn. 
+							* For å løse dette søk opp 4125/150602 "Brev til etterskuddspliktige" og velg denne. I tillegg er det laget en ny enkelttjeneste som er riktig 5012/171208 "Elektronisk kontoutskrift tollkreditt og dagsoppgjør" som vil være gyldig i løpet av 3-4 uker. Tildel denne samtidig og den vil automatisk bli tatt i bruk når den nye tjenesten er klar.
+							* Har en rolle som "Regnskapsmedarbeider" vil en uansett ha tilgang til å laste ned PDF- og e2b-fil fra Altinn og vil ikke bli berørt av endringen.
+							 */
+							//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
+							List<MessagesHalRepresentation> dagsobjorsFIX = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, firmalt, orgTrace);
+							logger.info(dagsobjorsFIX.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.DagsobjorFIX.getCode()+", ServiceEdition="+ServiceEdition.DagsobjorFIX.getCode());
+							dagsobjors.addAll(dagsobjorsFIX);						
 				
-				}
+						}
 
 				
-				dagsobjors.forEach((message) -> {
-					logRecords.addAll(getAttachments(message, firmalt));
-				});
+						dagsobjors.forEach((message) -> {
+							logRecords.addAll(getAttachments(message, firmalt, orgTrace));
+						});
 				
-				if (!dagsobjors.isEmpty()) {
-					updateDownloadDato(firmalt);
-				}
-				logger.info("Orgnr:"+firmalt.getAiorg()+ ", " +dagsobjors.size()+" dagsoppgjor downloaded, with "+logRecords.size()+" attachments.");
-			} else {
-				logger.info("Orgnr:"+firmalt.getAiorg()+ ", downloading if not downloaded today.");
-				if (!isDownloadedToday(firmalt)) {
-					logRecords.addAll(getDagsoppgjor(firmalt));
-				}
-				logger.info("Orgnr:"+firmalt.getAiorg()+ " with "+logRecords.size()+" attachments.");
+						attachmentWriter.await(firmalt.getAipath());
+						if (!dagsobjors.isEmpty()) {
+							updateDownloadDato(firmalt, orgTrace);
+						}
+						logger.info("Orgnr:"+firmalt.getAiorg()+ ", " +dagsobjors.size()+" dagsoppgjor downloaded, with "+logRecords.size()+" attachments.");
+					} else {
+						logger.info("Orgnr:"+firmalt.getAiorg()+ ", downloading if not downloaded today.");
+						logRecords.addAll(getDagsoppgjorOnce(firmalt, orgTrace));
+						logger.info("Orgnr:"+firmalt.getAiorg()+ " with "+logRecords.size()+" attachments.");
 
-			}
-		});
+					}
+				} catch (CircuitOpenException e) {
+					logger.error("Orgnr:"+firmalt.getAiorg()+ ", skipped. "+e.getMessage());
+					orgTrace.setError(e.getMessage());
+				}
+			});
+		} finally {
+			trace.finish();
+		}
 
 		logger.info("putDagsobjorAttachmentsToPath executed, with forceAll="+forceAll+", fraDato="+gtDato);
 		logger.info(FlipTableConverters.fromIterable(logRecords, PrettyPrintAttachments.class));
@@ -342,6 +696,92 @@ public class ActionsServiceManager {
 	}
 
 
+	/**
+	 * Backfill dagsoppgjor for all orgnr in FIRMALT, created in [from, to). 
+	 * 
+	 * The period is split in windows of windowDays, and windows x orgnr are downloaded concurrently on altinn.backfill.parallelism threads. 
+	 * Done windows and messages are kept in {@linkplain BackfillCheckpoint} and skipped on repeat, messages are de-duplicated on MessageId. 
+	 * FIRMALT.aidato is not updated.
+	 * 
+	 * @param from, inclusive
+	 * @param to, exclusive
+	 * @param windowDays, <= 0 is altinn.backfill.window.days
+	 * @param trace, see {@link RunTraceRecorder#begin(String)}
+	 * @return List of fileNames
+	 */
+	public List<PrettyPrintAttachments> backfillDagsobjor(LocalDate from, LocalDate to, int windowDays, RunTrace trace) {
+		List<PrettyPrintAttachments> logRecords = Collections.synchronizedList(new ArrayList<PrettyPrintAttachments>());
+		List<FirmaltDao> firmaltDaoList = null;
+		
+		try {
+			firmaltDaoList = getSaneFirmaltRecords();
+		} catch (Exception e) {
+			logger.fatal("Something wrong with FIRMALT, aborting.");
+			trace.finish();
+			return logRecords;
+		}		
+		
+		int days = windowDays > 0 ? windowDays : backfillWindowDays;
+		List<LocalDate[]> windows = new ArrayList<LocalDate[]>();
+		for (LocalDate windowFrom = from; windowFrom.isBefore(to); windowFrom = windowFrom.plusDays(days)) {
+			LocalDate windowTo = windowFrom.plusDays(days).isAfter(to) ? to : windowFrom.plusDays(days);
+			windows.add(new LocalDate[] { windowFrom, windowTo });
+		}
+		logger.info("Backfill from "+from+" to "+to+", "+windows.size()+" windows x "+firmaltDaoList.size()+" orgnr, parallelism="+backfillParallelism);
+
+		Set<String> seen = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(backfillParallelism);
+		List<CompletableFuture<Void>> tasks = new ArrayList<CompletableFuture<Void>>();
+		try {
+			for (FirmaltDao firmalt : firmaltDaoList) {
+				OrgTrace orgTrace = trace.org(firmalt.getAiorg());
+				if (!hasAccess(firmalt, orgTrace)) {
+					continue;
+				}
+				for (LocalDate[] window : windows) {
+					tasks.add(CompletableFuture.runAsync(() -> backfillWindow(firmalt, window[0], window[1], seen, logRecords, orgTrace), executor));
+				}
+			}
+			CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+		} finally {
+			executor.shutdown();
+			trace.finish();
+		}
+		logger.info("Backfill from "+from+" to "+to+" executed, with "+logRecords.size()+" attachments.");
+		
+		return new ArrayList<PrettyPrintAttachments>(logRecords);
+		
+	}
+	
+	private void backfillWindow(FirmaltDao firmalt, LocalDate from, LocalDate to, Set<String> seen, List<PrettyPrintAttachments> logRecords, OrgTrace orgTrace) {
+		if (draining || backfillCheckpoint.isWindowDone(firmalt.getAiorg(), from, to)) {
+			return;
+		}
+		try {
+			List<MessagesHalRepresentation> dagsobjors = new ArrayList<MessagesHalRepresentation>();
+			dagsobjors.addAll(getMessages(ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg(), ServiceOwner.Skatteetaten, ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, from, to), firmalt, orgTrace));
+			//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
+			dagsobjors.addAll(getMessages(ActionsUriBuilder.messages(firmalt.getAihost(), firmalt.getAiorg(), ServiceOwner.Skatteetaten, ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, from, to), firmalt, orgTrace));
+
+			for (MessagesHalRepresentation message : dagsobjors) {
+				if (draining) {
+					return;
+				}
+				if (!seen.add(firmalt.getAiorg() + "/" + message.getMessageId()) || backfillCheckpoint.isMessageDone(firmalt.getAiorg(), message.getMessageId())) {
+					continue;
+				}
+				//done when written, not when only queued in the attachment writer
+				logRecords.addAll(getAttachments(message, firmalt, orgTrace, () -> backfillCheckpoint.messageDone(firmalt.getAiorg(), message.getMessageId())));
+			}
+			attachmentWriter.await(firmalt.getAipath());
+			backfillCheckpoint.windowDone(firmalt.getAiorg(), from, to);
+			logger.info("Orgnr:"+firmalt.getAiorg()+ ", backfill window "+from+" - "+to+" done, "+dagsobjors.size()+" messages.");
+		} catch (RuntimeException e) {
+			logger.error("Orgnr:"+firmalt.getAiorg()+ ", backfill window "+from+" - "+to+" failed, kept for next backfill. "+e.getMessage());
+			orgTrace.setError(e.getMessage());
+		}
+	}
+
 	/**
 	 * Retrive dagsoppgjor for all orgnr defined in FIRMALT.
 	 * 
@@ -356,29 +796,51 @@ public class ActionsServiceManager {
         
        logger.info("::putDagsobjorAttachmentsToPath() start running, time="+now.format(formatter));
 		
-		List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
+		List<PrettyPrintAttachments> logRecords = Collections.synchronizedList(new ArrayList<PrettyPrintAttachments>());
 		List<FirmaltDao> firmaltDaoList = null;
+		RunTrace trace = runTraceRecorder.begin("putDagsobjorAttachmentsToPath()");
 
 		try {
 			firmaltDaoList = getSaneFirmaltRecords();
 		} catch (Exception e) {
 			logger.fatal("Something wrong with FIRMALT, Throwing exception.");
+			trace.finish();
 			throw e;
 		}
 		
-		firmaltDaoList.forEach(firmalt -> {
-			logger.info("::orgnnr:"+firmalt.getAiorg() +", record="+ReflectionToStringBuilder.toString(firmalt));
-			logger.info("::orgnnr:"+firmalt.getAiorg() +", get Dagsoppgjors");
-			if (!isDownloadedToday(firmalt)) {
-				logRecords.addAll(getDagsoppgjor(firmalt));	
-
-				logger.info("::orgnnr:"+firmalt.getAiorg() +", download of Dagsoppgjors attachments is executed.");
-				logger.info(FlipTableConverters.fromIterable(logRecords, PrettyPrintAttachments.class));
-			} else {
-				logger.info("::orgnnr:"+firmalt.getAiorg() +", Already downloaded today.");
-			}
-			
-		});
+		try (TaskScope<Object> scope = taskExecution.open(e -> false)) {
+			firmaltDaoList.forEach(firmalt -> scope.fork(TaskExecution.callable(() -> {
+				logger.info("::orgnnr:"+firmalt.getAiorg() +", record="+ReflectionToStringBuilder.toString(firmalt));
+				logger.info("::orgnnr:"+firmalt.getAiorg() +", get Dagsoppgjors");
+				if (!clusterCoordinator.isMine(firmalt.getAiorg())) {
+					logger.info("::orgnnr:"+firmalt.getAiorg() +", owned by node "+clusterCoordinator.owner(firmalt.getAiorg())+", skipped.");
+					return;
+				}
+				OrgTrace orgTrace = trace.org(firmalt.getAiorg());
+				if (!hasAccess(firmalt, orgTrace)) {
+					return;
+				}
+				List<PrettyPrintAttachments> orgRecords = new ArrayList<PrettyPrintAttachments>();
+				orgRecords.addAll(retryJournaled(firmalt, orgTrace));
+				if (!isDownloadedToday(firmalt)) {
+					try {
+						orgRecords.addAll(getDagsoppgjorOnce(firmalt, orgTrace));	
+					} catch (CircuitOpenException e) {
+						logger.error("::orgnnr:"+firmalt.getAiorg() +", skipped. "+e.getMessage());
+						orgTrace.setError(e.getMessage());
+					}
+	
+					logger.info("::orgnnr:"+firmalt.getAiorg() +", download of Dagsoppgjors attachments is executed.");
+					logger.info(FlipTableConverters.fromIterable(orgRecords, PrettyPrintAttachments.class));
+				} else {
+					logger.info("::orgnnr:"+firmalt.getAiorg() +", Already downloaded today.");
+				}
+				logRecords.addAll(orgRecords);
+			})));
+			scope.join();
+		} finally {
+			trace.finish();
+		}
 		
 	}
 	
@@ -398,7 +860,7 @@ public class ActionsServiceManager {
        logger.info("::putDagsobjorAttachmentsToPath() start running, time="+now.format(formatter));
 		
 		List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
-		FirmaltDao firmalt = firmaltDaoService.getFirmaltDao(orgnr);
+		FirmaltDao firmalt = firmaltCache.get(orgnr);
 
 		if (firmalt == null) {
 			throw new RuntimeException("Could not find FIRMALT record on orgnr:"+orgnr);
@@ -406,29 +868,76 @@ public class ActionsServiceManager {
 		
 		logger.info("::orgnnr:" + firmalt.getAiorg() + ", record=" + ReflectionToStringBuilder.toString(firmalt));
 		logger.info("::orgnnr:" + firmalt.getAiorg() + ", get Dagsoppgjors");
-		if (!isDownloadedToday(firmalt)) {
-			logRecords.addAll(getDagsoppgjor(firmalt));
-
-			logger.info("::orgnnr:" + firmalt.getAiorg() + ", download of Dagsoppgjors attachments is executed.");
-			logger.info(FlipTableConverters.fromIterable(logRecords, PrettyPrintAttachments.class));
-		} else {
-			logger.info("::orgnnr:" + firmalt.getAiorg() + ", Already downloaded today.");
+		RunTrace trace = runTraceRecorder.begin("putDagsobjorAttachmentsToPath("+orgnr+")");
+		OrgTrace orgTrace = trace.org(firmalt.getAiorg());
+		try {
+			if (!hasAccess(firmalt, orgTrace)) {
+				return;
+			}
+			logRecords.addAll(retryJournaled(firmalt, orgTrace));
+			if (!isDownloadedToday(firmalt)) {
+				logRecords.addAll(getDagsoppgjorOnce(firmalt, orgTrace));
+	
+				logger.info("::orgnnr:" + firmalt.getAiorg() + ", download of Dagsoppgjors attachments is executed.");
+				logger.info(FlipTableConverters.fromIterable(logRecords, PrettyPrintAttachments.class));
+			} else {
+				logger.info("::orgnnr:" + firmalt.getAiorg() + ", Already downloaded today.");
+			}
+		} catch (RuntimeException e) {
+			orgTrace.setError(e.getMessage());
+			throw e;
+		} finally {
+			trace.finish();
 		}
 		
 	}		
 	
 	
-	private List<PrettyPrintAttachments> getDagsoppgjor(FirmaltDao firmalt) {
+	/*
+	 * Single-flight per orgnr: a trigger while a run is in flight joins it, and gets the same attachments.
+	 * Across nodes, the run holds the orgnr lease in ClusterCoordinator. The FIRMALT record is then re-read, and download state 
+	 * flushed before release, so next node sees it. Downloaded today is checked again inside the flight. 
+	 * A lost lease aborts the run, without updating FIRMALT.aidato.
+	 */
+	private List<PrettyPrintAttachments> getDagsoppgjorOnce(FirmaltDao firmalt, OrgTrace orgTrace) {
+		return runCoordinator.run(firmalt.getAiorg(), () -> {
+			if (!clusterCoordinator.acquire(firmalt.getAiorg())) {
+				orgTrace.setError("Lease held by other node");
+				return new ArrayList<PrettyPrintAttachments>();
+			}
+			try {
+				FirmaltDao current = firmalt;
+				if (clusterCoordinator.isEnabled()) {
+					current = firmaltCache.reload(firmalt.getAiorg());
+				}
+				if (current == null || isDownloadedToday(current)) {
+					return new ArrayList<PrettyPrintAttachments>();
+				}
+				return getDagsoppgjor(current, orgTrace);
+			} catch (LeaseLostException e) {
+				logger.warn(e.getMessage());
+				orgTrace.setError(e.getMessage());
+				return new ArrayList<PrettyPrintAttachments>();
+			} finally {
+				if (clusterCoordinator.isEnabled()) {
+					stateWriter.flush();
+				}
+				clusterCoordinator.release(firmalt.getAiorg());
+			}
+		});
+	}
+	
+	private List<PrettyPrintAttachments> getDagsoppgjor(FirmaltDao firmalt, OrgTrace orgTrace) {
 		List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
 		LocalDate latestDownloadDate = getLatestDownloadDate(firmalt);
 		
 		List<MessagesHalRepresentation> dagsobjors = new ArrayList<MessagesHalRepresentation>();
 		
-		List<MessagesHalRepresentation> dagsobjorsUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, latestDownloadDate,firmalt, Status.Ulest);
+		List<MessagesHalRepresentation> dagsobjorsUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, latestDownloadDate,firmalt, Status.Ulest, orgTrace);
 		dagsobjors.addAll(dagsobjorsUlest);
 		logger.info("dagsobjorsUlest: On createdDate="+latestDownloadDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Ulest.getCode() );
 		
-		List<MessagesHalRepresentation> dagsobjorsLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, latestDownloadDate,firmalt, Status.Lest);
+		List<MessagesHalRepresentation> dagsobjorsLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.Dagsobjor, ServiceEdition.Dagsobjor, latestDownloadDate,firmalt, Status.Lest, orgTrace);
 		dagsobjors.addAll(dagsobjorsLest);
 		logger.info("dagsobjorsLest: On createdDate="+latestDownloadDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Lest.getCode() );
 		
@@ -438,21 +947,30 @@ public class ActionsServiceManager {
 		* Har en rolle som "Regnskapsmedarbeider" vil en uansett ha tilgang til å laste ned PDF- og e2b-fil fra Altinn og vil ikke bli berørt av endringen.
 		 */
 		//TODO: To be removed when 5012/171208 is working. Planned to work  2018-03/2018-04
-		List<MessagesHalRepresentation> dagsobjorsFIXUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, latestDownloadDate,firmalt, Status.Ulest);
+		List<MessagesHalRepresentation> dagsobjorsFIXUlest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, latestDownloadDate,firmalt, Status.Ulest, orgTrace);
 		dagsobjors.addAll(dagsobjorsFIXUlest);
 		logger.info("dagsobjorsFIXUlest On createdDate="+latestDownloadDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Ulest.getCode() );
 		
-		List<MessagesHalRepresentation> dagsobjorsFIXLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, latestDownloadDate,firmalt, Status.Lest);
+		List<MessagesHalRepresentation> dagsobjorsFIXLest = getMessages(ServiceOwner.Skatteetaten,ServiceCode.DagsobjorFIX, ServiceEdition.DagsobjorFIX, latestDownloadDate,firmalt, Status.Lest, orgTrace);
 		dagsobjors.addAll(dagsobjorsFIXLest);
 		logger.info("dagsobjorsFIXLest On createdDate="+latestDownloadDate +", " + dagsobjors.size() +" messages found on ServiceOwner="+ServiceOwner.Skatteetaten.getCode()+", ServiceCode="+ServiceCode.Dagsobjor.getCode()+", ServiceEdition="+ServiceEdition.Dagsobjor.getCode()+", Status="+Status.Lest.getCode() );
 		
+		checkpointLog.start(firmalt.getAiorg(), firmalt.getAidato());
 		dagsobjors.forEach((message) -> {
-			logRecords.addAll(getAttachments(message, firmalt));
+			clusterCoordinator.checkHeld(firmalt.getAiorg());
+			logRecords.addAll(getAttachments(message, firmalt, orgTrace));
 		});					
 
+		if (draining) {
+			logger.warn("Orgnr:"+firmalt.getAiorg()+ ", shutting down, run is left in checkpoint log for resume.");
+			return logRecords;
+		}
+		attachmentWriter.await(firmalt.getAipath());
+		clusterCoordinator.checkHeld(firmalt.getAiorg());
 		if (!dagsobjors.isEmpty()) {
-			updateDownloadDato(firmalt);
+			updateDownloadDato(firmalt, orgTrace);
 		}
+		checkpointLog.end(firmalt.getAiorg());
 		logger.info("Orgnr:"+firmalt.getAiorg()+ ", " +dagsobjors.size()+" Dagsoppgjor downloaded, with "+logRecords.size()+" attachments.");
 	
 		return logRecords;
@@ -478,7 +996,7 @@ public class ActionsServiceManager {
 	
 	
 	
-	private void updateDownloadDato(FirmaltDao firmalt) {
+	private void updateDownloadDato(FirmaltDao firmalt, OrgTrace orgTrace) {
 		LocalDateTime now = LocalDateTime.now();
 		String nowDate = now.format(dateFormatter);
 		int aidato = Integer.valueOf(nowDate);
@@ -488,7 +1006,9 @@ public class ActionsServiceManager {
 		
 		firmalt.setAidato(aidato);
 		firmalt.setAitid(aitid);
-		firmaltDaoService.updateAiDatoAndAiTid(firmalt);
+		long start = System.nanoTime();
+		firmaltCache.updateAiDatoAndAiTid(firmalt);
+		orgTrace.addDbUpdate(elapsedMs(start));
 		
 		logger.info("Orgnr:"+firmalt.getAiorg()+" updated; aidato="+firmalt.getAidato()+", aitid="+firmalt.getAitid());
 		
@@ -519,54 +1039,219 @@ public class ActionsServiceManager {
 	}
 	
 	/*
-	 * Get all attachments in message, e.i. PDF and XML
+	 * Get all attachments in message, e.i. PDF and XML. 
+	 * A failing message detail or attachment is journaled for retry, see RetryJournal, the rest is still downloaded.
 	 */
-	private List<PrettyPrintAttachments> getAttachments(MessagesHalRepresentation message, FirmaltDao firmalt) {
-		List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
+	private List<PrettyPrintAttachments> getAttachments(MessagesHalRepresentation message, FirmaltDao firmalt, OrgTrace orgTrace) {
+		return getAttachments(message, firmalt, orgTrace, () -> {});
+	}
+
+	/*
+	 * As above, messageDone is also run when every attachment is written or journaled.
+	 */
+	private List<PrettyPrintAttachments> getAttachments(MessagesHalRepresentation message, FirmaltDao firmalt, OrgTrace orgTrace, Runnable messageDone) {
 		String self = message.getLinks().getLinksBy("self").get(0).getHref();
+		MessageTrace messageTrace = orgTrace.message(message.getMessageId());
 		
 		URI uri = URI.create(self);
 		//Get specific message
-		MessagesHalRepresentation halMessage = getMessage(uri, firmalt);
+		MessagesHalRepresentation halMessage;
+		if (draining) {
+			return new ArrayList<PrettyPrintAttachments>();
+		}
+		if (checkpointLog.isMessageDone(firmalt.getAiorg(), message.getMessageId())) {
+			logger.info("Orgnr:"+firmalt.getAiorg()+ ", message "+message.getMessageId()+" already done in resumed run, skipped.");
+			return new ArrayList<PrettyPrintAttachments>();
+		}
+		try {
+			halMessage = getMessage(uri, firmalt, orgTrace, messageTrace);
+		} catch (RuntimeException e) {
+			RetryEntry entry = new RetryEntry();
+			entry.setType(RetryEntry.MESSAGE);
+			entry.setOrgnr(firmalt.getAiorg());
+			entry.setMessageId(message.getMessageId());
+			entry.setUri(self);
+			retryJournal.enqueue(entry, e.getMessage());
+			return new ArrayList<PrettyPrintAttachments>();
+		}
+		
+		List<CompletableFuture<?>> written = Collections.synchronizedList(new ArrayList<CompletableFuture<?>>());
+		List<PrettyPrintAttachments> logRecords = getAttachments(halMessage, firmalt, orgTrace, messageTrace, written);
+		if (!draining) {
+			//done when every attachment is written or journaled, a resumed run then skips the message detail
+			CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0]))
+					.whenComplete((v, e) -> {
+						checkpointLog.message(firmalt.getAiorg(), message.getMessageId());
+						messageDone.run();
+					});
+		}
 		
+		return logRecords;
+
+	}	
+
+	/*
+	 * written collects one future per attachment, completed when it is written or journaled.
+	 */
+	private List<PrettyPrintAttachments> getAttachments(MessagesHalRepresentation halMessage, FirmaltDao firmalt, OrgTrace orgTrace, MessageTrace messageTrace, List<CompletableFuture<?>> written) {
 		List<Link> attachmentsLink =halMessage.getLinks().getLinksBy("attachment");
 		
-		attachmentsLink.forEach((attLink) -> {
-			URI attUri = URI.create(attLink.getHref());
-			//Prefix Altinn-name with created_date
-			StringBuilder writeFile;
-			if (attLink.getName().endsWith(".pdf") || attLink.getName().endsWith(".xml")) { 
-				writeFile = new StringBuilder(halMessage.getCreatedDate().toString()).append("-").append(attLink.getName());
-			} else {
-				/*2018-03: Could be lead to problem in future if xml name is changed.
-				 * be aware....
-				 */
-				if (attLink.getName().contains("xml"))  {
-					writeFile = new StringBuilder(halMessage.getCreatedDate().toString()).append("-").append(attLink.getName()).append(".xml");
+		try (TaskScope<PrettyPrintAttachments> scope = taskExecution.open(e -> e instanceof CircuitOpenException)) {
+			attachmentsLink.forEach((attLink) -> scope.fork(() -> getAttachment(attLink, halMessage, firmalt, orgTrace, messageTrace, written)));
+			List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
+			scope.join().forEach(log -> {
+				if (log != null) {
+					logRecords.add(log);
+				}
+			});
+			
+			return logRecords;
+		}
+
+	}	
+
+	/*
+	 * One attachment, null if skipped or journaled for retry. CircuitOpenException is journaled, and in platform/virtual mode 
+	 * rethrown to cancel siblings. In serial mode the run continues as before, each remaining attachment is journaled.
+	 */
+	private PrettyPrintAttachments getAttachment(Link attLink, MessagesHalRepresentation halMessage, FirmaltDao firmalt, OrgTrace orgTrace, MessageTrace messageTrace, List<CompletableFuture<?>> written) {
+		URI attUri = URI.create(attLink.getHref());
+		String writeFile = getWriteFile(attLink, halMessage);
+		if (draining) {
+			return null;
+		}
+		if (checkpointLog.isDone(firmalt.getAiorg(), writeFile)) {
+			logger.info("Orgnr:"+firmalt.getAiorg()+ ", "+writeFile+" already written in resumed run, skipped.");
+			return null;
+		}
+		try {
+			//written behind, a failed write is journaled as a failed download
+			written.add(getAttachment(attUri, writeFile, halMessage.getMessageId(), firmalt, orgTrace, messageTrace.attachment(writeFile)).whenComplete((bytes, e) -> {
+				if (e == null) {
+					checkpointLog.attachment(firmalt.getAiorg(), writeFile);
 				} else {
-					writeFile = new StringBuilder(halMessage.getCreatedDate().toString()).append("-").append(attLink.getName()).append(".pdf");
+					retryJournal.enqueue(getRetryEntry(attLink, halMessage, firmalt, writeFile), e.getMessage());
 				}
+			}));
+		} catch (RuntimeException e) {
+			retryJournal.enqueue(getRetryEntry(attLink, halMessage, firmalt, writeFile), e.getMessage());
+			if (e instanceof CircuitOpenException && taskExecution.getMode() != TaskExecution.Mode.serial) {
+				throw e;
 			}
-			getAttachment(attUri, writeFile.toString(), firmalt);
-			PrettyPrintAttachments log = new PrettyPrintAttachments(firmalt.getAiorg(), LocalDateTime.now().toString(),halMessage.getCreatedDate().toString(), writeFile.toString(), halMessage.getServiceOwner(), halMessage.getStatus() );
-			logRecords.add(log);
-			
-		});
+			return null;
+		}
+		PrettyPrintAttachments log = new PrettyPrintAttachments(firmalt.getAiorg(), LocalDateTime.now().toString(),halMessage.getCreatedDate().toString(), writeFile, halMessage.getServiceOwner(), halMessage.getStatus() );
 		
-		return logRecords;
+		return log;
 
 	}	
 
+	private RetryEntry getRetryEntry(Link attLink, MessagesHalRepresentation halMessage, FirmaltDao firmalt, String writeFile) {
+		RetryEntry entry = new RetryEntry();
+		entry.setType(RetryEntry.ATTACHMENT);
+		entry.setOrgnr(firmalt.getAiorg());
+		entry.setMessageId(halMessage.getMessageId());
+		entry.setUri(attLink.getHref());
+		entry.setWriteFile(writeFile);
+		entry.setCreatedDate(halMessage.getCreatedDate());
+		entry.setServiceOwner(halMessage.getServiceOwner());
+		entry.setStatus(halMessage.getStatus());
+		return entry;
+	}
+
+	/*
+	 * File name of attachment: Altinn-name prefixed with created_date, .xml or .pdf added if missing.
+	 */
+	static String getWriteFile(Link attLink, MessagesHalRepresentation halMessage) {
+		//Prefix Altinn-name with created_date
+		StringBuilder writeFile;
+		if (attLink.getName().endsWith(".pdf") || attLink.getName().endsWith(".xml")) { 
+			writeFile = new StringBuilder(halMessage.getCreatedDate().toString()).append("-").append(attLink.getName());
+		} else {
+			/*2018-03: Could be lead to problem in future if xml name is changed.
+			 * be aware....
+			 */
+			if (attLink.getName().contains("xml"))  {
+				writeFile = new StringBuilder(halMessage.getCreatedDate().toString()).append("-").append(attLink.getName()).append(".xml");
+			} else {
+				writeFile = new StringBuilder(halMessage.getCreatedDate().toString()).append("-").append(attLink.getName()).append(".pdf");
+			}
+		}
+		return writeFile.toString();
+	}
+
+	/*
+	 * Journaled retries for orgnr, single-flight.
+	 */
+	private List<PrettyPrintAttachments> retryJournaled(FirmaltDao firmalt, OrgTrace orgTrace) {
+		return runCoordinator.run("retry/"+firmalt.getAiorg(), () -> retryFailed(firmalt, orgTrace));
+	}
+
+	/*
+	 * Retry units of work in RetryJournal, with backoff passed, for orgnr.
+	 */
+	private List<PrettyPrintAttachments> retryFailed(FirmaltDao firmalt, OrgTrace orgTrace) {
+		List<PrettyPrintAttachments> logRecords = new ArrayList<PrettyPrintAttachments>();
+		List<RetryEntry> due = retryJournal.due(firmalt.getAiorg());
+		if (!due.isEmpty()) {
+			logger.info("Orgnr:"+firmalt.getAiorg()+ ", retrying "+due.size()+" journaled units of work.");
+		}
+		
+		for (RetryEntry entry : due) {
+			if (draining) {
+				break;
+			}
+			MessageTrace messageTrace = orgTrace.message(entry.getMessageId());
+			try {
+				if (RetryEntry.MESSAGE.equals(entry.getType())) {
+					MessagesHalRepresentation halMessage = getMessage(URI.create(entry.getUri()), firmalt, orgTrace, messageTrace);
+					retryJournal.succeeded(entry);
+					logRecords.addAll(getAttachments(halMessage, firmalt, orgTrace, messageTrace, new ArrayList<CompletableFuture<?>>()));
+				} else {
+					//done when written, for zip:/dir/ when the archive is sealed on await
+					getAttachment(URI.create(entry.getUri()), entry.getWriteFile(), entry.getMessageId(), firmalt, orgTrace, messageTrace.attachment(entry.getWriteFile())).whenComplete((bytes, e) -> {
+						if (e == null) {
+							retryJournal.succeeded(entry);
+						} else {
+							retryJournal.failed(entry, e.getMessage());
+						}
+					});
+					PrettyPrintAttachments log = new PrettyPrintAttachments(firmalt.getAiorg(), LocalDateTime.now().toString(), entry.getCreatedDate(), entry.getWriteFile(), entry.getServiceOwner(), entry.getStatus() );
+					logRecords.add(log);
+				}
+			} catch (CircuitOpenException e) {
+				logger.warn("Orgnr:"+firmalt.getAiorg()+ ", retry postponed to next run. "+e.getMessage());
+				break;
+			} catch (RuntimeException e) {
+				retryJournal.failed(entry, e.getMessage());
+			}
+		}
+		if (!due.isEmpty() && !draining) {
+			try {
+				attachmentWriter.await(firmalt.getAipath());
+			} catch (RuntimeException e) {
+				logger.error("Orgnr:"+firmalt.getAiorg()+ ", retried attachments not flushed. "+e.getMessage());
+			}
+		}
+		
+		return logRecords;
+		
+	}
+
 	/*
 	 * FirmaltDao as param is her due to late fix in model. (logically not really neede.)
 	 */
-	private List<MessagesHalRepresentation> getMessages(URI uri, FirmaltDao firmaltDao){
+	private List<MessagesHalRepresentation> getMessages(URI uri, FirmaltDao firmaltDao, OrgTrace orgTrace){
+		long start = System.nanoTime();
 		HttpEntity<ApiKey> entityHeadersOnly = authorization.getHttpEntity(firmaltDao);
+		orgTrace.addAuth(elapsedMs(start));
 		ResponseEntity<String> responseEntity = null;
 		
 		try {
 
-			responseEntity = restTemplate().exchange(uri, HttpMethod.GET, entityHeadersOnly, String.class); 
+			start = System.nanoTime();
+			responseEntity = exchange(firmaltDao, AdaptiveConcurrencyLimiter.LISTING, () -> restTemplate().exchange(uri, HttpMethod.GET, entityHeadersOnly, String.class)); 
+			orgTrace.addListing(elapsedMs(start));
 
 			if (responseEntity.getStatusCode() != HttpStatus.OK) {
 				logger.error("Error in getMessage for " + uri);
@@ -576,6 +1261,8 @@ public class ActionsServiceManager {
 	
 	        return HalHelper.getMessages(responseEntity.getBody());
 	        
+		} catch (CircuitOpenException e) {
+			throw e;
 		} catch (Exception e) {
 			String errMessage = String.format(" request failed: %s", e.getLocalizedMessage());
 			logger.warn(errMessage, e);
@@ -587,13 +1274,17 @@ public class ActionsServiceManager {
 	/*
 	 * FirmaltDao as param is her due to late fix in model. (logically not really needed.)
 	 */
-	private MessagesHalRepresentation getMessage(URI uri, FirmaltDao firmaltDao){
+	private MessagesHalRepresentation getMessage(URI uri, FirmaltDao firmaltDao, OrgTrace orgTrace, MessageTrace messageTrace){
+		long start = System.nanoTime();
 		HttpEntity<ApiKey> entityHeadersOnly = authorization.getHttpEntity(firmaltDao);
+		orgTrace.addAuth(elapsedMs(start));
 		ResponseEntity<String> responseEntity = null;
 		
 		try {
 
-			responseEntity = restTemplate().exchange(uri, HttpMethod.GET, entityHeadersOnly, String.class); 
+			start = System.nanoTime();
+			responseEntity = exchange(firmaltDao, AdaptiveConcurrencyLimiter.DETAIL, () -> restTemplate().exchange(uri, HttpMethod.GET, entityHeadersOnly, String.class)); 
+			messageTrace.setDetailMs(elapsedMs(start));
 
 			if (responseEntity.getStatusCode() != HttpStatus.OK) {
 				logger.error("Error in getMessage for " + uri);
@@ -603,6 +1294,8 @@ public class ActionsServiceManager {
 	
 	        return HalHelper.getMessage(responseEntity.getBody());
 	        
+		} catch (CircuitOpenException e) {
+			throw e;
 		} catch (Exception e) {
 			String errMessage = String.format(" request failed: %s", e.getLocalizedMessage());
 			logger.warn(errMessage, e);
@@ -613,26 +1306,62 @@ public class ActionsServiceManager {
 
 	/*
 	 * FirmaltDao as param is her due to late fix in model. (logically not really needed.)
+	 * Returns when downloaded, the future completes when written, see AttachmentWriter.
+	 */
+	private CompletableFuture<Long> getAttachment(URI uri, String writeFile, String messageId, FirmaltDao firmaltDao, OrgTrace orgTrace, AttachmentTrace attachmentTrace) {
+		inFlightDownloads.incrementAndGet();
+		try {
+			return fetchAttachment(uri, writeFile, messageId, firmaltDao, orgTrace, attachmentTrace);
+		} finally {
+			synchronized (inFlightDownloads) {
+				inFlightDownloads.decrementAndGet();
+				inFlightDownloads.notifyAll();
+			}
+		}
+	}
+
+	/*
+	 * Body is streamed through a pooled direct buffer into a spool file, and handed off to AttachmentWriter.
+	 * SHA-256 is computed from the same buffer, a short body or digest mismatch fails the download, and it is journaled for retry.
 	 */
-	private void getAttachment(URI uri, String writeFile, FirmaltDao firmaltDao) {
+	private CompletableFuture<Long> fetchAttachment(URI uri, String writeFile, String messageId, FirmaltDao firmaltDao, OrgTrace orgTrace, AttachmentTrace attachmentTrace) {
+		long start = System.nanoTime();
 		HttpEntity<ApiKey> entityHeadersOnly = authorization.getHttpEntityFileDownload(firmaltDao);
-		ResponseEntity<byte[]> responseEntity = null;
+		orgTrace.addAuth(elapsedMs(start));
+		Path spool = null;
 
 		try {
 			logger.debug("getAttachment, uri=" + uri);
+			final Path spoolFile = attachmentWriter.newSpoolFile();
+			spool = spoolFile;
 
-			responseEntity = restTemplate().exchange(uri.toString(), HttpMethod.GET, entityHeadersOnly, byte[].class, "1");
+			start = System.nanoTime();
+			StreamChecksum checksum = taskExecution.withAltinnPermit(() -> exchange(firmaltDao, AdaptiveConcurrencyLimiter.ATTACHMENT, rtt -> restTemplate().execute(uri, HttpMethod.GET, 
+					request -> request.getHeaders().putAll(entityHeadersOnly.getHeaders()), 
+					response -> {
+						//time to first byte, the body takes time by size, spool write and buffer wait
+						rtt.stop();
+						if (response.getStatusCode() != HttpStatus.OK) {
+							logger.error("Error in getAttachment for " + uri);
+							throw new RuntimeException(response.getStatusCode().toString());
+						}
+						StreamChecksum streamed = StreamChecksum.forResponse(response.getHeaders());
+						bufferPool.transfer(response.getBody(), spoolFile, response.getHeaders().getContentLength(), streamed);
+						streamed.verify(response.getHeaders());
+						return streamed;
+					})));
+			attachmentTrace.setDownloadMs(elapsedMs(start));
+			attachmentTrace.setBytes(checksum.getBytes());
 
-			if (responseEntity.getStatusCode() != HttpStatus.OK) {
-				logger.error("Error in getAttachment for " + uri);
-				throw new RuntimeException(responseEntity.getStatusCode().toString());
-			} else {
-				logger.debug("getAttachment:responseEntity.getBody"+responseEntity.getBody());
-				writeToFile(writeFile, responseEntity, firmaltDao);
-
-			}
+			final long writeStart = System.nanoTime();
+			return attachmentWriter.publish(spoolFile, firmaltDao.getAipath(), writeFile, checksum.getSha256(), firmaltDao.getAiorg(), messageId)
+					.whenComplete((written, e) -> attachmentTrace.setWriteMs(elapsedMs(writeStart)));
 
+		} catch (CircuitOpenException e) {
+			deleteQuietly(spool);
+			throw e;
 		} catch (Exception e) {
+			deleteQuietly(spool);
 			String errMessage = String.format(" request failed: %s", e.getLocalizedMessage());
 			logger.warn(errMessage, e);
 			throw new RuntimeException(errMessage);
@@ -640,51 +1369,45 @@ public class ActionsServiceManager {
 
 	}
 
-	
-	/*
-	 * For test
-	 * FileOutputStream fos = new FileOutputStream("/usr/local/Cellar/tomcat/8.0.33/libexec/webapps/altinn-proxy/WEB-INF/resources/files/" + writeFile);
-	 */
-	private void writeToFile(String writeFile, ResponseEntity<byte[]> responseEntity, FirmaltDao firmaltDao) throws FileNotFoundException, IOException {
-		ByteArrayInputStream bis = new ByteArrayInputStream(responseEntity.getBody());
-		FileOutputStream fos = new FileOutputStream(firmaltDao.getAipath() + writeFile);
-		byte[] buffer = new byte[1024];
-		int len = 0;
-		while ((len = bis.read(buffer)) > 0) {
-			fos.write(buffer, 0, len);
+	private void deleteQuietly(Path path) {
+		if (path == null) {
+			return;
 		}
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			logger.warn("Could not delete " + path + ". " + e.getMessage());
+		}
+	}
 
-		fos.close();
-		bis.close();
+	/*
+	 * All outbound resource calls: adaptive concurrency limit, then circuit and rate limit per host. 
+	 * Waiting for a concurrency permit holds no rate token or half-open trial slot.
+	 */
+	private <T> T exchange(FirmaltDao firmaltDao, String type, Supplier<T> call) {
+		return exchange(firmaltDao, type, rtt -> call.get());
+	}
 
-		logger.info("File: " + firmaltDao.getAipath() + writeFile + " saved on disk.");
+	/*
+	 * As above, latency for the limiter is sampled from the host guard's permit, so waiting for a rate token is not latency. 
+	 * call may stop it earlier, see getAttachment.
+	 */
+	private <T> T exchange(FirmaltDao firmaltDao, String type, Function<AdaptiveConcurrencyLimiter.Rtt, T> call) {
+		return concurrencyLimiter.call(type, rtt -> hostGuard.call(firmaltDao.getAihost(), () -> {
+			rtt.start();
+			return call.apply(rtt);
+		}));
+	}
 
+	private long elapsedMs(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1_000_000;
 	}
 	
-	
 	/**
-	 * @return List<FirmaltDao> with all params set.
+	 * @return List<FirmaltDao> with all params set, from {@linkplain FirmaltCache}.
 	 */
 	private List<FirmaltDao> getSaneFirmaltRecords()  {
-		List<FirmaltDao> firmaltDaoList =firmaltDaoService.get();
-		
-		if (firmaltDaoList.size() == 0) {
-			throw new RuntimeException("Cannot find any records in firmalt, based on keys: aifirm, aiorg");
-		}
-		
-		
-		firmaltDaoList.forEach((firmalt) -> {
-			try {
-				firmalt.hasSaneValues();
-				logger.info("Firmalt record seems ok, record="+ReflectionToStringBuilder.toString(firmalt));
-			} catch (RuntimeException e) {
-				logger.error("Firmalt record has suspicious values, record="+ReflectionToStringBuilder.toString(firmalt), e);
-				throw e;
-			}
-		} ); 
-		
-		
-		return firmaltDaoList;
+		return firmaltCache.getSane();
 	}
 	
 }
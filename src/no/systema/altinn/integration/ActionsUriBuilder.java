@@ -81,6 +81,31 @@ public class ActionsUriBuilder {
 
 	}
 
+	/**
+	 * Gets all messages for the given 'who', here orgnr, changed at or after lastChangedDateTime.
+	 * 
+	 * Used for incremental refresh of {@linkplain InboxMirror}. Inclusive, so messages sharing the watermark timestamp,
+	 * but not in former delta, are not lost. Those already mirrored are upserted on MessageId.
+	 * 
+	 * @param host
+	 * @param orgnr
+	 * @param lastChangedDateTime
+	 * @return URI, ex. GET {who}/Messages?$filter=LastChangedDateTime ge datetime'2018-01-30T09:26:37.883'
+	 */
+	public static URI messages(String host, String orgnr, LocalDateTime lastChangedDateTime) {
+
+		UriComponents uriComponents = UriComponentsBuilder.newInstance()
+				.scheme("https")
+				.host(host)
+				.path("/api/{who}/messages")
+			    .query("$filter={expand1}")
+			    .buildAndExpand(orgnr, "LastChangedDateTime ge datetime\'"+lastChangedDateTime+"\'")
+			    .encode();
+
+		return uriComponents.toUri();
+
+	}
+
 	/**
 	 * Gets all messages for the given 'who', here orgnr. These can optionally be retrieved in the language specified.
 	 * 
@@ -156,6 +181,34 @@ public class ActionsUriBuilder {
 
 	}	
 	
+	/**
+	 * Gets all messages for the given 'who', here orgnr, created in window [from, to).
+	 * 
+	 * Filtered on Serviceowner, e.g. SKD (=Skatteetaten), ServiceCode, ServiceEdition and CreatedDate (ge from, lt to).
+	 * 
+	 * @param host
+	 * @param orgnr
+	 * @param serviceOwneer
+	 * @param serviceCode
+	 * @param serviceEdition
+	 * @param from, inclusive
+	 * @param to, exclusive
+	 * @return URI, ex. GET {who}/Messages?$filter=... and CreatedDate ge datetime'2018-01-01' and CreatedDate lt datetime'2018-01-08'
+	 */
+	public static URI messages(String host, String orgnr, ServiceOwner serviceOwner, ServiceCode serviceCode, ServiceEdition serviceEdition, LocalDate from, LocalDate to) {
+		UriComponents uriComponents = UriComponentsBuilder.newInstance()
+				.scheme("https")
+				.host(host)
+				.path("/api/{who}/messages")
+			    .query("$filter={expand1}")
+			    .buildAndExpand(orgnr, "ServiceOwner eq \'"+serviceOwner+"\' and ServiceCode eq \'"+serviceCode.getCode()+"\' and ServiceEdition eq "+serviceEdition.getCode() +  
+			    		" and CreatedDate ge datetime\'"+from+"\' and CreatedDate lt datetime\'"+to+"\'")
+			    .encode();
+
+		return uriComponents.toUri();
+
+	}	
+	
 	/**
 	 * Gets all messages for the given 'who', here orgnr. 
 	 * 
@@ -0,0 +1,286 @@
+package no.systema.altinn.integration;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.altinn.entities.PrettyPrintLimiterSample;
+
+/**
+ * AIMD concurrency limiter for outbound calls to Altinn. <br>
+ * 
+ * The permitted number of in-flight requests grows additively (+1 per limit successful calls) while latency is stable,
+ * and is cut multiplicative on 429/5xx/timeouts or when latency exceeds baseline * tolerance. <br>
+ * Baseline is the minimum latency of the last altinn.limiter.rtt.window successful calls of the same type, so cheap listings
+ * are not compared to large attachments, and a lasting latency shift becomes the new baseline within one window. <br>
+ * Calls rejected by {@linkplain AltinnHostGuard} never reached Altinn, and are not sampled. <br>
+ * Latency is sampled between {@link Rtt#start()} and {@link Rtt#stop()}, if the call marks them, so waits for a rate token 
+ * before the request, and streaming a body of any size after the response headers, are not taken as latency.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("adaptiveConcurrencyLimiter")
+public class AdaptiveConcurrencyLimiter {
+	private static Logger logger = LogManager.getLogger(AdaptiveConcurrencyLimiter.class);
+	public static final String LISTING = "listing";
+	public static final String DETAIL = "detail";
+	public static final String ATTACHMENT = "attachment";
+	public static final String OTHER = "other";
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition permitReleased = lock.newCondition();
+	private final Deque<PrettyPrintLimiterSample> samples = new LinkedList<PrettyPrintLimiterSample>();
+	private final Map<String, RttWindow> baselines = new TreeMap<String, RttWindow>();
+
+	private double limit = -1;
+	private int inFlight;
+
+	@Value("${altinn.limiter.initial}")
+	int initialLimit;
+
+	@Value("${altinn.limiter.min}")
+	int minLimit;
+
+	@Value("${altinn.limiter.max}")
+	int maxLimit;
+
+	@Value("${altinn.limiter.backoff}")
+	double backoff;
+
+	@Value("${altinn.limiter.tolerance}")
+	double tolerance;
+
+	@Value("${altinn.limiter.samples}")
+	int keepSamples;
+
+	@Value("${altinn.limiter.wait.ms}")
+	long waitMs;
+
+	@Value("${altinn.limiter.rtt.window}")
+	int rttWindow;
+
+	/*
+	 * Last rttWindow latencies of one call type, ring buffer. Baseline is the minimum.
+	 */
+	private static class RttWindow {
+		final long[] rtts;
+		int next;
+		int count;
+
+		RttWindow(int size) {
+			rtts = new long[Math.max(size, 1)];
+		}
+
+		void add(long rttMs) {
+			rtts[next] = rttMs;
+			next = (next + 1) % rtts.length;
+			count = Math.min(count + 1, rtts.length);
+		}
+
+		long min() {
+			long min = Long.MAX_VALUE;
+			for (int i = 0; i < count; i++) {
+				min = Math.min(min, rtts[i]);
+			}
+			return count == 0 ? 0 : min;
+		}
+	}
+
+	/**
+	 * Latency of one call. Measured from {@link #start()}, or from the permit if not marked, 
+	 * to {@link #stop()}, or to the end of the call if not marked.
+	 */
+	public static class Rtt {
+		private long start;
+		private long stop;
+
+		private Rtt(long start) {
+			this.start = start;
+		}
+
+		/**
+		 * Mark request sent, e.g. when the host guard has let the call through.
+		 */
+		public void start() {
+			start = System.nanoTime();
+			stop = 0;
+		}
+
+		/**
+		 * Mark response received, e.g. on response headers before a body is streamed. First mark counts.
+		 */
+		public void stop() {
+			if (stop == 0) {
+				stop = System.nanoTime();
+			}
+		}
+
+		long elapsedMs() {
+			return TimeUnit.NANOSECONDS.toMillis((stop != 0 ? stop : System.nanoTime()) - start);
+		}
+	}
+
+	/**
+	 * Execute call when an in-flight permit is available, and adjust limit on outcome and latency of the whole call.
+	 * 
+	 * @param type, of call, baseline latency is kept per type, e.g. {@link #LISTING}
+	 * @param call
+	 * @return result of call
+	 * @throws CircuitOpenException if no permit within altinn.limiter.wait.ms
+	 */
+	public <T> T call(String type, Supplier<T> call) {
+		return call(type, rtt -> call.get());
+	}
+
+	/**
+	 * As {@link #call(String, Supplier)}, latency is sampled as marked by call on its {@link Rtt}.
+	 * 
+	 * @param type, of call, baseline latency is kept per type, e.g. {@link #LISTING}
+	 * @param call
+	 * @return result of call
+	 * @throws CircuitOpenException if no permit within altinn.limiter.wait.ms
+	 */
+	public <T> T call(String type, Function<Rtt, T> call) {
+		acquire();
+		Rtt rtt = new Rtt(System.nanoTime());
+		try {
+			T result = call.apply(rtt);
+			release(type, rtt.elapsedMs(), Outcome.OK);
+			return result;
+		} catch (CircuitOpenException e) {
+			release(type, rtt.elapsedMs(), Outcome.REJECTED);
+			throw e;
+		} catch (RuntimeException e) {
+			release(type, rtt.elapsedMs(), AltinnHostGuard.isHostFailure(e) ? Outcome.DROPPED : Outcome.OK);
+			throw e;
+		}
+	}
+
+	enum Outcome {
+		OK, DROPPED, REJECTED
+	}
+
+	public double getLimit() {
+		lock.lock();
+		try {
+			return currentLimit();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return baseline latency per call type, in ms
+	 */
+	public Map<String, Long> getBaselines() {
+		lock.lock();
+		try {
+			Map<String, Long> result = new TreeMap<String, Long>();
+			baselines.forEach((type, window) -> result.put(type, window.min()));
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return latest samples, newest first
+	 */
+	public List<PrettyPrintLimiterSample> getSamples() {
+		lock.lock();
+		try {
+			return new ArrayList<PrettyPrintLimiterSample>(samples);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void acquire() {
+		lock.lock();
+		try {
+			long remaining = TimeUnit.MILLISECONDS.toNanos(waitMs);
+			while (inFlight >= (int) currentLimit()) {
+				if (remaining <= 0) {
+					throw new CircuitOpenException("No Altinn concurrency permit within " + waitMs + " ms, limit=" + (int) currentLimit());
+				}
+				remaining = permitReleased.awaitNanos(remaining);
+			}
+			inFlight++;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CircuitOpenException("Interrupted waiting for Altinn concurrency permit");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Adjust limit on one completed call, and release its permit. Rejected calls only release.
+	 */
+	void release(String type, long rttMs, Outcome outcome) {
+		lock.lock();
+		try {
+			inFlight--;
+			permitReleased.signalAll();
+			if (outcome == Outcome.REJECTED) {
+				return;
+			}
+			RttWindow window = baselines.computeIfAbsent(type, t -> new RttWindow(rttWindow));
+			long baselineMs = window.min();
+			double before = currentLimit();
+			boolean spike = baselineMs > 0 && rttMs > baselineMs * tolerance;
+			String result;
+			if (outcome == Outcome.DROPPED || spike) {
+				limit = Math.max(minLimit, before * backoff);
+				result = outcome == Outcome.DROPPED ? "drop" : "latency";
+			} else {
+				limit = Math.min(maxLimit, before + 1.0 / before);
+				result = "ok";
+			}
+			if (outcome == Outcome.OK) {
+				window.add(rttMs);
+			}
+			if ((int) before != (int) limit) {
+				logger.info("Altinn concurrency limit " + (int) before + " -> " + (int) limit + ", type=" + type + ", rtt=" + rttMs + " ms, baseline=" + baselineMs + " ms, outcome=" + result);
+			}
+			samples.addFirst(new PrettyPrintLimiterSample(LocalDateTime.now().toString(), type, rttMs, inFlight + 1, (int) limit, result));
+			while (samples.size() > Math.max(keepSamples, 1)) {
+				samples.removeLast();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private double currentLimit() {
+		if (limit < 0) {
+			limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+		}
+		return limit;
+	}
+
+}
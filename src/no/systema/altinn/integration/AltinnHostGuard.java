@@ -0,0 +1,157 @@
+package no.systema.altinn.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import no.systema.altinn.entities.PrettyPrintHostGuard;
+
+/**
+ * Protects each Altinn host, as in FIRMALT.aihost, with a {@linkplain CircuitBreaker} and a {@linkplain TokenBucket}. <br>
+ * 
+ * Shared by {@linkplain Authorization} and {@linkplain ActionsServiceManager}, so auth and resource calls
+ * are counted against the same quota. <br>
+ * 
+ * Host failures are: connect/read errors, 5xx and 429. Other 4xx means the host is responding.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("altinnHostGuard")
+public class AltinnHostGuard {
+	private static Logger logger = LogManager.getLogger(AltinnHostGuard.class);
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+	private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+
+	@Value("${altinn.guard.breaker.window}")
+	int breakerWindow;
+
+	@Value("${altinn.guard.breaker.minimum.calls}")
+	int breakerMinimumCalls;
+
+	@Value("${altinn.guard.breaker.failure.rate}")
+	int breakerFailureRate;
+
+	@Value("${altinn.guard.breaker.open.ms}")
+	long breakerOpenMs;
+
+	@Value("${altinn.guard.breaker.halfopen.calls}")
+	int breakerHalfOpenCalls;
+
+	@Value("${altinn.guard.ratelimit.per.second}")
+	double ratePerSecond;
+
+	@Value("${altinn.guard.ratelimit.burst}")
+	int rateBurst;
+
+	@Value("${altinn.guard.ratelimit.wait.ms}")
+	long rateWaitMs;
+
+	@PostConstruct
+	public void init() {
+		if (!(ratePerSecond > 0)) {
+			throw new IllegalStateException("altinn.guard.ratelimit.per.second must be > 0, was " + ratePerSecond);
+		}
+		logger.info("AltinnHostGuard initialized, rate per second=" + ratePerSecond + ", burst=" + rateBurst);
+	}
+
+	/**
+	 * Execute call against host, if permitted by rate limiter and circuit breaker.
+	 * 
+	 * @param host, FIRMALT.aihost
+	 * @param call
+	 * @return result of call
+	 * @throws CircuitOpenException if circuit is open or no rate-permit within altinn.guard.ratelimit.wait.ms
+	 */
+	public <T> T call(String host, Supplier<T> call) {
+		CircuitBreaker breaker = breakers.computeIfAbsent(host, h -> new CircuitBreaker(breakerWindow, breakerMinimumCalls, breakerFailureRate, breakerOpenMs, breakerHalfOpenCalls));
+		long permit = permit(host, breaker);
+
+		try {
+			T result = call.get();
+			breaker.onSuccess(permit);
+			return result;
+		} catch (RuntimeException e) {
+			record(host, breaker, permit, e);
+			throw e;
+		}
+
+	}
+
+	/**
+	 * @return state of all hosts used since startup
+	 */
+	public List<PrettyPrintHostGuard> getStatus() {
+		List<PrettyPrintHostGuard> result = new ArrayList<PrettyPrintHostGuard>();
+		breakers.forEach((host, breaker) -> {
+			TokenBucket bucket = buckets.get(host);
+			result.add(new PrettyPrintHostGuard(host, breaker.getState().name(), breaker.getCalls(), breaker.getFailureRate(),
+					bucket != null ? (int) bucket.getAvailableTokens() : 0));
+		});
+
+		return result;
+	}
+
+	/*
+	 * Circuit first, so calls to an open circuit fail fast without waiting for, or spending, rate tokens.
+	 */
+	private long permit(String host, CircuitBreaker breaker) {
+		long permit = breaker.tryAcquire();
+		if (permit == CircuitBreaker.REJECTED) {
+			throw new CircuitOpenException("Circuit open on " + host + ", failing fast.");
+		}
+
+		TokenBucket bucket = buckets.computeIfAbsent(host, h -> new TokenBucket(ratePerSecond, rateBurst));
+		try {
+			if (!bucket.tryAcquire(rateWaitMs)) {
+				breaker.onIgnored(permit);
+				throw new CircuitOpenException("Rate limit on " + host + ", no permit within " + rateWaitMs + " ms");
+			}
+		} catch (InterruptedException e) {
+			breaker.onIgnored(permit);
+			Thread.currentThread().interrupt();
+			throw new CircuitOpenException("Interrupted waiting for rate limit on " + host);
+		}
+		return permit;
+	}
+
+	private void record(String host, CircuitBreaker breaker, long permit, RuntimeException e) {
+		if (e instanceof CircuitOpenException) {
+			// rejected locally, e.g. by a limiter inside call, never reached host
+			breaker.onIgnored(permit);
+		} else if (isHostFailure(e)) {
+			breaker.onFailure(permit);
+			logger.warn("Host failure on " + host + ", circuit=" + breaker.getState() + ", failureRate=" + breaker.getFailureRate() + "%");
+		} else {
+			breaker.onSuccess(permit);
+		}
+	}
+
+	/**
+	 * @param e
+	 * @return true on connect/read errors, 5xx and 429
+	 */
+	static boolean isHostFailure(RuntimeException e) {
+		if (e instanceof ResourceAccessException || e instanceof HttpServerErrorException) {
+			return true;
+		}
+		if (e instanceof HttpClientErrorException) {
+			return ((HttpClientErrorException) e).getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+		}
+		return false;
+	}
+
+}
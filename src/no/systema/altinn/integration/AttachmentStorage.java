@@ -0,0 +1,49 @@
+package no.systema.altinn.integration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage of attachments other than local directory, selected per FIRMALT row on FIRMALT.aipath. <br>
+ * 
+ * Implemented by {@linkplain ZipArchiveStorage} (zip:/dir/) and {@linkplain S3Storage} (s3://bucket/prefix/).
+ * Any other aipath is a local directory, written by {@linkplain AttachmentWriter} itself. <br>
+ * 
+ * Called on AttachmentWriter threads, content is streamed from the spool file, never buffered whole.
+ * A storage appends each file to {@linkplain FileReadyLog} when it becomes visible, on store or when sealed,
+ * and completes the write when the file is durable. Only then is it counted as done in {@linkplain RunCheckpointLog}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public interface AttachmentStorage {
+
+	/**
+	 * @param aipath, FIRMALT.aipath
+	 * @return true if aipath is for this storage
+	 */
+	boolean accepts(String aipath);
+
+	/**
+	 * @param spool, complete download, deleted by caller
+	 * @param aipath, FIRMALT.aipath
+	 * @param fileName
+	 * @param sha256, of spool, or null
+	 * @param orgnr, for file-ready event
+	 * @param messageId, for file-ready event
+	 * @param done, to complete with bytes stored when durable, at once or later, e.g. on {@link #flush(String)}
+	 * @throws IOException, also if visible at once and file-ready event could not be appended
+	 */
+	void store(Path spool, String aipath, String fileName, String sha256, String orgnr, String messageId, CompletableFuture<Long> done) throws IOException;
+
+	/**
+	 * Make all stored for aipath durable and visible. Called before FIRMALT.aidato is moved.
+	 * 
+	 * @param aipath, FIRMALT.aipath
+	 * @throws IOException
+	 */
+	void flush(String aipath) throws IOException;
+
+}
@@ -0,0 +1,500 @@
+package no.systema.altinn.integration;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Write-behind of attachments to FIRMALT.aipath, often a slow IFS share. <br>
+ *
+ * Downloads stream into a spool file on local disk, altinn.writer.spool.dir, and hand it off here. Network threads then continue with next download.
+ * altinn.writer.threads write from a queue of altinn.writer.queue, a full queue blocks the hand-off. <br>
+ *
+ * The spool file is copied, channel to channel, as .{name}.part in same directory, and renamed atomically to {name}, so consumers never see half-written files.
+ * altinn.writer.fsync: <br>
+ * none - rename after close. <br>
+ * each - force before close. <br>
+ * batch - written files are forced together every altinn.writer.fsync.batch.ms, then renamed, then directory forced. <br>
+ *
+ * FIRMALT.aipath as zip:/dir/ or s3://bucket/prefix/ is stored by that {@linkplain AttachmentStorage} instead, on same threads and queue.
+ * Its write completes when the storage has made it durable, for zip:/dir/ when the archive is sealed. <br>
+ *
+ * XML attachments can be run through {@linkplain XmlRecordExtractor} first, its sidecar is written just before the attachment. <br>
+ *
+ * SHA-256 computed while downloading is recorded in ChecksumManifest after rename. Each file is appended to {@linkplain FileReadyLog} once
+ * visible under its name, before its write completes, so a failed append fails the write and it is journaled. Storages append their own. <br>
+ * With BlobStore enabled, content is written once as blob, and the name is linked to it. Content already stored is not written again.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("attachmentWriter")
+public class AttachmentWriter {
+	private static Logger logger = LogManager.getLogger(AttachmentWriter.class);
+	public enum Fsync { none, each, batch }
+
+	@Value("${altinn.writer.threads}")
+	int threads;
+
+	@Value("${altinn.writer.queue}")
+	int queueSize;
+
+	@Value("${altinn.writer.fsync}")
+	String fsyncProperty;
+
+	@Value("${altinn.writer.fsync.batch.ms}")
+	long fsyncBatchMs;
+
+	@Value("${altinn.writer.spool.dir}")
+	String spoolDirProperty;
+
+	@Autowired
+	ByteBufferPool bufferPool;
+
+	@Autowired
+	ChecksumManifest checksumManifest;
+
+	@Autowired
+	BlobStore blobStore;
+
+	@Autowired
+	List<AttachmentStorage> storages;
+
+	@Autowired
+	XmlRecordExtractor recordExtractor;
+
+	@Autowired
+	FileReadyLog fileReadyLog;
+
+	private Path spoolDir;
+
+	private Fsync fsync;
+	private ThreadPoolExecutor pool;
+	private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor();
+	private final List<Written> unsynced = new ArrayList<Written>();
+	private final Map<String, Set<CompletableFuture<Long>>> pending = new ConcurrentHashMap<String, Set<CompletableFuture<Long>>>();
+	// handed off and not yet run by a writer thread, completed or not
+	private final Map<String, Set<CompletableFuture<Long>>> running = new ConcurrentHashMap<String, Set<CompletableFuture<Long>>>();
+
+	/*
+	 * Temp file written, waiting for rename. With blob, temp is new blob, null if already stored.
+	 */
+	private static class Written {
+		final String dir;
+		final String fileName;
+		final Path temp;
+		final Path target;
+		final long bytes;
+		final String sha256;
+		final boolean blob;
+		final String orgnr;
+		final String messageId;
+		final CompletableFuture<Long> done;
+
+		Written(String dir, String fileName, Path temp, long bytes, String sha256, boolean blob, String orgnr, String messageId, CompletableFuture<Long> done) {
+			this.dir = dir;
+			this.fileName = fileName;
+			this.temp = temp;
+			this.target = Paths.get(dir + fileName);
+			this.bytes = bytes;
+			this.sha256 = sha256;
+			this.blob = blob;
+			this.orgnr = orgnr;
+			this.messageId = messageId;
+			this.done = done;
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		fsync = Fsync.valueOf(fsyncProperty.trim());
+		try {
+			spoolDir = Files.createDirectories(spoolDirProperty.trim().isEmpty() ? Paths.get(System.getProperty("java.io.tmpdir"), "altinn-spool") : Paths.get(spoolDirProperty.trim()));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not create spool directory " + spoolDirProperty, e);
+		}
+		pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), (task, executor) -> {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("AttachmentWriter is shut down");
+			}
+			try {
+				executor.getQueue().put(task);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted waiting for AttachmentWriter queue", e);
+			}
+		});
+		if (fsync == Fsync.batch) {
+			syncExecutor.scheduleWithFixedDelay(this::syncBatch, fsyncBatchMs, fsyncBatchMs, TimeUnit.MILLISECONDS);
+		}
+		logger.info("AttachmentWriter initialized, threads=" + threads + ", queue=" + queueSize + ", fsync=" + fsync);
+	}
+
+	/**
+	 * Write all queued files before shutdown.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdown();
+		try {
+			if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+				logger.warn("AttachmentWriter shut down with " + pool.getQueue().size() + " files not written.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		syncExecutor.shutdownNow();
+		syncBatch();
+	}
+
+	/**
+	 * @return new empty file in altinn.writer.spool.dir, for a download to stream into
+	 * @throws IOException
+	 */
+	public Path newSpoolFile() throws IOException {
+		return Files.createTempFile(spoolDir, "attachment", ".spool");
+	}
+
+	/**
+	 * Copy spool file, from {@link #newSpoolFile()}, to dir + fileName. Spool file is deleted, written or not.
+	 *
+	 * @param spool
+	 * @param dir, FIRMALT.aipath
+	 * @param fileName
+	 * @param sha256, of spool file as downloaded, or null
+	 * @param orgnr, for file-ready event
+	 * @param messageId, for file-ready event
+	 * @return future of bytes written, completed when file is visible under its name
+	 */
+	public CompletableFuture<Long> publish(Path spool, String dir, String fileName, String sha256, String orgnr, String messageId) {
+		CompletableFuture<Long> result = submit(dir, fileName, done -> {
+			if (recordExtractor.accepts(fileName)) {
+				extract(spool, dir, fileName, orgnr, messageId);
+			}
+			write(spool, dir, fileName, sha256, orgnr, messageId, done);
+		});
+		result.whenComplete((bytes, e) -> {
+			if (e instanceof RejectedExecutionException) {
+				deleteQuietly(spool);
+			}
+		});
+		return result;
+	}
+
+	/*
+	 * Spool file to storage, or copied to temp file in dir. Spool file is deleted.
+	 */
+	private void write(Path spool, String dir, String fileName, String sha256, String orgnr, String messageId, CompletableFuture<Long> done) throws IOException {
+		try {
+			AttachmentStorage storage = storage(dir);
+			if (storage != null) {
+				storage.store(spool, dir, fileName, sha256, orgnr, messageId, done);
+				return;
+			}
+			boolean blob = blobStore.isEnabled(sha256);
+			if (blob) {
+				long size = Files.size(spool);
+				boolean exists = blobStore.exists(dir, sha256, size);
+				done.whenComplete((bytes, e) -> blobStore.unpin(dir, sha256));
+				if (exists) {
+					written(new Written(dir, fileName, null, size, sha256, true, orgnr, messageId, done));
+					return;
+				}
+			}
+			Path temp = blob ? blobStore.newTempFile(dir, sha256) : tempFile(dir, fileName);
+			try {
+				written(new Written(dir, fileName, temp, copy(spool, temp), sha256, blob, orgnr, messageId, done));
+			} catch (IOException | RuntimeException e) {
+				deleteQuietly(temp);
+				throw e;
+			}
+		} finally {
+			deleteQuietly(spool);
+		}
+	}
+
+	/*
+	 * Records of XML attachment, written as sidecar before the attachment itself. A failure here is logged, attachment is written anyway.
+	 */
+	private void extract(Path spool, String dir, String fileName, String orgnr, String messageId) {
+		String sidecarName = recordExtractor.sidecarName(fileName);
+		CompletableFuture<Long> done = track(dir);
+		Path sidecar = null;
+		try {
+			sidecar = newSpoolFile();
+			if (recordExtractor.extract(spool, fileName, sidecar)) {
+				write(sidecar, dir, sidecarName, null, orgnr, messageId, done);
+			} else {
+				deleteQuietly(sidecar);
+				done.complete(0L);
+			}
+		} catch (Exception e) {
+			logger.warn("Could not extract records from " + dir + fileName + ". " + e.getMessage());
+			if (sidecar != null) {
+				deleteQuietly(sidecar);
+			}
+			deleteQuietly(tempFile(dir, sidecarName));
+			done.completeExceptionally(e);
+		}
+	}
+
+	/*
+	 * File-ready event, file is visible under its name. In BlobStore manifest mode there is no such file, the event points to the blob.
+	 */
+	private void announce(Written written) throws IOException {
+		String path = written.blob && blobStore.getMode() == BlobStore.Mode.manifest ? blobStore.blob(written.dir, written.sha256).toString() : written.dir + written.fileName;
+		fileReadyLog.committed(written.orgnr, written.messageId, path, written.fileName, written.bytes, written.sha256);
+	}
+
+	private long copy(Path spool, Path temp) throws IOException {
+		try (FileChannel in = FileChannel.open(spool, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long bytes = bufferPool.transfer(in, out, in.size());
+			if (fsync == Fsync.each) {
+				out.force(true);
+			}
+			return bytes;
+		}
+	}
+
+	/*
+	 * .{fileName}.part in dir
+	 */
+	private static Path tempFile(String dir, String fileName) {
+		return Paths.get(dir + "." + fileName + ".part");
+	}
+
+	/**
+	 * Wait for files handed off to dir, failed or not, and flush its storage. Used before FIRMALT.aidato is moved.
+	 *
+	 * @param dir, FIRMALT.aipath
+	 * @throws RuntimeException if storage could not be flushed
+	 */
+	public void await(String dir) {
+		AttachmentStorage storage = storage(dir);
+		if (storage != null) {
+			// stored first, a sealed storage completes its writes on flush
+			join(running.get(dir));
+			try {
+				storage.flush(dir);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not flush " + dir, e);
+			}
+		}
+		join(pending.get(dir));
+	}
+
+	private static void join(Set<CompletableFuture<Long>> futures) {
+		if (futures != null) {
+			CompletableFuture<?>[] snapshot = futures.toArray(new CompletableFuture<?>[0]);
+			CompletableFuture.allOf(snapshot).handle((v, e) -> null).join();
+		}
+	}
+
+	/**
+	 * @param dir, FIRMALT.aipath
+	 * @return true if local directory, not zip: or s3://
+	 */
+	public boolean isLocal(String dir) {
+		return storage(dir) == null;
+	}
+
+	private AttachmentStorage storage(String dir) {
+		for (AttachmentStorage storage : storages) {
+			if (storage.accepts(dir)) {
+				return storage;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return files waiting for a writer thread
+	 */
+	public int getQueued() {
+		return pool.getQueue().size();
+	}
+
+	/**
+	 * @return files written, waiting for batched fsync and rename
+	 */
+	public int getUnsynced() {
+		synchronized (unsynced) {
+			return unsynced.size();
+		}
+	}
+
+	private interface WriteAction {
+		void run(CompletableFuture<Long> done) throws IOException;
+	}
+
+	private CompletableFuture<Long> submit(String dir, String fileName, WriteAction action) {
+		CompletableFuture<Long> done = track(dir);
+		CompletableFuture<Long> ran = track(running, dir);
+		try {
+			pool.execute(() -> {
+				try {
+					action.run(done);
+				} catch (Exception e) {
+					logger.error("Could not write " + dir + fileName + ". " + e.getMessage());
+					deleteQuietly(tempFile(dir, fileName));
+					done.completeExceptionally(e);
+				} finally {
+					ran.complete(0L);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			done.completeExceptionally(e);
+			ran.complete(0L);
+		}
+		return done;
+	}
+
+	/*
+	 * New future, pending for dir until completed.
+	 */
+	private CompletableFuture<Long> track(String dir) {
+		return track(pending, dir);
+	}
+
+	private static CompletableFuture<Long> track(Map<String, Set<CompletableFuture<Long>>> tracked, String dir) {
+		CompletableFuture<Long> done = new CompletableFuture<Long>();
+		Set<CompletableFuture<Long>> futures = tracked.computeIfAbsent(dir, d -> ConcurrentHashMap.newKeySet());
+		futures.add(done);
+		done.whenComplete((bytes, e) -> futures.remove(done));
+		return done;
+	}
+
+	private void written(Written written) throws IOException {
+		if (fsync == Fsync.batch) {
+			synchronized (unsynced) {
+				unsynced.add(written);
+			}
+		} else {
+			rename(written);
+			announce(written);
+			written.done.complete(written.bytes);
+		}
+	}
+
+	/*
+	 * One fsync round for all files written since last round, then renames, then one fsync per directory.
+	 */
+	private void syncBatch() {
+		List<Written> batch;
+		synchronized (unsynced) {
+			if (unsynced.isEmpty()) {
+				return;
+			}
+			batch = new ArrayList<Written>(unsynced);
+			unsynced.clear();
+		}
+		Set<Path> dirs = new HashSet<Path>();
+		for (Written written : batch) {
+			try {
+				if (written.temp != null) {
+					force(written.temp);
+				}
+				rename(written);
+				dirs.add(written.target.toAbsolutePath().getParent());
+				if (written.blob && written.temp != null) {
+					dirs.add(blobStore.blob(written.dir, written.sha256).toAbsolutePath().getParent());
+				}
+			} catch (IOException e) {
+				logger.error("Could not sync " + written.target + ". " + e.getMessage());
+				if (written.temp != null) {
+					deleteQuietly(written.temp);
+				}
+				written.done.completeExceptionally(e);
+			}
+		}
+		dirs.forEach(dir -> {
+			try {
+				force(dir);
+			} catch (IOException e) {
+				logger.debug("Directory fsync not supported on " + dir + ". " + e.getMessage());
+			}
+		});
+		for (Written written : batch) {
+			if (written.done.isDone()) {
+				continue;
+			}
+			try {
+				announce(written);
+				written.done.complete(written.bytes);
+			} catch (IOException e) {
+				written.done.completeExceptionally(e);
+			}
+		}
+		logger.debug("Synced " + batch.size() + " files in " + dirs.size() + " directories.");
+	}
+
+	private void rename(Written written) throws IOException {
+		if (written.blob) {
+			if (written.temp != null) {
+				blobStore.store(written.temp, written.dir, written.sha256);
+			}
+			blobStore.link(written.dir, written.sha256, written.target, tempFile(written.dir, written.fileName));
+			logger.info("File: " + written.target + " saved as blob " + written.sha256 + (written.temp == null ? ", already stored." : "."));
+		} else {
+			try {
+				Files.move(written.temp, written.target, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(written.temp, written.target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			logger.info("File: " + written.target + " saved on disk.");
+		}
+		if (written.sha256 != null) {
+			try {
+				checksumManifest.record(written.dir, written.fileName, written.sha256);
+			} catch (IOException e) {
+				if (written.blob && blobStore.getMode() == BlobStore.Mode.manifest) {
+					throw e;
+				}
+				logger.warn("Could not record checksum of " + written.target + ". " + e.getMessage());
+			}
+		}
+	}
+
+	private void force(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, Files.isDirectory(path) ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	private void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			logger.warn("Could not delete " + path + ". " + e.getMessage());
+		}
+	}
+
+}
@@ -53,6 +53,15 @@ public class Authorization {
 
     @Value("${altinn.access.proxy.port}")
     String port;		
+
+    @Value("${altinn.http.connect.timeout.ms}")
+    int connectTimeout;
+
+    @Value("${altinn.http.read.timeout.ms}")
+    int readTimeout;
+
+	@Autowired
+	private AltinnHostGuard hostGuard;
 	
 	/**
 	 * Configures ClientHttpRequestFactory to provide client certificate for two way https connection.<br>
@@ -101,6 +110,8 @@ public class Authorization {
 					new DefaultHostnameVerifier());
 
 			requestFactory = new HttpComponentsClientHttpRequestFactory();
+			requestFactory.setConnectTimeout(connectTimeout);
+			requestFactory.setReadTimeout(readTimeout);
 
 			logger.info("useProxy="+useProxy);
 			logger.debug("proxyHost="+proxyHost+", port="+port);
@@ -162,7 +173,7 @@ public class Authorization {
 		HttpEntity<ApiKey> entity = new HttpEntity<ApiKey>(apiKeyDto, headers);
 		URI authUri = ActionsUriBuilder.authentication(firmaltDao.getAihost(), firmaltDao.getAiauur());
 		
-		ResponseEntity<byte[]> response = restTemplate.exchange(authUri, HttpMethod.POST, entity, byte[].class);			
+		ResponseEntity<byte[]> response = hostGuard.call(firmaltDao.getAihost(), () -> restTemplate.exchange(authUri, HttpMethod.POST, entity, byte[].class));			
 		logger.debug("response="+response);
 		
 		List<String> setCookieList = response.getHeaders().get(HttpHeaders.SET_COOKIE);
@@ -203,7 +214,7 @@ public class Authorization {
 		HttpEntity<ApiKey> entity = new HttpEntity<ApiKey>(apiKeyDto, headers);
 		URI authUri = ActionsUriBuilder.authentication(firmaltDao.getAihost(), firmaltDao.getAiauur());
 
-		ResponseEntity<byte[]> response = restTemplate.exchange(authUri, HttpMethod.POST, entity, byte[].class);			
+		ResponseEntity<byte[]> response = hostGuard.call(firmaltDao.getAihost(), () -> restTemplate.exchange(authUri, HttpMethod.POST, entity, byte[].class));			
 		logger.debug("response="+response);
 		
 		List<String> setCookieList = response.getHeaders().get(HttpHeaders.SET_COOKIE);
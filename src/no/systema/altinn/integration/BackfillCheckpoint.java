@@ -0,0 +1,143 @@
+package no.systema.altinn.integration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Progress of backfill, see {@link ActionsServiceManager#backfillDagsobjor(LocalDate, LocalDate, int, no.systema.altinn.entities.RunTrace)}. <br>
+ * 
+ * Records, one per line, tab separated, in altinn.work.dir: <br>
+ * WINDOW orgnr from to (all messages in window done) <br>
+ * MESSAGE orgnr messageId (attachments done) <br>
+ * 
+ * A repeated backfill skips done windows and messages. Removed with {@link #reset()}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("backfillCheckpoint")
+public class BackfillCheckpoint {
+	private static Logger logger = LogManager.getLogger(BackfillCheckpoint.class);
+	private static final String FILE_NAME = "backfill-checkpoint.log";
+	private static final String WINDOW = "WINDOW", MESSAGE = "MESSAGE";
+
+	private final Set<String> windows = new HashSet<String>();
+	private final Set<String> messages = new HashSet<String>();
+	private FileOutputStream out;
+	private Writer writer;
+
+	@Value("${altinn.work.dir}")
+	String workDir;
+
+	@Value("${altinn.checkpoint.fsync}")
+	boolean fsync;
+
+	@PostConstruct
+	public synchronized void init() {
+		File file = new File(workDir, FILE_NAME);
+		if (!file.exists()) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] record = line.split("\t");
+				if (WINDOW.equals(record[0]) && record.length == 4) {
+					windows.add(windowKey(record[1], record[2], record[3]));
+				} else if (MESSAGE.equals(record[0]) && record.length == 3) {
+					messages.add(record[1] + "/" + record[2]);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not read backfill checkpoint " + file + ", ignoring.", e);
+		}
+		logger.info("Backfill checkpoint loaded, windows=" + windows.size() + ", messages=" + messages.size());
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		closeWriter();
+	}
+
+	public synchronized boolean isWindowDone(String orgnr, LocalDate from, LocalDate to) {
+		return windows.contains(windowKey(orgnr, from.toString(), to.toString()));
+	}
+
+	public synchronized void windowDone(String orgnr, LocalDate from, LocalDate to) {
+		if (windows.add(windowKey(orgnr, from.toString(), to.toString()))) {
+			append(WINDOW + "\t" + orgnr + "\t" + from + "\t" + to);
+		}
+	}
+
+	public synchronized boolean isMessageDone(String orgnr, String messageId) {
+		return messages.contains(orgnr + "/" + messageId);
+	}
+
+	public synchronized void messageDone(String orgnr, String messageId) {
+		if (messages.add(orgnr + "/" + messageId)) {
+			append(MESSAGE + "\t" + orgnr + "\t" + messageId);
+		}
+	}
+
+	/**
+	 * Forget all progress, next backfill starts from scratch.
+	 */
+	public synchronized void reset() {
+		closeWriter();
+		windows.clear();
+		messages.clear();
+		new File(workDir, FILE_NAME).delete();
+		logger.info("Backfill checkpoint reset.");
+	}
+
+	private void append(String record) {
+		try {
+			if (writer == null) {
+				Files.createDirectories(new File(workDir).toPath());
+				out = new FileOutputStream(new File(workDir, FILE_NAME), true);
+				writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			}
+			writer.write(record + "\n");
+			writer.flush();
+			if (fsync) {
+				out.getFD().sync();
+			}
+		} catch (IOException e) {
+			logger.error("Could not write backfill checkpoint: " + record, e);
+		}
+	}
+
+	private void closeWriter() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				logger.warn("Could not close backfill checkpoint", e);
+			}
+			writer = null;
+			out = null;
+		}
+	}
+
+	private static String windowKey(String orgnr, String from, String to) {
+		return orgnr + "/" + from + "/" + to;
+	}
+
+}
@@ -0,0 +1,233 @@
+package no.systema.altinn.integration;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Optional content-addressed store of attachments, altinn.cas.enabled. <br>
+ *
+ * Blobs are stored once per SHA-256 in altinn.cas.dir under FIRMALT.aipath, as {dir}/ab/abcd... Same content downloaded again,
+ * e.g. forceAll, gtDato or Dagsobjor and DagsobjorFIX, costs no write. altinn.cas.mode: <br>
+ * link - {CreatedDate}-{name} in aipath is a hard link to the blob, default. Falls back to a copy where hard links are not supported.
+ * A hard link is the same inode as the blob: a consumer writing into the file in place, instead of replacing it, changes the blob
+ * and every other name linked to it. Use only when consumers of aipath never edit files. <br>
+ * manifest - only the blob is stored, no file is created under its name in aipath. Readers look the name up in ChecksumManifest,
+ * a sha256sum line "{sha256}  {name}", and read the blob at {@link #blob(String, String)}. The file-ready event carries the blob path. <br>
+ *
+ * Blobs no longer linked from aipath are removed with pruneBlobs.do. A blob is pinned from {@link #exists(String, String, long)}
+ * until its write completes, and blobs younger than altinn.cas.prune.grace.ms are kept, so prune never removes a blob
+ * being linked, by this node or another one on the same aipath.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("blobStore")
+public class BlobStore {
+	private static Logger logger = LogManager.getLogger(BlobStore.class);
+	public enum Mode { link, manifest }
+
+	@Value("${altinn.cas.enabled}")
+	boolean enabled;
+
+	@Value("${altinn.cas.mode}")
+	String modeProperty;
+
+	@Value("${altinn.cas.dir}")
+	String blobDir;
+
+	@Value("${altinn.cas.prune.grace.ms}")
+	long pruneGraceMs;
+
+	private Mode mode;
+	private final AtomicLong stored = new AtomicLong();
+	private final AtomicLong deduplicated = new AtomicLong();
+	private final AtomicLong linked = new AtomicLong();
+	private final AtomicLong copied = new AtomicLong();
+	private final AtomicLong pruned = new AtomicLong();
+	private final Map<Path, Integer> pinned = new HashMap<Path, Integer>();
+
+	@PostConstruct
+	public void init() {
+		mode = Mode.valueOf(modeProperty.trim());
+		logger.info("BlobStore initialized, enabled=" + enabled + ", mode=" + mode + ", dir=" + blobDir);
+	}
+
+	/**
+	 * @param sha256, null if not known
+	 * @return true if files with sha256 should go through the store
+	 */
+	public boolean isEnabled(String sha256) {
+		return enabled && sha256 != null;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @param dir, FIRMALT.aipath
+	 * @param sha256
+	 * @return blob path, may not exist
+	 */
+	public Path blob(String dir, String sha256) {
+		return Paths.get(dir + blobDir, sha256.substring(0, 2), sha256);
+	}
+
+	/**
+	 * Pins blob against prune, until {@link #unpin(String, String)}. Unpin also when false.
+	 * 
+	 * @param dir, FIRMALT.aipath
+	 * @param sha256
+	 * @param bytes, size of content
+	 * @return true if blob is stored with same size, counted as deduplicated
+	 */
+	public boolean exists(String dir, String sha256, long bytes) {
+		Path blob = blob(dir, sha256);
+		synchronized (pinned) {
+			pinned.merge(blob, 1, Integer::sum);
+		}
+		try {
+			if (Files.isRegularFile(blob) && Files.size(blob) == bytes) {
+				deduplicated.incrementAndGet();
+				return true;
+			}
+		} catch (IOException e) {
+			logger.debug("Could not stat " + blob + ". " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Write of blob completed or failed, see {@link #exists(String, String, long)}.
+	 * 
+	 * @param dir, FIRMALT.aipath
+	 * @param sha256
+	 */
+	public void unpin(String dir, String sha256) {
+		synchronized (pinned) {
+			pinned.computeIfPresent(blob(dir, sha256), (blob, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	/**
+	 * @param dir, FIRMALT.aipath
+	 * @param sha256
+	 * @return new temp file next to blob, for {@link #store(Path, String, String)}
+	 * @throws IOException
+	 */
+	public Path newTempFile(String dir, String sha256) throws IOException {
+		Path parent = Files.createDirectories(blob(dir, sha256).getParent());
+		return Files.createTempFile(parent, "." + sha256, ".part");
+	}
+
+	/**
+	 * Temp file, written and synced, renamed to blob. Concurrent stores of same content are harmless, same bytes.
+	 *
+	 * @param temp, from {@link #newTempFile(String, String)}
+	 * @param dir, FIRMALT.aipath
+	 * @param sha256
+	 * @throws IOException
+	 */
+	public void store(Path temp, String dir, String sha256) throws IOException {
+		Path blob = blob(dir, sha256);
+		try {
+			Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING);
+		}
+		stored.incrementAndGet();
+	}
+
+	/**
+	 * Make blob visible as target, in link mode. Already same file is left as is.
+	 *
+	 * @param dir, FIRMALT.aipath
+	 * @param sha256
+	 * @param target, {aipath}{name}
+	 * @param temp, .{name}.part next to target
+	 * @throws IOException
+	 */
+	public void link(String dir, String sha256, Path target, Path temp) throws IOException {
+		if (mode != Mode.link) {
+			return;
+		}
+		Path blob = blob(dir, sha256);
+		if (Files.exists(target) && Files.isSameFile(target, blob)) {
+			return;
+		}
+		Files.deleteIfExists(temp);
+		try {
+			Files.createLink(temp, blob);
+			linked.incrementAndGet();
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			logger.debug("Hard link not supported for " + target + ", copied. " + e.getMessage());
+			Files.copy(blob, temp, StandardCopyOption.REPLACE_EXISTING);
+			copied.incrementAndGet();
+		}
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Remove blobs with no other hard link, i.e. name in aipath is deleted or replaced. Only in link mode.
+	 * Pinned blobs, and blobs modified within altinn.cas.prune.grace.ms, are kept.
+	 *
+	 * @param dir, FIRMALT.aipath
+	 * @return blobs removed
+	 * @throws IOException
+	 */
+	public int prune(String dir) throws IOException {
+		Path root = Paths.get(dir + blobDir);
+		if (mode != Mode.link || !Files.isDirectory(root)) {
+			return 0;
+		}
+		int removed = 0;
+		long youngest = System.currentTimeMillis() - pruneGraceMs;
+		try (Stream<Path> blobs = Files.walk(root, 2)) {
+			for (Path blob : (Iterable<Path>) blobs.filter(Files::isRegularFile)::iterator) {
+				if (blob.getFileName().toString().startsWith(".") || Files.getLastModifiedTime(blob).toMillis() > youngest) {
+					continue;
+				}
+				//checked and deleted while no write can pin it
+				synchronized (pinned) {
+					if (!pinned.containsKey(blob) && (Integer) Files.getAttribute(blob, "unix:nlink") == 1) {
+						Files.deleteIfExists(blob);
+						removed++;
+					}
+				}
+			}
+		} catch (UnsupportedOperationException | IllegalArgumentException e) {
+			logger.warn("Link count not supported for " + root + ", not pruned. " + e.getMessage());
+		}
+		pruned.addAndGet(removed);
+		return removed;
+	}
+
+	/**
+	 * @return status line, for verifyFiles.do
+	 */
+	public String getStatus() {
+		return "Blob store, enabled=" + enabled + ", mode=" + mode + ", stored=" + stored.get() + ", deduplicated=" + deduplicated.get()
+				+ ", linked=" + linked.get() + ", copied=" + copied.get() + ", pruned=" + pruned.get();
+	}
+
+}
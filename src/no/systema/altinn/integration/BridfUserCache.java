@@ -0,0 +1,126 @@
+package no.systema.altinn.integration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.jservices.common.dao.services.BridfDaoService;
+
+/**
+ * Bounded LRU cache in front of {@link BridfDaoService#getUserName(String)}. <br>
+ * 
+ * Known users are kept altinn.bridf.cache.ttl.seconds, unknown users (null) altinn.bridf.cache.negative.ttl.seconds. 
+ * Least recently used is evicted above altinn.bridf.cache.size.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("bridfUserCache")
+public class BridfUserCache {
+	private static Logger logger = LogManager.getLogger(BridfUserCache.class);
+
+	@Autowired
+	private BridfDaoService bridfDaoService;
+
+	@Value("${altinn.bridf.cache.size}")
+	int maxSize;
+
+	@Value("${altinn.bridf.cache.ttl.seconds}")
+	long ttlSeconds;
+
+	@Value("${altinn.bridf.cache.negative.ttl.seconds}")
+	long negativeTtlSeconds;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong negativeHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final Map<String, CachedUser> entries = new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+			if (size() > maxSize) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * @param user
+	 * @return userName, null if unknown in Bridf
+	 */
+	public String getUserName(String user) {
+		if (user == null) {
+			return bridfDaoService.getUserName(user);
+		}
+		long now = System.currentTimeMillis();
+		synchronized (entries) {
+			CachedUser entry = entries.get(user);
+			if (entry != null && entry.expires > now) {
+				if (entry.userName == null) {
+					negativeHits.incrementAndGet();
+				} else {
+					hits.incrementAndGet();
+				}
+				return entry.userName;
+			}
+		}
+		misses.incrementAndGet();
+		String userName = bridfDaoService.getUserName(user);
+		long ttl = (userName != null ? ttlSeconds : negativeTtlSeconds) * 1000;
+		synchronized (entries) {
+			entries.put(user, new CachedUser(userName, now + ttl));
+		}
+
+		return userName;
+	}
+
+	/**
+	 * @param user, null invalidates all
+	 */
+	public void invalidate(String user) {
+		synchronized (entries) {
+			if (user == null) {
+				entries.clear();
+			} else {
+				entries.remove(user);
+			}
+		}
+		logger.info("Bridf cache invalidated, user=" + (user == null ? "all" : user));
+	}
+
+	/**
+	 * @return hit/miss stats
+	 */
+	public String getStats() {
+		int cached;
+		synchronized (entries) {
+			cached = entries.size();
+		}
+		long lookups = hits.get() + negativeHits.get() + misses.get();
+		long hitPercent = lookups == 0 ? 0 : (hits.get() + negativeHits.get()) * 100 / lookups;
+		return "cached=" + cached + "/" + maxSize + ", hits=" + hits.get() + ", negativeHits=" + negativeHits.get() 
+				+ ", misses=" + misses.get() + ", evictions=" + evictions.get() + ", hitPercent=" + hitPercent;
+	}
+
+	private static class CachedUser {
+		final String userName;
+		final long expires;
+
+		CachedUser(String userName, long expires) {
+			this.userName = userName;
+			this.expires = expires;
+		}
+	}
+
+}
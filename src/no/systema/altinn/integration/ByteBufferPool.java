@@ -0,0 +1,279 @@
+package no.systema.altinn.integration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.altinn.entities.PrettyPrintBufferPool;
+
+/**
+ * Pool of direct ByteBuffers for attachment transfers. <br>
+ *
+ * Buffers come in size classes, altinn.buffer.pool.classes, picked on Content-Length. Total direct memory is bounded by altinn.buffer.pool.max.bytes.
+ * Buffers are allocated once and never dropped: direct memory is only freed when GC collects the buffer, so a dropped buffer
+ * would not make room. When the cap is reached, an idle buffer of another class is lent instead, transfers work with any capacity.
+ * A caller waits up to altinn.buffer.pool.wait.ms for a buffer, then gets a heap buffer, counted as fallback. <br>
+ *
+ * Usage and wait time per class, see showBufferPool.do.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("byteBufferPool")
+public class ByteBufferPool {
+	private static Logger logger = LogManager.getLogger(ByteBufferPool.class);
+
+	@Value("${altinn.buffer.pool.classes}")
+	String classesProperty;
+
+	@Value("${altinn.buffer.pool.max.bytes}")
+	long maxBytes;
+
+	@Value("${altinn.buffer.pool.wait.ms}")
+	long waitMs;
+
+	private int[] sizes;
+	private List<Deque<ByteBuffer>> free;
+	private long allocatedBytes;
+	private int[] allocated;
+	private int[] inUse;
+	private long[] acquisitions;
+	private long[] waits;
+	private long[] waitNanos;
+	private long[] maxWaitNanos;
+	private long[] fallbacks;
+
+	@PostConstruct
+	public void init() {
+		sizes = Arrays.stream(classesProperty.split(",")).map(String::trim).mapToInt(Integer::parseInt).sorted().toArray();
+		free = new ArrayList<Deque<ByteBuffer>>();
+		for (int i = 0; i < sizes.length; i++) {
+			free.add(new ArrayDeque<ByteBuffer>());
+		}
+		allocated = new int[sizes.length];
+		inUse = new int[sizes.length];
+		acquisitions = new long[sizes.length];
+		waits = new long[sizes.length];
+		waitNanos = new long[sizes.length];
+		maxWaitNanos = new long[sizes.length];
+		fallbacks = new long[sizes.length];
+		logger.info("ByteBufferPool initialized, classes=" + Arrays.toString(sizes) + ", max bytes=" + maxBytes);
+	}
+
+	/**
+	 * @param sizeHint, e.g. Content-Length, < 0 if unknown
+	 * @return cleared buffer, direct unless pool was exhausted for altinn.buffer.pool.wait.ms. Return with {@link #release(ByteBuffer)}
+	 */
+	public synchronized ByteBuffer acquire(long sizeHint) {
+		int sizeClass = sizeClass(sizeHint);
+		int size = sizes[sizeClass];
+		acquisitions[sizeClass]++;
+		long start = System.nanoTime();
+		long deadline = start + waitMs * 1_000_000;
+		boolean waited = false;
+
+		while (true) {
+			ByteBuffer buffer = free.get(sizeClass).pollFirst();
+			if (buffer == null && allocatedBytes + size <= maxBytes) {
+				buffer = ByteBuffer.allocateDirect(size);
+				allocatedBytes += size;
+				allocated[sizeClass]++;
+			}
+			if (buffer == null) {
+				buffer = borrowIdle(sizeClass);
+			}
+			if (buffer != null) {
+				inUse[Arrays.binarySearch(sizes, buffer.capacity())]++;
+				recordWait(sizeClass, start, waited);
+				return buffer;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				fallbacks[sizeClass]++;
+				recordWait(sizeClass, start, waited);
+				logger.warn("ByteBufferPool exhausted for " + waitMs + " ms, heap buffer of " + size + " bytes used.");
+				return ByteBuffer.allocate(size);
+			}
+			waited = true;
+			try {
+				wait(Math.max(1, remaining / 1_000_000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted waiting for buffer", e);
+			}
+		}
+	}
+
+	/**
+	 * @param buffer from {@link #acquire(long)}
+	 */
+	public synchronized void release(ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			return;
+		}
+		int sizeClass = Arrays.binarySearch(sizes, buffer.capacity());
+		buffer.clear();
+		inUse[sizeClass]--;
+		free.get(sizeClass).addFirst(buffer);
+		notifyAll();
+	}
+
+	/**
+	 * Stream to file through a pooled buffer.
+	 *
+	 * @param in, e.g. response body
+	 * @param target, created or truncated
+	 * @param sizeHint, e.g. Content-Length, < 0 if unknown
+	 * @return bytes written
+	 * @throws IOException
+	 */
+	public long transfer(InputStream in, Path target, long sizeHint) throws IOException {
+		return transfer(in, target, sizeHint, null);
+	}
+
+	/**
+	 * Stream to file through a pooled buffer, checksum updated from same buffer.
+	 *
+	 * @param in, e.g. response body
+	 * @param target, created or truncated
+	 * @param sizeHint, e.g. Content-Length, < 0 if unknown
+	 * @param checksum, or null
+	 * @return bytes written
+	 * @throws IOException
+	 */
+	public long transfer(InputStream in, Path target, long sizeHint, StreamChecksum checksum) throws IOException {
+		try (ReadableByteChannel source = Channels.newChannel(in);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return transfer(source, out, sizeHint, checksum);
+		}
+	}
+
+	/**
+	 * Channel to channel, with transferTo if source is a file, else through a pooled buffer.
+	 *
+	 * @param source
+	 * @param out
+	 * @param sizeHint, < 0 if unknown
+	 * @return bytes written
+	 * @throws IOException
+	 */
+	public long transfer(ReadableByteChannel source, FileChannel out, long sizeHint) throws IOException {
+		return transfer(source, out, sizeHint, null);
+	}
+
+	/**
+	 * Channel to channel. With checksum always through a pooled buffer, bytes are hashed as they pass.
+	 *
+	 * @param source
+	 * @param out
+	 * @param sizeHint, < 0 if unknown
+	 * @param checksum, or null
+	 * @return bytes written
+	 * @throws IOException
+	 */
+	public long transfer(ReadableByteChannel source, FileChannel out, long sizeHint, StreamChecksum checksum) throws IOException {
+		if (source instanceof FileChannel && checksum == null) {
+			FileChannel file = (FileChannel) source;
+			long size = file.size();
+			long position = 0;
+			while (position < size) {
+				position += file.transferTo(position, size - position, out);
+			}
+			return size;
+		}
+		ByteBuffer buffer = acquire(sizeHint);
+		try {
+			long total = 0;
+			while (source.read(buffer) >= 0) {
+				buffer.flip();
+				if (checksum != null) {
+					checksum.update(buffer);
+				}
+				while (buffer.hasRemaining()) {
+					total += out.write(buffer);
+				}
+				buffer.clear();
+			}
+			return total;
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * @return usage per size class
+	 */
+	public synchronized List<PrettyPrintBufferPool> getStatus() {
+		List<PrettyPrintBufferPool> result = new ArrayList<PrettyPrintBufferPool>();
+		for (int i = 0; i < sizes.length; i++) {
+			result.add(new PrettyPrintBufferPool(sizes[i], allocated[i], inUse[i], free.get(i).size(), acquisitions[i], waits[i],
+					waitNanos[i] / 1_000_000, maxWaitNanos[i] / 1_000_000, fallbacks[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * @return direct bytes allocated, of altinn.buffer.pool.max.bytes
+	 */
+	public synchronized long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/*
+	 * Smallest class holding sizeHint, largest if unknown or bigger.
+	 */
+	private int sizeClass(long sizeHint) {
+		if (sizeHint >= 0) {
+			for (int i = 0; i < sizes.length; i++) {
+				if (sizes[i] >= sizeHint) {
+					return i;
+				}
+			}
+		}
+		return sizes.length - 1;
+	}
+
+	/*
+	 * Idle buffer of nearest larger class, else nearest smaller. Stays in its own class, returned there on release.
+	 */
+	private ByteBuffer borrowIdle(int sizeClass) {
+		for (int i = sizeClass + 1; i < sizes.length; i++) {
+			if (!free.get(i).isEmpty()) {
+				return free.get(i).pollFirst();
+			}
+		}
+		for (int i = sizeClass - 1; i >= 0; i--) {
+			if (!free.get(i).isEmpty()) {
+				return free.get(i).pollFirst();
+			}
+		}
+		return null;
+	}
+
+	private void recordWait(int sizeClass, long start, boolean waited) {
+		if (waited) {
+			long nanos = System.nanoTime() - start;
+			waits[sizeClass]++;
+			waitNanos[sizeClass] += nanos;
+			maxWaitNanos[sizeClass] = Math.max(maxWaitNanos[sizeClass], nanos);
+		}
+	}
+
+}
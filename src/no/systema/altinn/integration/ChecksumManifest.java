@@ -0,0 +1,193 @@
+package no.systema.altinn.integration;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.altinn.entities.PrettyPrintChecksum;
+
+/**
+ * SHA-256 of downloaded files, recorded in altinn.checksum.manifest in each FIRMALT.aipath. <br>
+ *
+ * One line per written file, same format as sha256sum, so the directory can also be checked with sha256sum -c.
+ * A file downloaded again gets a new line, last line wins. <br>
+ *
+ * Verification re-reads files memory-mapped, on altinn.checksum.verify.threads, see verifyFiles.do.
+ * A name not in aipath is verified from its blob, if stored in BlobStore.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("checksumManifest")
+public class ChecksumManifest {
+	private static Logger logger = LogManager.getLogger(ChecksumManifest.class);
+	public static final String OK = "OK";
+	public static final String MISMATCH = "MISMATCH";
+	public static final String MISSING = "MISSING";
+	public static final String NO_CHECKSUM = "NO CHECKSUM";
+	private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+	@Value("${altinn.checksum.manifest}")
+	String manifestName;
+
+	@Value("${altinn.checksum.verify.threads}")
+	int verifyThreads;
+
+	@Autowired
+	private BlobStore blobStore;
+
+	private ExecutorService verifyPool;
+	private final Map<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	@PostConstruct
+	public void init() {
+		verifyPool = Executors.newFixedThreadPool(verifyThreads);
+		logger.info("ChecksumManifest initialized, manifest=" + manifestName + ", verify threads=" + verifyThreads);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		verifyPool.shutdownNow();
+	}
+
+	/**
+	 * @param dir, FIRMALT.aipath
+	 * @param fileName, as renamed in dir
+	 * @param sha256, hex
+	 * @throws IOException
+	 */
+	public void record(String dir, String fileName, String sha256) throws IOException {
+		byte[] line = (sha256 + "  " + fileName + "\n").getBytes(StandardCharsets.UTF_8);
+		synchronized (locks.computeIfAbsent(dir, d -> new Object())) {
+			Files.write(Paths.get(dir + manifestName), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		}
+	}
+
+	/**
+	 * Re-hash all files in dirs, in parallel.
+	 *
+	 * @param dirs, FIRMALT.aipath
+	 * @return one row per file, in manifest or in dir
+	 */
+	public List<PrettyPrintChecksum> verify(Collection<String> dirs) {
+		List<CompletableFuture<PrettyPrintChecksum>> results = new ArrayList<CompletableFuture<PrettyPrintChecksum>>();
+		for (String dir : dirs) {
+			Map<String, String> recorded = read(dir);
+			recorded.forEach((fileName, sha256) -> results.add(CompletableFuture.supplyAsync(() -> verify(dir, fileName, sha256), verifyPool)));
+			for (String fileName : unrecorded(dir, recorded)) {
+				results.add(CompletableFuture.completedFuture(new PrettyPrintChecksum(dir, fileName, size(Paths.get(dir + fileName)), NO_CHECKSUM, 0)));
+			}
+		}
+		return results.stream().map(CompletableFuture::join).collect(Collectors.toList());
+	}
+
+	private PrettyPrintChecksum verify(String dir, String fileName, String sha256) {
+		long start = System.nanoTime();
+		Path file = Paths.get(dir + fileName);
+		if (!Files.isRegularFile(file) && sha256.length() > 2) {
+			file = blobStore.blob(dir, sha256);
+		}
+		if (!Files.isRegularFile(file)) {
+			return new PrettyPrintChecksum(dir, fileName, 0, MISSING, 0);
+		}
+		String status;
+		long size = size(file);
+		try {
+			status = sha256.equals(hash(file)) ? OK : MISMATCH;
+		} catch (IOException e) {
+			logger.warn("Could not verify " + file + ". " + e.getMessage());
+			status = "ERROR " + e.getMessage();
+		}
+		if (MISMATCH.equals(status)) {
+			logger.error("Checksum mismatch for " + file + ", expected " + sha256);
+		}
+		return new PrettyPrintChecksum(dir, fileName, size, status, (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/*
+	 * Mapped in windows of MAP_WINDOW, page cache is read without copy to heap.
+	 */
+	private String hash(Path file) throws IOException {
+		MessageDigest digest = StreamChecksum.digest("SHA-256");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += MAP_WINDOW) {
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+			}
+		}
+		return StreamChecksum.toHex(digest.digest());
+	}
+
+	/*
+	 * fileName -> sha256, last line wins.
+	 */
+	private Map<String, String> read(String dir) {
+		Path manifest = Paths.get(dir + manifestName);
+		if (!Files.isRegularFile(manifest)) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> recorded = new LinkedHashMap<String, String>();
+		try {
+			for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+				int split = line.indexOf("  ");
+				if (split > 0) {
+					recorded.put(line.substring(split + 2), line.substring(0, split));
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read " + manifest + ". " + e.getMessage());
+		}
+		return recorded;
+	}
+
+	/*
+	 * Regular files in dir without manifest line, hidden files (manifest, .part) excluded.
+	 */
+	private List<String> unrecorded(String dir, Map<String, String> recorded) {
+		try (Stream<Path> files = Files.list(Paths.get(dir))) {
+			return files.filter(Files::isRegularFile)
+					.map(path -> path.getFileName().toString())
+					.filter(name -> !name.startsWith(".") && !recorded.containsKey(name))
+					.sorted()
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			logger.warn("Could not list " + dir + ". " + e.getMessage());
+			return Collections.emptyList();
+		}
+	}
+
+	private long size(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+package no.systema.altinn.integration;
+
+/**
+ * Circuit breaker with a count based failure-rate window. <br>
+ * 
+ * CLOSED: calls pass, outcomes recorded in window. Opens when failure-rate in window reach threshold. <br>
+ * OPEN: calls rejected until open duration has passed, then HALF_OPEN. <br>
+ * HALF_OPEN: a limited number of trial calls pass. All succeed: CLOSED, any fail: OPEN. <br>
+ * 
+ * Each permit is stamped with the epoch of the state it was granted in, bumped on every transition. Outcomes of calls
+ * permitted in an older epoch, e.g. a slow call let through while CLOSED that returns after OPEN->HALF_OPEN, are ignored,
+ * so they can neither count as a trial nor re-open the circuit.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * Returned by {@link #tryAcquire()} when call is not permitted.
+	 */
+	public static final long REJECTED = -1;
+
+	private final int windowSize;
+	private final int minimumCalls;
+	private final int failureRateThreshold;
+	private final long openMs;
+	private final int halfOpenCalls;
+
+	private final boolean[] outcomes;
+	private int index;
+	private int count;
+	private int failures;
+
+	private State state = State.CLOSED;
+	private long epoch;
+	private long openedAt;
+	private int halfOpenInFlight;
+	private int halfOpenSuccesses;
+
+	/**
+	 * @param windowSize - number of last calls to calculate failure-rate on
+	 * @param minimumCalls - calls in window before failure-rate is evaluated
+	 * @param failureRateThreshold - in percent
+	 * @param openMs - time in OPEN before trial calls are let through
+	 * @param halfOpenCalls - number of trial calls in HALF_OPEN
+	 */
+	public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, long openMs, int halfOpenCalls) {
+		this.windowSize = Math.max(windowSize, 1);
+		this.minimumCalls = Math.max(Math.min(minimumCalls, this.windowSize), 1);
+		this.failureRateThreshold = failureRateThreshold;
+		this.openMs = openMs;
+		this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+		this.outcomes = new boolean[this.windowSize];
+	}
+
+	/**
+	 * @return epoch of permit, to be passed to {@link #onSuccess(long)}, {@link #onFailure(long)} or {@link #onIgnored(long)}.
+	 *         {@link #REJECTED} if call is not permitted.
+	 */
+	public synchronized long tryAcquire() {
+		if (state == State.OPEN) {
+			if (System.currentTimeMillis() - openedAt < openMs) {
+				return REJECTED;
+			}
+			transition(State.HALF_OPEN);
+		}
+		if (state == State.HALF_OPEN) {
+			if (halfOpenInFlight >= halfOpenCalls) {
+				return REJECTED;
+			}
+			halfOpenInFlight++;
+		}
+		return epoch;
+	}
+
+	/**
+	 * @param permit, epoch from {@link #tryAcquire()}
+	 */
+	public synchronized void onSuccess(long permit) {
+		if (permit != epoch) {
+			return;
+		}
+		if (state == State.HALF_OPEN) {
+			if (halfOpenInFlight > 0) {
+				halfOpenInFlight--;
+			}
+			if (++halfOpenSuccesses >= halfOpenCalls) {
+				transition(State.CLOSED);
+			}
+		} else if (state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	/**
+	 * Call permitted by {@link #tryAcquire()} never reached host, e.g. rejected by a local limiter. Nothing is recorded.
+	 * 
+	 * @param permit, epoch from {@link #tryAcquire()}
+	 */
+	public synchronized void onIgnored(long permit) {
+		if (permit == epoch && state == State.HALF_OPEN && halfOpenInFlight > 0) {
+			halfOpenInFlight--;
+		}
+	}
+
+	/**
+	 * @param permit, epoch from {@link #tryAcquire()}
+	 */
+	public synchronized void onFailure(long permit) {
+		if (permit != epoch) {
+			return;
+		}
+		if (state == State.HALF_OPEN) {
+			transition(State.OPEN);
+		} else if (state == State.CLOSED) {
+			record(true);
+			if (count >= minimumCalls && failures * 100 >= failureRateThreshold * count) {
+				transition(State.OPEN);
+			}
+		}
+	}
+
+	public synchronized State getState() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	/**
+	 * @return failure-rate in percent of current window, -1 if less than minimum calls
+	 */
+	public synchronized int getFailureRate() {
+		if (count < minimumCalls) {
+			return -1;
+		}
+		return failures * 100 / count;
+	}
+
+	public synchronized int getCalls() {
+		return count;
+	}
+
+	private void record(boolean failure) {
+		if (count == windowSize) {
+			if (outcomes[index]) {
+				failures--;
+			}
+		} else {
+			count++;
+		}
+		outcomes[index] = failure;
+		if (failure) {
+			failures++;
+		}
+		index = (index + 1) % windowSize;
+	}
+
+	private void transition(State newState) {
+		state = newState;
+		epoch++;
+		halfOpenInFlight = 0;
+		halfOpenSuccesses = 0;
+		if (newState == State.OPEN) {
+			openedAt = System.currentTimeMillis();
+		}
+		if (newState == State.CLOSED) {
+			index = 0;
+			count = 0;
+			failures = 0;
+		}
+	}
+
+}
@@ -0,0 +1,17 @@
+package no.systema.altinn.integration;
+
+/**
+ * Thrown when a call to an Altinn host is rejected by {@linkplain AltinnHostGuard}, without touching the network.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class CircuitOpenException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,256 @@
+package no.systema.altinn.integration;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Coordination of download runs between nodes sharing datasource syjservicesDS. Disabled unless altinn.cluster.enabled=true. <br>
+ * 
+ * Each node writes a heartbeat every altinn.cluster.heartbeat.ms. Nodes with heartbeat within altinn.cluster.node.ttl.ms are live, 
+ * and orgnr is sharded on live nodes with a consistent hash ring, see {@link #isMine(String)}. <br>
+ * 
+ * Before a download, the node takes a lease on the orgnr, see {@link #acquire(String)}. The lease is renewed on heartbeat and expires 
+ * after altinn.cluster.lease.ms, so a dead node's orgnr is taken over within seconds. Node clocks must be in sync (NTP). 
+ * A lease not renewed in time, or taken over, is lost, and the download checking {@link #checkHeld(String)} is aborted. <br>
+ * 
+ * Tables, times are epoch millis: <br>
+ * CREATE TABLE altinn_node (node_id VARCHAR(64) NOT NULL PRIMARY KEY, heartbeat DECIMAL(15,0) NOT NULL) <br>
+ * CREATE TABLE altinn_lease (aiorg VARCHAR(20) NOT NULL PRIMARY KEY, node_id VARCHAR(64) NOT NULL, expires DECIMAL(15,0) NOT NULL)
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("clusterCoordinator")
+public class ClusterCoordinator {
+	private static Logger logger = LogManager.getLogger(ClusterCoordinator.class);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Value("${altinn.cluster.enabled}")
+	boolean enabled;
+
+	@Value("${altinn.cluster.heartbeat.ms}")
+	long heartbeatMs;
+
+	@Value("${altinn.cluster.node.ttl.ms}")
+	long nodeTtlMs;
+
+	@Value("${altinn.cluster.lease.ms}")
+	long leaseMs;
+
+	@Value("${altinn.cluster.vnodes}")
+	int vnodes;
+
+	//once per JVM, not per bean instance
+	private static final String NODE_ID = newNodeId();
+	private volatile TreeMap<Long, String> ring = new TreeMap<Long, String>();
+	private final Map<String, Long> leases = new ConcurrentHashMap<String, Long>();
+	private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	@PostConstruct
+	public void init() {
+		if (!enabled) {
+			return;
+		}
+		heartbeat();
+		heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+		logger.info("Cluster coordination enabled, node=" + NODE_ID);
+	}
+
+	private static String newNodeId() {
+		try {
+			return InetAddress.getLocalHost().getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+		} catch (Exception e) {
+			return UUID.randomUUID().toString();
+		}
+	}
+
+	/**
+	 * Release leases and leave ring.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (!enabled) {
+			return;
+		}
+		heartbeatExecutor.shutdownNow();
+		try {
+			new ArrayList<String>(leases.keySet()).forEach(this::release);
+			jdbcTemplate.update("DELETE FROM altinn_node WHERE node_id = ?", NODE_ID);
+		} catch (DataAccessException e) {
+			logger.warn("Could not leave cluster. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param orgnr
+	 * @return true if this node owns orgnr in ring of live nodes, always true if disabled
+	 */
+	public boolean isMine(String orgnr) {
+		if (!enabled) {
+			return true;
+		}
+		return NODE_ID.equals(owner(orgnr));
+	}
+
+	/**
+	 * @param orgnr
+	 * @return true if lease is taken or held by this node, false if held by other node, always true if disabled
+	 * @throws DataAccessException on other database errors
+	 */
+	public boolean acquire(String orgnr) {
+		if (!enabled) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		int updated = jdbcTemplate.update("UPDATE altinn_lease SET node_id = ?, expires = ? WHERE aiorg = ? AND (node_id = ? OR expires < ?)",
+				NODE_ID, now + leaseMs, orgnr, NODE_ID, now);
+		if (updated == 0) {
+			try {
+				jdbcTemplate.update("INSERT INTO altinn_lease (aiorg, node_id, expires) VALUES (?, ?, ?)", orgnr, NODE_ID, now + leaseMs);
+			} catch (DuplicateKeyException e) {
+				logger.info("Orgnr:" + orgnr + ", lease held by other node.");
+				return false;
+			}
+		}
+		leases.put(orgnr, now + leaseMs);
+		return true;
+	}
+
+	/**
+	 * @param orgnr
+	 * @throws LeaseLostException if lease on orgnr is not held by this node, or not renewed before it expired
+	 */
+	public void checkHeld(String orgnr) {
+		if (!enabled) {
+			return;
+		}
+		Long expires = leases.get(orgnr);
+		if (expires == null || expires < System.currentTimeMillis()) {
+			leases.remove(orgnr);
+			throw new LeaseLostException("Orgnr:" + orgnr + ", lease lost by node " + NODE_ID + ", download aborted.");
+		}
+	}
+
+	/**
+	 * @param orgnr
+	 */
+	public void release(String orgnr) {
+		if (!enabled) {
+			return;
+		}
+		leases.remove(orgnr);
+		try {
+			jdbcTemplate.update("UPDATE altinn_lease SET expires = 0 WHERE aiorg = ? AND node_id = ?", orgnr, NODE_ID);
+		} catch (DataAccessException e) {
+			logger.warn("Orgnr:" + orgnr + ", could not release lease, expires in " + leaseMs + " ms. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return altinn.cluster.enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return live nodes, empty if disabled
+	 */
+	public List<String> getLiveNodes() {
+		return new ArrayList<String>(new TreeSet<String>(ring.values()));
+	}
+
+	/**
+	 * @return this node, null if disabled
+	 */
+	public String getNodeId() {
+		return NODE_ID;
+	}
+
+	/**
+	 * @param orgnr
+	 * @return owning node in ring, null if ring empty
+	 */
+	public String owner(String orgnr) {
+		TreeMap<Long, String> current = ring;
+		if (current.isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, String> entry = current.ceilingEntry(hash(orgnr));
+		return entry != null ? entry.getValue() : current.firstEntry().getValue();
+	}
+
+	/*
+	 * Heartbeat, renew held leases, and rebuild ring from live nodes.
+	 */
+	private void heartbeat() {
+		long now = System.currentTimeMillis();
+		try {
+			if (jdbcTemplate.update("UPDATE altinn_node SET heartbeat = ? WHERE node_id = ?", now, NODE_ID) == 0) {
+				jdbcTemplate.update("INSERT INTO altinn_node (node_id, heartbeat) VALUES (?, ?)", NODE_ID, now);
+			}
+			for (String orgnr : leases.keySet()) {
+				if (jdbcTemplate.update("UPDATE altinn_lease SET expires = ? WHERE aiorg = ? AND node_id = ?", now + leaseMs, orgnr, NODE_ID) == 0) {
+					//taken over by other node
+					leases.remove(orgnr);
+					logger.warn("Orgnr:" + orgnr + ", lease lost to other node.");
+				} else {
+					leases.replace(orgnr, now + leaseMs);
+				}
+			}
+			List<String> live = jdbcTemplate.queryForList("SELECT node_id FROM altinn_node WHERE heartbeat > ?", String.class, now - nodeTtlMs);
+			TreeMap<Long, String> newRing = new TreeMap<Long, String>();
+			live.forEach(node -> {
+				for (int i = 0; i < vnodes; i++) {
+					newRing.put(hash(node + "#" + i), node);
+				}
+			});
+			if (!newRing.values().containsAll(ring.values()) || !ring.values().containsAll(newRing.values())) {
+				logger.info("Cluster nodes changed, live=" + live);
+			}
+			ring = newRing;
+		} catch (RuntimeException e) {
+			logger.warn("Cluster heartbeat failed. " + e.getMessage());
+		}
+	}
+
+	private static long hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+			long hash = 0;
+			for (int i = 0; i < 8; i++) {
+				hash = (hash << 8) | (digest[i] & 0xff);
+			}
+			return hash;
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
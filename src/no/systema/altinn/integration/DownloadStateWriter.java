@@ -0,0 +1,157 @@
+package no.systema.altinn.integration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.jservices.common.dao.FirmaltDao;
+import no.systema.jservices.common.dao.services.FirmaltDaoService;
+
+/**
+ * Write-behind of FIRMALT.aidato/aitid. <br>
+ * 
+ * Updates are collected per orgnr, latest wins, and written with {@link FirmaltDaoService#updateAiDatoAndAiTid(FirmaltDao)} 
+ * when altinn.firmalt.flush.batch is reached, every altinn.firmalt.flush.ms, and on shutdown. <br>
+ * 
+ * Pending values are served by {@linkplain FirmaltCache} until written, an update is removed only after its write succeeded.
+ * Failed updates are kept for next flush.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("downloadStateWriter")
+public class DownloadStateWriter {
+	private static Logger logger = LogManager.getLogger(DownloadStateWriter.class);
+
+	@Autowired
+	FirmaltDaoService firmaltDaoService;
+
+	@Value("${altinn.firmalt.flush.ms}")
+	long flushMs;
+
+	@Value("${altinn.firmalt.flush.batch}")
+	int flushBatch;
+
+	private final Map<String, State> pending = new LinkedHashMap<String, State>();
+	private final Object flushLock = new Object();
+	private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	@PostConstruct
+	public void init() {
+		flushExecutor.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Flush all pending on shutdown.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		flushExecutor.shutdown();
+		try {
+			flushExecutor.awaitTermination(flushMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		synchronized (this) {
+			if (!pending.isEmpty()) {
+				logger.error("FIRMALT updates not written on shutdown: " + pending.keySet());
+			}
+		}
+	}
+
+	/**
+	 * @param firmalt, with aidato and aitid set
+	 */
+	public void enqueue(FirmaltDao firmalt) {
+		int size;
+		synchronized (this) {
+			pending.put(firmalt.getAiorg(), new State(firmalt, firmalt.getAidato(), firmalt.getAitid()));
+			size = pending.size();
+		}
+		if (size >= flushBatch) {
+			try {
+				flushExecutor.submit(this::flush);
+			} catch (RejectedExecutionException e) {
+				// after shutdown, written by caller
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Copy pending aidato/aitid into record, as read from FIRMALT.
+	 * 
+	 * @param firmalt
+	 */
+	public synchronized void overlay(FirmaltDao firmalt) {
+		State state = pending.get(firmalt.getAiorg());
+		if (state != null) {
+			firmalt.setAidato(state.aidato);
+			firmalt.setAitid(state.aitid);
+		}
+	}
+
+	/**
+	 * Write all pending. Each update stays pending, and overlaid, until written.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			List<State> batch;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					return;
+				}
+				batch = new ArrayList<State>(pending.values());
+			}
+
+			int written = 0;
+			for (State state : batch) {
+				try {
+					firmaltDaoService.updateAiDatoAndAiTid(state.firmalt);
+				} catch (RuntimeException e) {
+					logger.error("Could not update FIRMALT, kept for next flush, records=" + (batch.size() - written), e);
+					break;
+				}
+				synchronized (this) {
+					//a newer update enqueued meanwhile stays pending
+					pending.remove(state.firmalt.getAiorg(), state);
+				}
+				written++;
+			}
+			if (written > 0) {
+				logger.info("FIRMALT updated, records=" + written);
+			}
+		}
+	}
+
+	/*
+	 * aidato/aitid as enqueued, firmalt is the shared record, written with its values at flush.
+	 */
+	private static class State {
+		final FirmaltDao firmalt;
+		final int aidato;
+		final int aitid;
+
+		State(FirmaltDao firmalt, int aidato, int aitid) {
+			this.firmalt = firmalt;
+			this.aidato = aidato;
+			this.aitid = aitid;
+		}
+	}
+
+}
@@ -0,0 +1,309 @@
+package no.systema.altinn.integration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import no.systema.altinn.entities.FileReadyEvent;
+
+/**
+ * Durable, append-only log of committed attachments, so consumers need not poll FIRMALT.aipath. <br>
+ *
+ * One {@linkplain FileReadyEvent} per line, JSON, in file-ready.log in altinn.work.dir. The log can be tailed directly,
+ * or read with long-poll on fileReady.do. Past altinn.events.max.bytes it is rotated to file-ready.log.1, one generation kept. <br>
+ *
+ * The last altinn.events.memory events are kept in memory for long-poll, older are read from file, without holding the log. <br>
+ *
+ * An event is appended before the write of its file completes, so an event that cannot be appended fails the write.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("fileReadyLog")
+public class FileReadyLog {
+	private static Logger logger = LogManager.getLogger(FileReadyLog.class);
+	private static final String FILE_NAME = "file-ready.log";
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Value("${altinn.work.dir}")
+	String workDir;
+
+	@Value("${altinn.events.fsync}")
+	boolean fsync;
+
+	@Value("${altinn.events.memory}")
+	int memory;
+
+	@Value("${altinn.events.max.bytes}")
+	long maxBytes;
+
+	private File file;
+	private FileOutputStream out;
+	private long seq;
+	// rotations since startup
+	private int generation;
+	private final Deque<FileReadyEvent> recent = new ArrayDeque<FileReadyEvent>();
+	private final List<Waiter> waiters = new ArrayList<Waiter>();
+
+	/*
+	 * Long-poll waiting for events after seq.
+	 */
+	private static class Waiter {
+		final long after;
+		final String orgnr;
+		final int max;
+		final DeferredResult<String> result;
+
+		Waiter(long after, String orgnr, int max, DeferredResult<String> result) {
+			this.after = after;
+			this.orgnr = orgnr;
+			this.max = max;
+			this.result = result;
+		}
+	}
+
+	@PostConstruct
+	public synchronized void init() {
+		file = new File(workDir, FILE_NAME);
+		for (FileReadyEvent event : read(new File(workDir, FILE_NAME + ".1"), 0)) {
+			remember(event);
+		}
+		for (FileReadyEvent event : read(file, 0)) {
+			remember(event);
+		}
+		logger.info("FileReadyLog initialized, last seq=" + seq + ", file=" + file);
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		closeOut();
+	}
+
+	/**
+	 * Append event for file visible under path, and answer waiting long-polls.
+	 *
+	 * @param orgnr
+	 * @param messageId
+	 * @param path, file in FIRMALT.aipath, or object or ZIP archive holding fileName
+	 * @param fileName
+	 * @param bytes
+	 * @param sha256, or null
+	 * @throws IOException if not appended, no event is published. Caller fails the write, or retries
+	 */
+	public void committed(String orgnr, String messageId, String path, String fileName, long bytes, String sha256) throws IOException {
+		FileReadyEvent event = new FileReadyEvent();
+		event.setTime(LocalDateTime.now().toString());
+		event.setOrgnr(orgnr);
+		event.setMessageId(messageId);
+		event.setPath(path);
+		event.setFileName(fileName);
+		event.setBytes(bytes);
+		event.setSha256(sha256);
+		List<Waiter> woken = new ArrayList<Waiter>();
+		synchronized (this) {
+			event.setSeq(seq + 1);
+			try {
+				append(event);
+			} catch (IOException e) {
+				logger.error("Could not append file-ready event for " + path + ". " + e.getMessage());
+				closeOut();
+				throw e;
+			}
+			remember(event);
+			for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext();) {
+				Waiter waiter = iterator.next();
+				if (waiter.orgnr == null || waiter.orgnr.equals(orgnr)) {
+					iterator.remove();
+					woken.add(waiter);
+				}
+			}
+		}
+		woken.forEach(waiter -> poll(waiter.after, waiter.orgnr, waiter.max, waiter.result));
+	}
+
+	/**
+	 * Recent events from memory, older read from file without holding the log.
+	 *
+	 * @param after, last seq seen by consumer, 0 for all
+	 * @param orgnr, or null for all
+	 * @param max
+	 * @return events with seq after, at most max
+	 */
+	public List<FileReadyEvent> after(long after, String orgnr, int max) {
+		return after(after, orgnr, max, getSeq());
+	}
+
+	/**
+	 * Answer now if events after seq exist, else when one is committed, else empty list on timeout of result.
+	 *
+	 * @param after, last seq seen by consumer
+	 * @param orgnr, or null for all
+	 * @param max
+	 * @param result, JSON array of {@linkplain FileReadyEvent}
+	 */
+	public void poll(long after, String orgnr, int max, DeferredResult<String> result) {
+		while (true) {
+			long upTo = getSeq();
+			List<FileReadyEvent> events = after(after, orgnr, max, upTo);
+			if (!events.isEmpty()) {
+				result.setResult(toJson(events));
+				return;
+			}
+			synchronized (this) {
+				// nothing for orgnr up to upTo, wait unless committed meanwhile
+				if (seq == upTo) {
+					Waiter waiter = new Waiter(upTo, orgnr, max, result);
+					waiters.add(waiter);
+					result.onCompletion(() -> {
+						synchronized (this) {
+							waiters.remove(waiter);
+						}
+					});
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return last seq
+	 */
+	public synchronized long getSeq() {
+		return seq;
+	}
+
+	public String toJson(List<FileReadyEvent> events) {
+		try {
+			return mapper.writeValueAsString(events);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Events after, up to upTo. Lines past upTo, maybe half written, are not read.
+	 */
+	private List<FileReadyEvent> after(long after, String orgnr, int max, long upTo) {
+		if (after >= upTo) {
+			return new ArrayList<FileReadyEvent>();
+		}
+		List<FileReadyEvent> source;
+		int readGeneration;
+		synchronized (this) {
+			if (!recent.isEmpty() && recent.peekFirst().getSeq() <= after + 1) {
+				return filter(recent, after, orgnr, max, upTo);
+			}
+			readGeneration = generation;
+		}
+		while (true) {
+			source = read(new File(workDir, FILE_NAME + ".1"), after);
+			source.addAll(read(file, after));
+			synchronized (this) {
+				// rotated while read, events may have moved between the files
+				if (generation == readGeneration) {
+					break;
+				}
+				readGeneration = generation;
+			}
+		}
+		return filter(source, after, orgnr, max, upTo);
+	}
+
+	private static List<FileReadyEvent> filter(Iterable<FileReadyEvent> source, long after, String orgnr, int max, long upTo) {
+		List<FileReadyEvent> result = new ArrayList<FileReadyEvent>();
+		for (FileReadyEvent event : source) {
+			if (event.getSeq() > upTo) {
+				break;
+			}
+			if (event.getSeq() > after && (orgnr == null || orgnr.equals(event.getOrgnr()))) {
+				result.add(event);
+				if (result.size() >= max) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private void append(FileReadyEvent event) throws IOException {
+		if (out != null && file.length() > maxBytes) {
+			closeOut();
+			Files.move(file.toPath(), new File(workDir, FILE_NAME + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+			generation++;
+			logger.info("File-ready log rotated at seq " + seq);
+		}
+		if (out == null) {
+			file.getParentFile().mkdirs();
+			out = new FileOutputStream(file, true);
+		}
+		out.write((mapper.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8));
+		if (fsync) {
+			out.getChannel().force(false);
+		}
+	}
+
+	private void remember(FileReadyEvent event) {
+		seq = Math.max(seq, event.getSeq());
+		recent.addLast(event);
+		while (recent.size() > memory) {
+			recent.pollFirst();
+		}
+	}
+
+	private List<FileReadyEvent> read(File from, long after) {
+		List<FileReadyEvent> events = new ArrayList<FileReadyEvent>();
+		if (!from.exists()) {
+			return events;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(from.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				try {
+					FileReadyEvent event = mapper.readValue(line, FileReadyEvent.class);
+					if (event.getSeq() > after) {
+						events.add(event);
+					}
+				} catch (IOException e) {
+					logger.warn("Skipped unreadable line in " + from + ". " + e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not read " + from + ". " + e.getMessage());
+		}
+		return events;
+	}
+
+	private void closeOut() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				logger.warn("Could not close " + file + ". " + e.getMessage());
+			}
+			out = null;
+		}
+	}
+
+}
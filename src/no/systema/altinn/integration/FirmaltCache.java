@@ -0,0 +1,201 @@
+package no.systema.altinn.integration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import no.systema.jservices.common.dao.FirmaltDao;
+import no.systema.jservices.common.dao.services.FirmaltDaoService;
+
+/**
+ * In-memory snapshot of FIRMALT, validated with {@link FirmaltDao#hasSaneValues()} on load. <br>
+ * 
+ * Reloaded when older than altinn.firmalt.max.age.seconds, or when the result of altinn.firmalt.marker.sql differs. 
+ * The marker is checked at most every altinn.firmalt.marker.seconds. It should not read aidato/aitid, 
+ * else each write of download state forces a full reload. <br>
+ * 
+ * Records are shared, aidato/aitid is updated in snapshot with {@link #updateAiDatoAndAiTid(FirmaltDao)}, 
+ * and written behind by {@linkplain DownloadStateWriter}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("firmaltCache")
+public class FirmaltCache {
+	private static Logger logger = LogManager.getLogger(FirmaltCache.class);
+
+	@Autowired
+	private FirmaltDaoService firmaltDaoService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DownloadStateWriter stateWriter;
+
+	@Value("${altinn.firmalt.max.age.seconds}")
+	long maxAgeSeconds;
+
+	@Value("${altinn.firmalt.marker.seconds}")
+	long markerSeconds;
+
+	@Value("${altinn.firmalt.marker.sql}")
+	String markerSql;
+
+	private Snapshot snapshot;
+	private long markerChecked;
+	private boolean markerFailed = false;
+
+	/**
+	 * @return all FIRMALT records with sane values
+	 * @throws RuntimeException if empty, or any record has suspicious values, as {@link FirmaltDao#hasSaneValues()}.
+	 */
+	public List<FirmaltDao> getSane() {
+		Snapshot current = current();
+		if (current.failure != null) {
+			throw current.failure;
+		}
+		return new ArrayList<FirmaltDao>(current.records);
+	}
+
+	/**
+	 * @param orgnr
+	 * @return FIRMALT record on orgnr, null if not found
+	 */
+	public FirmaltDao get(String orgnr) {
+		return current().byOrgnr.get(orgnr);
+	}
+
+	/**
+	 * Update in snapshot, FIRMALT is updated by {@linkplain DownloadStateWriter}.
+	 * 
+	 * @param firmalt
+	 */
+	public void updateAiDatoAndAiTid(FirmaltDao firmalt) {
+		stateWriter.enqueue(firmalt);
+		synchronized (this) {
+			if (snapshot != null) {
+				FirmaltDao cached = snapshot.byOrgnr.get(firmalt.getAiorg());
+				if (cached != null && cached != firmalt) {
+					cached.setAidato(firmalt.getAidato());
+					cached.setAitid(firmalt.getAitid());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Re-read record on orgnr from FIRMALT, aidato/aitid is refreshed in snapshot. Other records are not read.
+	 * 
+	 * @param orgnr
+	 * @return current FIRMALT record on orgnr, null if not found
+	 */
+	public FirmaltDao reload(String orgnr) {
+		FirmaltDao fresh = firmaltDaoService.getFirmaltDao(orgnr);
+		if (fresh == null || fresh.getAiorg() == null) {
+			return null;
+		}
+		stateWriter.overlay(fresh);
+		synchronized (this) {
+			FirmaltDao cached = snapshot != null ? snapshot.byOrgnr.get(orgnr) : null;
+			if (cached == null) {
+				return fresh;
+			}
+			cached.setAidato(fresh.getAidato());
+			cached.setAitid(fresh.getAitid());
+			return cached;
+		}
+	}
+
+	/**
+	 * Force reload on next access.
+	 */
+	public synchronized void invalidate() {
+		snapshot = null;
+	}
+
+	private synchronized Snapshot current() {
+		long now = System.currentTimeMillis();
+		if (snapshot == null || now - snapshot.loaded > maxAgeSeconds * 1000) {
+			snapshot = load();
+		} else if (now - markerChecked > markerSeconds * 1000) {
+			markerChecked = now;
+			String marker = marker();
+			if (marker != null && !marker.equals(snapshot.marker)) {
+				logger.info("FIRMALT changed, reloading.");
+				snapshot = load();
+			}
+		}
+		return snapshot;
+	}
+
+	private Snapshot load() {
+		String marker = marker();
+		markerChecked = System.currentTimeMillis();
+		List<FirmaltDao> records = firmaltDaoService.get();
+		Map<String, FirmaltDao> byOrgnr = new HashMap<String, FirmaltDao>();
+		records.forEach(firmalt -> {
+			stateWriter.overlay(firmalt);
+			byOrgnr.put(firmalt.getAiorg(), firmalt);
+		});
+
+		RuntimeException failure = null;
+		if (records.size() == 0) {
+			failure = new RuntimeException("Cannot find any records in firmalt, based on keys: aifirm, aiorg");
+		}
+		for (FirmaltDao firmalt : records) {
+			try {
+				firmalt.hasSaneValues();
+				logger.info("Firmalt record seems ok, record="+ReflectionToStringBuilder.toString(firmalt));
+			} catch (RuntimeException e) {
+				logger.error("Firmalt record has suspicious values, record="+ReflectionToStringBuilder.toString(firmalt), e);
+				failure = e;
+				break;
+			}
+		}
+
+		return new Snapshot(records, byOrgnr, failure, marker);
+	}
+
+	/*
+	 * null if marker query fails, then only max age applies.
+	 */
+	private String marker() {
+		try {
+			String marker = String.valueOf(jdbcTemplate.queryForList(markerSql));
+			markerFailed = false;
+			return marker;
+		} catch (RuntimeException e) {
+			if (!markerFailed) {
+				logger.warn("Could not query FIRMALT change marker, reloading on max age only. " + e.getMessage());
+				markerFailed = true;
+			}
+			return null;
+		}
+	}
+
+	private static class Snapshot {
+		final List<FirmaltDao> records;
+		final Map<String, FirmaltDao> byOrgnr;
+		final RuntimeException failure;
+		final long loaded = System.currentTimeMillis();
+		String marker;
+
+		Snapshot(List<FirmaltDao> records, Map<String, FirmaltDao> byOrgnr, RuntimeException failure, String marker) {
+			this.records = records;
+			this.byOrgnr = byOrgnr;
+			this.failure = failure;
+			this.marker = marker;
+		}
+	}
+
+}
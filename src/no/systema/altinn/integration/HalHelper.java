@@ -9,6 +9,9 @@ import java.util.List;
 import de.otto.edison.hal.HalRepresentation;
 import no.systema.altinn.entities.AttachmentHalRepresentation;
 import no.systema.altinn.entities.MessagesHalRepresentation;
+import no.systema.altinn.entities.MetadataHalRepresentation;
+import no.systema.altinn.entities.ProfileHalRepresentation;
+import no.systema.altinn.entities.RoleHalRepresentation;
 
 /**
  * Helper class for managing Hal stuff.
@@ -50,6 +53,53 @@ public class HalHelper {
 
 	}	
 
+	/**
+	 * Return Hal representations of Metadata
+	 * 
+	 * @param body
+	 * @return List<MetadataHalRepresentation>  services
+	 * @throws IOException
+	 */
+	public static List<MetadataHalRepresentation> getMetadata(String body) throws IOException {
+        final HalRepresentation result = parse(body)
+                .as(HalRepresentation.class, withEmbedded("metadata", MetadataHalRepresentation.class));
+        final List<MetadataHalRepresentation> embeddedMetadata = result.getEmbedded().getItemsBy("metadata", MetadataHalRepresentation.class);
+        
+        return embeddedMetadata;
+
+	}	
+
+	/**
+	 * Return Hal representations of authorization roles
+	 * 
+	 * @param body
+	 * @return List<RoleHalRepresentation>  roles
+	 * @throws IOException
+	 */
+	public static List<RoleHalRepresentation> getRoles(String body) throws IOException {
+        final HalRepresentation result = parse(body)
+                .as(HalRepresentation.class, withEmbedded("roles", RoleHalRepresentation.class));
+        final List<RoleHalRepresentation> embeddedRoles = result.getEmbedded().getItemsBy("roles", RoleHalRepresentation.class);
+        
+        return embeddedRoles;
+
+	}	
+
+	/**
+	 * Return Hal representations of Profile
+	 * 
+	 * @param body
+	 * @return ProfileHalRepresentation  profile
+	 * @throws IOException
+	 */
+	public static ProfileHalRepresentation getProfile(String body) throws IOException {
+        final ProfileHalRepresentation result = parse(body)
+                .as(ProfileHalRepresentation.class);
+        
+        return result;
+
+	}	
+
 	/**
 	 * Return Hal representations of Attachment
 	 * 
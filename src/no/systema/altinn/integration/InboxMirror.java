@@ -0,0 +1,219 @@
+package no.systema.altinn.integration;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.*;
+import org.springframework.stereotype.Service;
+
+import no.systema.altinn.entities.MessagesHalRepresentation;
+import no.systema.altinn.integration.MessageIndex.IndexedMessage;
+
+/**
+ * Local mirror of message headers per orgnr, as listed in Altinn innboks. <br>
+ * 
+ * Refreshed incrementally: the watermark is the highest LastChangedDateTime seen, 
+ * next refresh only need messages changed at or after it, see {@link ActionsUriBuilder#messages(String, String, LocalDateTime)}. <br>
+ * Messages are keyed on MessageId, a changed message replaces the former. <br>
+ * Deleted or archived messages never show up in a delta, they are evicted by a periodic full listing, see {@link #reconcile(String, List)}. <br>
+ * All messages are indexed in {@linkplain MessageIndex}, see {@link #find(MessageQuery, int)}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("inboxMirror")
+public class InboxMirror {
+	private static Logger logger = LogManager.getLogger(InboxMirror.class);
+	private final Map<String, OrgInbox> inboxes = new ConcurrentHashMap<String, OrgInbox>();
+	private final MessageIndex index = new MessageIndex();
+
+	/**
+	 * @param orgnr
+	 * @return true if orgnr has been loaded at least once
+	 */
+	public boolean isLoaded(String orgnr) {
+		return inboxes.containsKey(orgnr);
+	}
+
+	/**
+	 * @param orgnr
+	 * @return highest LastChangedDateTime in mirror, null if not loaded or empty
+	 */
+	public LocalDateTime getWatermark(String orgnr) {
+		OrgInbox inbox = inboxes.get(orgnr);
+		if (inbox == null) {
+			return null;
+		}
+		synchronized (inbox) {
+			return inbox.watermark;
+		}
+	}
+
+	/**
+	 * Upsert delta into mirror, and move watermark.
+	 * 
+	 * @param orgnr
+	 * @param delta, new or changed messages
+	 * @return number of new messages
+	 */
+	public int apply(String orgnr, List<MessagesHalRepresentation> delta) {
+		OrgInbox inbox = inboxes.computeIfAbsent(orgnr, o -> new OrgInbox());
+		int added = 0;
+		synchronized (inbox) {
+			for (MessagesHalRepresentation message : delta) {
+				if (inbox.messages.put(message.getMessageId(), message) == null) {
+					added++;
+				}
+				index.put(orgnr, message);
+				LocalDateTime lastChanged = parse(message.getLastChangedDateTime());
+				if (lastChanged != null && (inbox.watermark == null || lastChanged.isAfter(inbox.watermark))) {
+					inbox.watermark = lastChanged;
+				}
+			}
+			inbox.refreshed = LocalDateTime.now();
+		}
+		logger.info("Orgnr:" + orgnr + ", mirror refreshed, delta=" + delta.size() + ", new=" + added + ", watermark=" + inbox.watermark);
+
+		return added;
+	}
+
+	/**
+	 * Reconcile mirror with a full listing from Altinn. <br>
+	 * 
+	 * Mirrored messages not in listing are evicted, unless changed after the latest LastChangedDateTime in listing,
+	 * i.e. applied by a delta while the listing was on its way. New or changed messages are upserted as in {@link #apply(String, List)}.
+	 * 
+	 * @param orgnr
+	 * @param all, all messages for orgnr
+	 * @return number of evicted messages
+	 */
+	public int reconcile(String orgnr, List<MessagesHalRepresentation> all) {
+		OrgInbox inbox = inboxes.computeIfAbsent(orgnr, o -> new OrgInbox());
+		Set<String> listed = new HashSet<String>();
+		LocalDateTime listedUntil = null;
+		for (MessagesHalRepresentation message : all) {
+			listed.add(message.getMessageId());
+			LocalDateTime lastChanged = parse(message.getLastChangedDateTime());
+			if (lastChanged != null && (listedUntil == null || lastChanged.isAfter(listedUntil))) {
+				listedUntil = lastChanged;
+			}
+		}
+		int evicted = 0;
+		synchronized (inbox) {
+			Iterator<MessagesHalRepresentation> messages = inbox.messages.values().iterator();
+			while (messages.hasNext()) {
+				MessagesHalRepresentation message = messages.next();
+				if (listed.contains(message.getMessageId())) {
+					continue;
+				}
+				LocalDateTime lastChanged = parse(message.getLastChangedDateTime());
+				if (listedUntil != null && lastChanged != null && lastChanged.isAfter(listedUntil)) {
+					continue;
+				}
+				messages.remove();
+				index.remove(orgnr, message.getMessageId());
+				evicted++;
+			}
+			//keep mirrored unchanged, they may hold details
+			List<MessagesHalRepresentation> changed = new ArrayList<MessagesHalRepresentation>();
+			for (MessagesHalRepresentation message : all) {
+				MessagesHalRepresentation mirrored = inbox.messages.get(message.getMessageId());
+				if (mirrored == null || !Objects.equals(mirrored.getLastChangedDateTime(), message.getLastChangedDateTime())) {
+					changed.add(message);
+				}
+			}
+			apply(orgnr, changed);
+		}
+		logger.info("Orgnr:" + orgnr + ", mirror reconciled, listed=" + all.size() + ", evicted=" + evicted);
+
+		return evicted;
+	}
+
+	/**
+	 * @return orgnr loaded at least once
+	 */
+	public Set<String> getLoaded() {
+		return new HashSet<String>(inboxes.keySet());
+	}
+
+	/**
+	 * @param orgnr
+	 * @return copy of mirrored messages, empty if not loaded
+	 */
+	public List<MessagesHalRepresentation> getMessages(String orgnr) {
+		OrgInbox inbox = inboxes.get(orgnr);
+		if (inbox == null) {
+			return new ArrayList<MessagesHalRepresentation>();
+		}
+		synchronized (inbox) {
+			return new ArrayList<MessagesHalRepresentation>(inbox.messages.values());
+		}
+	}
+
+	/**
+	 * Query all mirrored messages, no calls to Altinn.
+	 * 
+	 * @param query
+	 * @param top, max number of messages, <= 0 is all
+	 * @return matching messages, ordered on CreatedDate
+	 */
+	public List<IndexedMessage> find(MessageQuery query, int top) {
+		return index.find(query, top);
+	}
+
+	/**
+	 * @return number of mirrored messages, all orgnr
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * @param orgnr
+	 * @return time of last refresh, null if not loaded
+	 */
+	public LocalDateTime getRefreshed(String orgnr) {
+		OrgInbox inbox = inboxes.get(orgnr);
+		if (inbox == null) {
+			return null;
+		}
+		synchronized (inbox) {
+			return inbox.refreshed;
+		}
+	}
+
+	/**
+	 * Altinn format e.g. "2018-01-30T09:26:37.883"
+	 * 
+	 * @param altinnDate
+	 * @return LocalDateTime or null if not parsable
+	 */
+	static LocalDateTime parse(String altinnDate) {
+		if (altinnDate == null) {
+			return null;
+		}
+		try {
+			return LocalDateTime.parse(altinnDate, DateTimeFormatter.ISO_DATE_TIME);
+		} catch (RuntimeException e) {
+			logger.warn("Could not parse Altinn date:" + altinnDate);
+			return null;
+		}
+	}
+
+	private static class OrgInbox {
+		final Map<String, MessagesHalRepresentation> messages = new LinkedHashMap<String, MessagesHalRepresentation>();
+		LocalDateTime watermark;
+		LocalDateTime refreshed;
+	}
+
+}
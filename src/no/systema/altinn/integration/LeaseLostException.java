@@ -0,0 +1,18 @@
+package no.systema.altinn.integration;
+
+/**
+ * Thrown when a download finds its orgnr lease in {@linkplain ClusterCoordinator} lost, e.g. expired and taken over by another node.
+ * The download is aborted, FIRMALT.aidato is not updated.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class LeaseLostException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public LeaseLostException(String message) {
+		super(message);
+	}
+
+}
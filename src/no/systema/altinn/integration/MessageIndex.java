@@ -0,0 +1,283 @@
+package no.systema.altinn.integration;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import no.systema.altinn.entities.MessagesHalRepresentation;
+import no.systema.altinn.integration.MessageQuery.Condition;
+import no.systema.altinn.integration.MessageQuery.Field;
+import no.systema.altinn.integration.MessageQuery.Op;
+
+/**
+ * Secondary indexes over messages in {@linkplain InboxMirror}. <br>
+ * 
+ * Hash index on Orgnr, ServiceOwner, ServiceCode, ServiceEdition and Status, sorted index on CreatedDate. <br>
+ * Each hash bucket is kept sorted on CreatedDate, so a CreatedDate range within a bucket is a view.
+ * A {@linkplain MessageQuery} is resolved from the most selective index, the remaining conditions are checked on each candidate.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class MessageIndex {
+	private static final String LOW = "";
+	private static final String HIGH = "\uffff";
+	private static final Comparator<Entry> CREATED_ORDER = Comparator
+			.comparing((Entry e) -> e.created, Comparator.nullsLast(Comparator.naturalOrder()))
+			.thenComparing(e -> e.key);
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private final Map<Field, Map<String, NavigableSet<Entry>>> hashIndexes = new EnumMap<Field, Map<String, NavigableSet<Entry>>>(Field.class);
+	private final NavigableSet<Entry> createdIndex = new TreeSet<Entry>(CREATED_ORDER);
+
+	public MessageIndex() {
+		for (Field field : Field.values()) {
+			if (field != Field.CreatedDate) {
+				hashIndexes.put(field, new HashMap<String, NavigableSet<Entry>>());
+			}
+		}
+	}
+
+	/**
+	 * Add or replace message for orgnr.
+	 * 
+	 * @param orgnr
+	 * @param message
+	 */
+	public void put(String orgnr, MessagesHalRepresentation message) {
+		Entry entry = new Entry(orgnr, message);
+		lock.writeLock().lock();
+		try {
+			Entry former = entries.put(entry.key, entry);
+			if (former != null) {
+				unindex(former);
+			}
+			index(entry);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove message for orgnr, if indexed.
+	 * 
+	 * @param orgnr
+	 * @param messageId
+	 */
+	public void remove(String orgnr, String messageId) {
+		lock.writeLock().lock();
+		try {
+			Entry former = entries.remove(orgnr + "/" + messageId);
+			if (former != null) {
+				unindex(former);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of indexed messages
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param query
+	 * @param top, max number of messages, <= 0 is all
+	 * @return matching messages, ordered on CreatedDate
+	 */
+	public List<IndexedMessage> find(MessageQuery query, int top) {
+		lock.readLock().lock();
+		try {
+			List<Condition> conditions = query.getConditions();
+			List<IndexedMessage> result = new ArrayList<IndexedMessage>();
+			for (Entry entry : candidates(conditions)) {
+				if (matches(entry, conditions)) {
+					result.add(new IndexedMessage(entry.orgnr, entry.message));
+					if (top > 0 && result.size() >= top) {
+						break;
+					}
+				}
+			}
+
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Smallest set from hash indexes, else all, narrowed to CreatedDate range. 
+	 * All sets are ordered on CreatedDate, so range is a view and no sorting is needed.
+	 */
+	private NavigableSet<Entry> candidates(List<Condition> conditions) {
+		NavigableSet<Entry> smallest = createdIndex;
+		Entry from = null, to = null;
+		for (Condition condition : conditions) {
+			if (condition.getField() == Field.CreatedDate) {
+				LocalDateTime value = (LocalDateTime) condition.getValue();
+				Op op = condition.getOp();
+				//probes sort before (LOW) or after (HIGH) all keys with same CreatedDate
+				if (op == Op.eq || op == Op.gt || op == Op.ge) {
+					Entry probe = new Entry(value, op == Op.gt ? HIGH : LOW);
+					if (from == null || CREATED_ORDER.compare(probe, from) > 0) {
+						from = probe;
+					}
+				}
+				if (op == Op.eq || op == Op.lt || op == Op.le) {
+					Entry probe = new Entry(value, op == Op.lt ? LOW : HIGH);
+					if (to == null || CREATED_ORDER.compare(probe, to) < 0) {
+						to = probe;
+					}
+				}
+			} else if (condition.getOp() == Op.eq) {
+				NavigableSet<Entry> keys = hashIndexes.get(condition.getField()).get(condition.getValue());
+				if (keys == null) {
+					return Collections.emptyNavigableSet();
+				}
+				if (keys.size() < smallest.size()) {
+					smallest = keys;
+				}
+			}
+		}
+
+		if (from != null && to != null) {
+			if (CREATED_ORDER.compare(from, to) > 0) {
+				return Collections.emptyNavigableSet();
+			}
+			return smallest.subSet(from, true, to, true);
+		} else if (from != null) {
+			//null CreatedDate sorts last, keep them out
+			return smallest.subSet(from, true, new Entry(LocalDateTime.MAX, HIGH), true);
+		} else if (to != null) {
+			return smallest.headSet(to, true);
+		}
+
+		return smallest;
+	}
+
+	private boolean matches(Entry entry, List<Condition> conditions) {
+		for (Condition condition : conditions) {
+			if (condition.getField() == Field.CreatedDate) {
+				if (entry.created == null) {
+					return false;
+				}
+				int cmp = entry.created.compareTo((LocalDateTime) condition.getValue());
+				boolean ok;
+				switch (condition.getOp()) {
+				case eq: ok = cmp == 0; break;
+				case gt: ok = cmp > 0; break;
+				case ge: ok = cmp >= 0; break;
+				case lt: ok = cmp < 0; break;
+				case le: ok = cmp <= 0; break;
+				default: ok = false;
+				}
+				if (!ok) {
+					return false;
+				}
+			} else {
+				boolean equal = condition.getValue().equals(entry.value(condition.getField()));
+				if (equal != (condition.getOp() == Op.eq)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void index(Entry entry) {
+		hashIndexes.forEach((field, index) -> {
+			String value = entry.value(field);
+			if (value != null) {
+				index.computeIfAbsent(value, v -> new TreeSet<Entry>(CREATED_ORDER)).add(entry);
+			}
+		});
+		createdIndex.add(entry);
+	}
+
+	private void unindex(Entry entry) {
+		hashIndexes.forEach((field, index) -> {
+			String value = entry.value(field);
+			NavigableSet<Entry> set = value != null ? index.get(value) : null;
+			if (set != null) {
+				set.remove(entry);
+				if (set.isEmpty()) {
+					index.remove(value);
+				}
+			}
+		});
+		createdIndex.remove(entry);
+	}
+
+	private static class Entry {
+		final String key;
+		final String orgnr;
+		final MessagesHalRepresentation message;
+		final LocalDateTime created;
+
+		Entry(String orgnr, MessagesHalRepresentation message) {
+			this.key = orgnr + "/" + message.getMessageId();
+			this.orgnr = orgnr;
+			this.message = message;
+			this.created = InboxMirror.parse(message.getCreatedDate());
+		}
+
+		//range probe
+		Entry(LocalDateTime created, String key) {
+			this.key = key;
+			this.orgnr = null;
+			this.message = null;
+			this.created = created;
+		}
+
+		String value(Field field) {
+			switch (field) {
+			case Orgnr: return orgnr;
+			case ServiceOwner: return message.getServiceOwner();
+			case ServiceCode: return message.getServiceCode();
+			case ServiceEdition: return String.valueOf(message.getServiceEdition());
+			case Status: return message.getStatus();
+			default: return null;
+			}
+		}
+	}
+
+	/**
+	 * Message with orgnr, as returned from {@link MessageIndex#find(MessageQuery, int)}.
+	 */
+	public static class IndexedMessage {
+		private final String orgnr;
+		private final MessagesHalRepresentation message;
+
+		IndexedMessage(String orgnr, MessagesHalRepresentation message) {
+			this.orgnr = orgnr;
+			this.message = message;
+		}
+
+		public String getOrgnr() {
+			return orgnr;
+		}
+
+		public MessagesHalRepresentation getMessage() {
+			return message;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package no.systema.altinn.integration;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Filter on mirrored messages, the OData subset as created in {@linkplain ActionsUriBuilder}. <br>
+ * 
+ * Conditions are joined with 'and', e.g. <br>
+ * ServiceOwner eq 'Skatteetaten' and ServiceCode eq '5012' and ServiceEdition eq 171208 and Status eq 'Ulest' and CreatedDate gt datetime'2018-01-30' <br>
+ * 
+ * Fields: Orgnr, ServiceOwner, ServiceCode, ServiceEdition, Status with eq/ne, CreatedDate with eq/gt/ge/lt/le.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class MessageQuery {
+	public enum Field { Orgnr, ServiceOwner, ServiceCode, ServiceEdition, Status, CreatedDate }
+	public enum Op { eq, ne, gt, ge, lt, le }
+
+	private static final Pattern AND = Pattern.compile("\\s+and\\s+", Pattern.CASE_INSENSITIVE);
+	private static final Pattern CONDITION = Pattern.compile("(\\w+)\\s+(eq|ne|gt|ge|lt|le)\\s+(datetime'[^']*'|'[^']*'|-?\\d+)");
+
+	private final List<Condition> conditions;
+
+	private MessageQuery(List<Condition> conditions) {
+		this.conditions = conditions;
+	}
+
+	/**
+	 * @param filter, null or empty match all
+	 * @return MessageQuery
+	 * @throws IllegalArgumentException on unknown field, operator or syntax
+	 */
+	public static MessageQuery parse(String filter) {
+		List<Condition> conditions = new ArrayList<Condition>();
+		if (filter == null || filter.trim().isEmpty()) {
+			return new MessageQuery(conditions);
+		}
+		for (String clause : AND.split(filter.trim())) {
+			Matcher matcher = CONDITION.matcher(clause.trim());
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException("Invalid condition in $filter: " + clause);
+			}
+			Field field;
+			try {
+				field = Field.valueOf(matcher.group(1));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown field in $filter: " + matcher.group(1));
+			}
+			Op op = Op.valueOf(matcher.group(2));
+			String literal = matcher.group(3);
+			
+			if (field == Field.CreatedDate) {
+				if (op == Op.ne) {
+					throw new IllegalArgumentException("ne not supported on CreatedDate");
+				}
+				conditions.add(new Condition(field, op, toDateTime(unquote(literal))));
+			} else {
+				if (op != Op.eq && op != Op.ne) {
+					throw new IllegalArgumentException(op + " only supported on CreatedDate");
+				}
+				conditions.add(new Condition(field, op, unquote(literal)));
+			}
+		}
+
+		return new MessageQuery(conditions);
+	}
+
+	public List<Condition> getConditions() {
+		return Collections.unmodifiableList(conditions);
+	}
+
+	private static String unquote(String literal) {
+		if (literal.startsWith("datetime'")) {
+			return literal.substring("datetime'".length(), literal.length() - 1);
+		}
+		if (literal.startsWith("'")) {
+			return literal.substring(1, literal.length() - 1);
+		}
+		return literal;
+	}
+
+	private static LocalDateTime toDateTime(String value) {
+		try {
+			if (value.length() == 10) {
+				return LocalDate.parse(value).atStartOfDay();
+			}
+			return LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid datetime in $filter: " + value);
+		}
+	}
+
+	/**
+	 * One condition, value is String for all fields but CreatedDate, there LocalDateTime.
+	 */
+	public static class Condition {
+		private final Field field;
+		private final Op op;
+		private final Object value;
+
+		Condition(Field field, Op op, Object value) {
+			this.field = field;
+			this.op = op;
+			this.value = value;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public Op getOp() {
+			return op;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return field + " " + op + " " + value;
+		}
+	}
+
+}
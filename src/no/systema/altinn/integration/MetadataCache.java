@@ -0,0 +1,169 @@
+package no.systema.altinn.integration;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import no.systema.altinn.entities.MetadataHalRepresentation;
+import no.systema.altinn.entities.PrettyPrintServiceMetadata;
+import no.systema.altinn.entities.ServiceCode;
+import no.systema.altinn.entities.ServiceEdition;
+
+/**
+ * Cache of Altinn service metadata, see {@link ActionsUriBuilder#metadata(String)}. <br>
+ * 
+ * Loaded on startup and refreshed in background by {@linkplain ActionsServiceManager}. 
+ * Snapshot older than altinn.metadata.ttl.minutes is not used, lookups then answer unknown. <br>
+ * 
+ * Used for validating {@linkplain ServiceCode}/{@linkplain ServiceEdition} pairs without round trip, and to flag editions past ValidTo.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("metadataCache")
+public class MetadataCache {
+	private static Logger logger = LogManager.getLogger(MetadataCache.class);
+
+	@Value("${altinn.metadata.ttl.minutes}")
+	long ttlMinutes;
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Replace snapshot, and log enum pairs that are unknown or expired.
+	 * 
+	 * @param metadata, as returned from Altinn
+	 */
+	public void load(List<MetadataHalRepresentation> metadata) {
+		Map<String, MetadataHalRepresentation> services = new HashMap<String, MetadataHalRepresentation>();
+		metadata.forEach(service -> services.put(key(service.getServiceCode(), service.getServiceEditionCode()), service));
+		snapshot = new Snapshot(services, LocalDateTime.now());
+		logger.info("Altinn metadata loaded, services=" + services.size());
+
+		getStatus().forEach(status -> {
+			if (!"OK".equals(status.getStatus())) {
+				logger.warn("ServiceCode=" + status.getKode() + ", ServiceEdition=" + status.getUtgave() + " is " + status.getStatus()
+						+ ", gyldigTil=" + status.getGyldigTil() + ", gjeldendeUtgave=" + status.getGjeldendeUtgave());
+			}
+		});
+	}
+
+	/**
+	 * @return true if loaded and within ttl
+	 */
+	public boolean isLoaded() {
+		Snapshot current = snapshot;
+		return current != null && current.loaded.plusMinutes(ttlMinutes).isAfter(LocalDateTime.now());
+	}
+
+	/**
+	 * @param serviceCode
+	 * @param serviceEdition
+	 * @return metadata, null if unknown in Altinn or not loaded
+	 */
+	public MetadataHalRepresentation find(ServiceCode serviceCode, ServiceEdition serviceEdition) {
+		if (!isLoaded()) {
+			return null;
+		}
+		return snapshot.services.get(key(serviceCode.getCode(), String.valueOf(serviceEdition.getCode())));
+	}
+
+	/**
+	 * Edition with ValidTo before date will not get messages created after date.
+	 * 
+	 * @param serviceCode
+	 * @param serviceEdition
+	 * @param date
+	 * @return true if known and ValidTo is before date, false if valid or unknown.
+	 */
+	public boolean isExpired(ServiceCode serviceCode, ServiceEdition serviceEdition, LocalDate date) {
+		MetadataHalRepresentation service = find(serviceCode, serviceEdition);
+		if (service == null) {
+			return false;
+		}
+		LocalDateTime validTo = InboxMirror.parse(service.getValidTo());
+		return validTo != null && validTo.toLocalDate().isBefore(date);
+	}
+
+	/**
+	 * @param serviceCode
+	 * @return highest edition valid today, null if none or not loaded
+	 */
+	public String getCurrentEdition(ServiceCode serviceCode) {
+		if (!isLoaded()) {
+			return null;
+		}
+		LocalDateTime now = LocalDateTime.now();
+		String current = null;
+		for (MetadataHalRepresentation service : snapshot.services.values()) {
+			if (!serviceCode.getCode().equals(service.getServiceCode())) {
+				continue;
+			}
+			LocalDateTime validFrom = InboxMirror.parse(service.getValidFrom());
+			LocalDateTime validTo = InboxMirror.parse(service.getValidTo());
+			if ((validFrom == null || !validFrom.isAfter(now)) && (validTo == null || validTo.isAfter(now))) {
+				if (current == null || compareEdition(service.getServiceEditionCode(), current) > 0) {
+					current = service.getServiceEditionCode();
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return status on all {@linkplain ServiceCode}/{@linkplain ServiceEdition} pairs in use
+	 */
+	public List<PrettyPrintServiceMetadata> getStatus() {
+		List<PrettyPrintServiceMetadata> result = new ArrayList<PrettyPrintServiceMetadata>();
+		LocalDate today = LocalDate.now();
+		for (ServiceCode serviceCode : ServiceCode.values()) {
+			ServiceEdition serviceEdition = ServiceEdition.valueOf(serviceCode.name());
+			MetadataHalRepresentation service = find(serviceCode, serviceEdition);
+			String status;
+			if (!isLoaded()) {
+				status = "IKKE LASTET";
+			} else if (service == null) {
+				status = "UKJENT";
+			} else if (isExpired(serviceCode, serviceEdition, today)) {
+				status = "UTLØPT";
+			} else {
+				status = "OK";
+			}
+			result.add(new PrettyPrintServiceMetadata(serviceCode.name(), serviceCode.getCode(), serviceEdition.getCode(),
+					service != null ? service.getValidFrom() : null, service != null ? service.getValidTo() : null, status,
+					getCurrentEdition(serviceCode)));
+		}
+		return result;
+	}
+
+	private int compareEdition(String a, String b) {
+		try {
+			return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
+		} catch (NumberFormatException e) {
+			return a.compareTo(b);
+		}
+	}
+
+	private static String key(String serviceCode, String serviceEdition) {
+		return serviceCode + "/" + serviceEdition;
+	}
+
+	private static class Snapshot {
+		final Map<String, MetadataHalRepresentation> services;
+		final LocalDateTime loaded;
+
+		Snapshot(Map<String, MetadataHalRepresentation> services, LocalDateTime loaded) {
+			this.services = services;
+			this.loaded = loaded;
+		}
+	}
+
+}
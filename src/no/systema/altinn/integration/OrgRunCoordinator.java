@@ -0,0 +1,79 @@
+package no.systema.altinn.integration;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.*;
+import org.springframework.stereotype.Service;
+
+/**
+ * Single-flight of runs per key, typically orgnr. <br>
+ * 
+ * First caller executes the run, callers arriving while it is in flight wait for, and get, the same result or exception. 
+ * Next caller after completion starts a new run.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("orgRunCoordinator")
+public class OrgRunCoordinator {
+	private static Logger logger = LogManager.getLogger(OrgRunCoordinator.class);
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+	/**
+	 * @param key, e.g. orgnr
+	 * @param run
+	 * @return result of run, own or joined
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T run(String key, Supplier<T> run) {
+		CompletableFuture<Object> mine = new CompletableFuture<Object>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			logger.info("Key:" + key + ", run in flight, joining.");
+			return (T) await(existing);
+		}
+
+		try {
+			T result = run.get();
+			mine.complete(result);
+			return result;
+		} catch (Throwable e) {
+			//also Error, so joiners never wait forever
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return true if run in flight on key
+	 */
+	public boolean isInFlight(String key) {
+		return inFlight.containsKey(key);
+	}
+
+	private Object await(CompletableFuture<Object> existing) {
+		try {
+			return existing.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while joining run", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+}
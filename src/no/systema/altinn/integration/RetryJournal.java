@@ -0,0 +1,175 @@
+package no.systema.altinn.integration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import no.systema.altinn.entities.RetryEntry;
+
+/**
+ * Durable journal of failed units of work, message detail or single attachment. <br>
+ * 
+ * Persisted as JSON in altinn.work.dir, rewritten with write-to-temp and rename on each change. <br>
+ * Retries are due after a jittered exponential backoff: base * 2^(attempts-1), half of it random, capped at max. 
+ * After max attempts the entry is dropped and logged as error. <br>
+ * A unit of work is journaled once, keyed on orgnr, type, uri and writeFile. <br>
+ * Single writer, the journal is locked for this instance until {@link #close()}, see {@link WorkFileLock}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("retryJournal")
+public class RetryJournal {
+	private static Logger logger = LogManager.getLogger(RetryJournal.class);
+	private static final String FILE_NAME = "retry-journal.json";
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Map<String, RetryEntry> entries = new LinkedHashMap<String, RetryEntry>();
+	private WorkFileLock lock;
+
+	@Value("${altinn.work.dir}")
+	String workDir;
+
+	@Value("${altinn.retry.base.ms}")
+	long baseMs;
+
+	@Value("${altinn.retry.max.ms}")
+	long maxMs;
+
+	@Value("${altinn.retry.max.attempts}")
+	int maxAttempts;
+
+	@PostConstruct
+	public synchronized void init() {
+		File file = new File(workDir, FILE_NAME);
+		lock = WorkFileLock.acquire(file.toPath());
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			List<RetryEntry> loaded = mapper.readValue(file, new TypeReference<List<RetryEntry>>() {});
+			loaded.forEach(entry -> entries.put(entry.getId(), entry));
+			logger.info(entries.size() + " entries loaded from " + file);
+		} catch (IOException e) {
+			logger.error("Could not read retry journal " + file + ", starting empty.", e);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		if (lock != null) {
+			lock.release();
+			lock = null;
+		}
+	}
+
+	/**
+	 * Add failed unit of work, first retry after base backoff.
+	 * If the same unit of work is already journaled, only its last error is updated, and its backoff is kept.
+	 * 
+	 * @param entry
+	 * @param error
+	 */
+	public synchronized void enqueue(RetryEntry entry, String error) {
+		RetryEntry journaled = find(entry);
+		if (journaled != null) {
+			journaled.setLastError(error);
+			logger.info("Orgnr:" + entry.getOrgnr() + ", " + entry.getType() + " " + entry.getUri() + " already journaled for retry, error=" + error);
+			persist();
+			return;
+		}
+		entry.setId(UUID.randomUUID().toString());
+		entry.setAttempts(1);
+		entry.setLastError(error);
+		entry.setNextAttempt(System.currentTimeMillis() + backoff(1));
+		entries.put(entry.getId(), entry);
+		logger.warn("Orgnr:" + entry.getOrgnr() + ", " + entry.getType() + " " + entry.getUri() + " journaled for retry, error=" + error);
+		persist();
+	}
+
+	/**
+	 * @param orgnr
+	 * @return entries for orgnr with next attempt passed
+	 */
+	public synchronized List<RetryEntry> due(String orgnr) {
+		long now = System.currentTimeMillis();
+		return entries.values().stream()
+				.filter(e -> e.getOrgnr().equals(orgnr) && e.getNextAttempt() <= now)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return all entries
+	 */
+	public synchronized List<RetryEntry> getEntries() {
+		return new ArrayList<RetryEntry>(entries.values());
+	}
+
+	public synchronized void succeeded(RetryEntry entry) {
+		entries.remove(entry.getId());
+		logger.info("Orgnr:" + entry.getOrgnr() + ", " + entry.getType() + " " + entry.getUri() + " succeeded on attempt " + (entry.getAttempts() + 1));
+		persist();
+	}
+
+	public synchronized void failed(RetryEntry entry, String error) {
+		int attempts = entry.getAttempts() + 1;
+		if (attempts >= maxAttempts) {
+			entries.remove(entry.getId());
+			logger.error("Orgnr:" + entry.getOrgnr() + ", " + entry.getType() + " " + entry.getUri() + " given up after " + attempts + " attempts, error=" + error);
+		} else {
+			entry.setAttempts(attempts);
+			entry.setLastError(error);
+			entry.setNextAttempt(System.currentTimeMillis() + backoff(attempts));
+		}
+		persist();
+	}
+
+	private RetryEntry find(RetryEntry entry) {
+		for (RetryEntry journaled : entries.values()) {
+			if (journaled.getOrgnr().equals(entry.getOrgnr()) && journaled.getType().equals(entry.getType())
+					&& Objects.equals(journaled.getUri(), entry.getUri()) && Objects.equals(journaled.getWriteFile(), entry.getWriteFile())) {
+				return journaled;
+			}
+		}
+		return null;
+	}
+
+	private long backoff(int attempts) {
+		long exp = baseMs << Math.min(attempts - 1, 30);
+		long capped = Math.min(maxMs, exp < 0 ? maxMs : exp);
+		return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+	}
+
+	private void persist() {
+		try {
+			Path dir = new File(workDir).toPath();
+			Files.createDirectories(dir);
+			Path tmp = dir.resolve(FILE_NAME + ".tmp");
+			mapper.writeValue(tmp.toFile(), new ArrayList<RetryEntry>(entries.values()));
+			Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.error("Could not persist retry journal in " + workDir, e);
+		}
+	}
+
+}
@@ -0,0 +1,246 @@
+package no.systema.altinn.integration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Write-ahead log of download progress per orgnr, to resume runs interrupted by e.g. Tomcat restart. <br>
+ * 
+ * Records, one per line, tab separated: <br>
+ * START runId orgnr watermark (FIRMALT.aidato when run started) <br>
+ * MESSAGE runId orgnr messageId (all attachments written or journaled, detail is not fetched again on resume) <br>
+ * ATTACHMENT runId orgnr fileName (written to FIRMALT.aipath) <br>
+ * END runId orgnr <br>
+ * 
+ * A run without END is incomplete. The log is compacted to incomplete runs only on each END. <br>
+ * Single writer, the log is locked for this instance until {@link #close()}, see {@link WorkFileLock}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("runCheckpointLog")
+public class RunCheckpointLog {
+	private static Logger logger = LogManager.getLogger(RunCheckpointLog.class);
+	private static final String FILE_NAME = "run-checkpoint.log";
+	private static final String START = "START", MESSAGE = "MESSAGE", ATTACHMENT = "ATTACHMENT", END = "END";
+
+	private final Map<String, OpenRun> openRuns = new LinkedHashMap<String, OpenRun>();
+	private FileOutputStream out;
+	private Writer writer;
+	private WorkFileLock lock;
+
+	@Value("${altinn.work.dir}")
+	String workDir;
+
+	@Value("${altinn.checkpoint.fsync}")
+	boolean fsync;
+
+	@PostConstruct
+	public synchronized void init() {
+		File file = new File(workDir, FILE_NAME);
+		lock = WorkFileLock.acquire(file.toPath());
+		if (file.exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					replay(line.split("\t"));
+				}
+			} catch (IOException e) {
+				logger.error("Could not read checkpoint log " + file + ", ignoring.", e);
+			}
+		}
+		compact();
+		if (!openRuns.isEmpty()) {
+			logger.warn(openRuns.size() + " incomplete runs in checkpoint log, orgnr=" + openRuns.keySet());
+		}
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		closeWriter();
+		if (lock != null) {
+			lock.release();
+			lock = null;
+		}
+	}
+
+	/**
+	 * Start, or continue if incomplete, checkpointed run for orgnr.
+	 * 
+	 * @param orgnr
+	 * @param watermark, FIRMALT.aidato
+	 */
+	public synchronized void start(String orgnr, int watermark) {
+		if (openRuns.containsKey(orgnr)) {
+			OpenRun run = openRuns.get(orgnr);
+			logger.info("Orgnr:" + orgnr + ", resuming run " + run.runId + " with " + run.attachments.size() + " attachments done.");
+			return;
+		}
+		OpenRun run = new OpenRun(UUID.randomUUID().toString().substring(0, 8), watermark);
+		openRuns.put(orgnr, run);
+		append(START, run.runId, orgnr, String.valueOf(watermark));
+	}
+
+	public synchronized void message(String orgnr, String messageId) {
+		OpenRun run = openRuns.get(orgnr);
+		if (run != null && run.messages.add(messageId)) {
+			append(MESSAGE, run.runId, orgnr, messageId);
+		}
+	}
+
+	public synchronized void attachment(String orgnr, String fileName) {
+		OpenRun run = openRuns.get(orgnr);
+		if (run != null && run.attachments.add(fileName)) {
+			append(ATTACHMENT, run.runId, orgnr, fileName);
+		}
+	}
+
+	/**
+	 * @param orgnr
+	 * @param messageId
+	 * @return true if all attachments of message are written, or journaled, in incomplete run for orgnr
+	 */
+	public synchronized boolean isMessageDone(String orgnr, String messageId) {
+		OpenRun run = openRuns.get(orgnr);
+		return run != null && run.messages.contains(messageId);
+	}
+
+	/**
+	 * @param orgnr
+	 * @param fileName
+	 * @return true if attachment is written in incomplete run for orgnr
+	 */
+	public synchronized boolean isDone(String orgnr, String fileName) {
+		OpenRun run = openRuns.get(orgnr);
+		return run != null && run.attachments.contains(fileName);
+	}
+
+	public synchronized void end(String orgnr) {
+		OpenRun run = openRuns.remove(orgnr);
+		if (run != null) {
+			append(END, run.runId, orgnr, "");
+			compact();
+		}
+	}
+
+	/**
+	 * @return orgnr and watermark of incomplete runs
+	 */
+	public synchronized Map<String, Integer> getIncomplete() {
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		openRuns.forEach((orgnr, run) -> result.put(orgnr, run.watermark));
+		return result;
+	}
+
+	private void replay(String[] record) {
+		if (record.length < 3) {
+			return;
+		}
+		String type = record[0], runId = record[1], orgnr = record[2];
+		String value = record.length > 3 ? record[3] : "";
+		if (START.equals(type)) {
+			openRuns.put(orgnr, new OpenRun(runId, Integer.parseInt(value)));
+			return;
+		}
+		OpenRun run = openRuns.get(orgnr);
+		if (run == null || !run.runId.equals(runId)) {
+			return;
+		}
+		if (MESSAGE.equals(type)) {
+			run.messages.add(value);
+		} else if (ATTACHMENT.equals(type)) {
+			run.attachments.add(value);
+		} else if (END.equals(type)) {
+			openRuns.remove(orgnr);
+		}
+	}
+
+	private void append(String type, String runId, String orgnr, String value) {
+		try {
+			if (writer == null) {
+				openWriter();
+			}
+			writer.write(type + "\t" + runId + "\t" + orgnr + "\t" + value + "\n");
+			writer.flush();
+			if (fsync) {
+				out.getFD().sync();
+			}
+		} catch (IOException e) {
+			logger.error("Could not write checkpoint " + type + " for orgnr:" + orgnr, e);
+		}
+	}
+
+	/*
+	 * Rewrite log with incomplete runs only.
+	 */
+	private void compact() {
+		closeWriter();
+		try {
+			Path dir = new File(workDir).toPath();
+			Files.createDirectories(dir);
+			Path tmp = dir.resolve(FILE_NAME + ".tmp");
+			StringBuilder sb = new StringBuilder();
+			openRuns.forEach((orgnr, run) -> {
+				sb.append(START + "\t" + run.runId + "\t" + orgnr + "\t" + run.watermark + "\n");
+				run.messages.forEach(m -> sb.append(MESSAGE + "\t" + run.runId + "\t" + orgnr + "\t" + m + "\n"));
+				run.attachments.forEach(a -> sb.append(ATTACHMENT + "\t" + run.runId + "\t" + orgnr + "\t" + a + "\n"));
+			});
+			Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.error("Could not compact checkpoint log in " + workDir, e);
+		}
+	}
+
+	private void openWriter() throws IOException {
+		Files.createDirectories(new File(workDir).toPath());
+		out = new FileOutputStream(new File(workDir, FILE_NAME), true);
+		writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+	}
+
+	private void closeWriter() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				logger.warn("Could not close checkpoint log", e);
+			}
+			writer = null;
+			out = null;
+		}
+	}
+
+	private static class OpenRun {
+		final String runId;
+		final int watermark;
+		final Set<String> messages = new HashSet<String>();
+		final Set<String> attachments = new HashSet<String>();
+
+		OpenRun(String runId, int watermark) {
+			this.runId = runId;
+			this.watermark = watermark;
+		}
+	}
+
+}
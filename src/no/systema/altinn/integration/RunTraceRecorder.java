@@ -0,0 +1,86 @@
+package no.systema.altinn.integration;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import no.systema.altinn.entities.RunTrace;
+
+/**
+ * Keeps the last N {@linkplain RunTrace} in memory, for inspection from DownloadController. <br>
+ * 
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("runTraceRecorder")
+public class RunTraceRecorder {
+	private static Logger logger = LogManager.getLogger(RunTraceRecorder.class);
+	private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private final Deque<RunTrace> traces = new LinkedList<RunTrace>();
+
+	@Value("${altinn.trace.keep}")
+	int keep;
+
+	/**
+	 * Start a new trace, the oldest trace is evicted when more than altinn.trace.keep are held.
+	 * 
+	 * @param trigger, e.g. endpoint name
+	 * @return RunTrace
+	 */
+	public RunTrace begin(String trigger) {
+		RunTrace trace = new RunTrace(trigger);
+		synchronized (traces) {
+			traces.addFirst(trace);
+			while (traces.size() > Math.max(keep, 1)) {
+				traces.removeLast();
+			}
+		}
+		logger.info("RunTrace " + trace.getRunId() + " started, trigger=" + trigger);
+
+		return trace;
+	}
+
+	/**
+	 * @return List<RunTrace>, newest first
+	 */
+	public List<RunTrace> getTraces() {
+		synchronized (traces) {
+			return new ArrayList<RunTrace>(traces);
+		}
+	}
+
+	/**
+	 * @param runId
+	 * @return RunTrace or null if evicted or unknown
+	 */
+	public RunTrace getTrace(String runId) {
+		synchronized (traces) {
+			return traces.stream().filter(t -> t.getRunId().equals(runId)).findFirst().orElse(null);
+		}
+	}
+
+	/**
+	 * @param value, a RunTrace or List<RunTrace>
+	 * @return indented JSON
+	 */
+	public String toJson(Object value) {
+		try {
+			return mapper.writeValueAsString(value);
+		} catch (JsonProcessingException e) {
+			logger.error("Could not serialize trace", e);
+			throw new RuntimeException("Could not serialize trace", e);
+		}
+	}
+
+}
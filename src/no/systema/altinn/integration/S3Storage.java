@@ -0,0 +1,390 @@
+package no.systema.altinn.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Attachments as objects in an S3-compatible store, aipath as s3://bucket/prefix/. <br>
+ *
+ * Endpoint, region and keys in altinn.s3.*, path-style addressing for local stand-ins as MinIO. Requests are signed with AWS Signature V4. <br>
+ *
+ * Files up to altinn.s3.part.bytes are one PUT, signed with their SHA-256. Larger files are a multipart upload, parts of
+ * altinn.s3.part.bytes uploaded in parallel on altinn.s3.upload.threads, each streamed from its region of the spool file.
+ * A failed upload is aborted, and the attachment is journaled for retry. Connect and read timeouts as altinn.http.*.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("s3Storage")
+public class S3Storage implements AttachmentStorage {
+	private static Logger logger = LogManager.getLogger(S3Storage.class);
+	public static final String PREFIX = "s3://";
+	private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+	private static final DateTimeFormatter amzDateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+	private static final Pattern uploadIdPattern = Pattern.compile("<UploadId>(.+?)</UploadId>");
+
+	@Value("${altinn.s3.endpoint}")
+	String endpoint;
+
+	@Value("${altinn.s3.region}")
+	String region;
+
+	@Value("${altinn.s3.access.key}")
+	String accessKey;
+
+	@Value("${altinn.s3.secret.key}")
+	String secretKey;
+
+	@Value("${altinn.s3.path.style}")
+	boolean pathStyle;
+
+	@Value("${altinn.s3.part.bytes}")
+	long partBytes;
+
+	@Value("${altinn.s3.upload.threads}")
+	int uploadThreads;
+
+	@Value("${altinn.http.connect.timeout.ms}")
+	int connectTimeout;
+
+	@Value("${altinn.http.read.timeout.ms}")
+	int readTimeout;
+
+	@Autowired
+	ByteBufferPool bufferPool;
+
+	@Autowired
+	FileReadyLog fileReadyLog;
+
+	private ExecutorService uploadPool;
+
+	@PostConstruct
+	public void init() {
+		uploadPool = Executors.newFixedThreadPool(uploadThreads);
+		logger.info("S3Storage initialized, endpoint=" + endpoint + ", part bytes=" + partBytes + ", upload threads=" + uploadThreads);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		uploadPool.shutdownNow();
+	}
+
+	@Override
+	public boolean accepts(String aipath) {
+		return aipath.startsWith(PREFIX);
+	}
+
+	@Override
+	public void store(Path spool, String aipath, String fileName, String sha256, String orgnr, String messageId, CompletableFuture<Long> done) throws IOException {
+		String location = aipath.substring(PREFIX.length());
+		int slash = location.indexOf('/');
+		String bucket = slash < 0 ? location : location.substring(0, slash);
+		String key = (slash < 0 ? "" : location.substring(slash + 1)) + fileName;
+		long size = Files.size(spool);
+
+		Map<String, String> headers = new TreeMap<String, String>();
+		if (sha256 != null) {
+			headers.put("x-amz-meta-sha256", sha256);
+		}
+		if (size <= partBytes) {
+			request("PUT", bucket, key, "", headers, sha256 != null ? sha256 : UNSIGNED_PAYLOAD, spool, 0, size);
+		} else {
+			multipart(bucket, key, headers, spool, size);
+		}
+		logger.info("File: " + PREFIX + bucket + "/" + key + " uploaded, bytes=" + size);
+		fileReadyLog.committed(orgnr, messageId, PREFIX + bucket + "/" + key, fileName, size, sha256);
+		done.complete(size);
+	}
+
+	/**
+	 * Objects are visible when uploaded, nothing to flush.
+	 */
+	@Override
+	public void flush(String aipath) {
+	}
+
+	private void multipart(String bucket, String key, Map<String, String> headers, Path spool, long size) throws IOException {
+		String created = request("POST", bucket, key, "uploads=", headers, hex(sha256(new byte[0])), null, 0, 0);
+		Matcher matcher = uploadIdPattern.matcher(created);
+		if (!matcher.find()) {
+			throw new IOException("S3 CreateMultipartUpload without UploadId: " + created);
+		}
+		String uploadId = matcher.group(1);
+		String uploadQuery = "uploadId=" + encode(uploadId, true);
+
+		List<CompletableFuture<String>> parts = new ArrayList<CompletableFuture<String>>();
+		try {
+			for (long offset = 0; offset < size; offset += partBytes) {
+				int partNumber = parts.size() + 1;
+				long start = offset;
+				long length = Math.min(partBytes, size - offset);
+				parts.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return uploadPart(bucket, key, "partNumber=" + partNumber + "&" + uploadQuery, spool, start, length);
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				}, uploadPool));
+			}
+			StringBuilder complete = new StringBuilder("<CompleteMultipartUpload>");
+			for (int i = 0; i < parts.size(); i++) {
+				complete.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>").append(join(parts.get(i))).append("</ETag></Part>");
+			}
+			complete.append("</CompleteMultipartUpload>");
+			byte[] body = complete.toString().getBytes(StandardCharsets.UTF_8);
+			String result = request("POST", bucket, key, uploadQuery, new TreeMap<String, String>(), hex(sha256(body)), body);
+			if (result.contains("<Error>")) {
+				throw new IOException("S3 CompleteMultipartUpload failed: " + result);
+			}
+			logger.debug("Multipart upload of " + key + " completed, parts=" + parts.size());
+
+		} catch (IOException | RuntimeException e) {
+			CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).handle((v, partFailure) -> null).join();
+			try {
+				request("DELETE", bucket, key, uploadQuery, new TreeMap<String, String>(), hex(sha256(new byte[0])), null, 0, 0);
+			} catch (IOException abort) {
+				logger.warn("Could not abort multipart upload of " + key + ". " + abort.getMessage());
+			}
+			throw e;
+		}
+	}
+
+	private String uploadPart(String bucket, String key, String query, Path spool, long offset, long length) throws IOException {
+		HttpURLConnection connection = open("PUT", bucket, key, query, new TreeMap<String, String>(), UNSIGNED_PAYLOAD, length);
+		try (FileChannel in = FileChannel.open(spool, StandardOpenOption.READ); OutputStream out = connection.getOutputStream()) {
+			copy(in, offset, length, out);
+		}
+		response(connection, "PUT part " + key);
+		String etag = connection.getHeaderField("ETag");
+		if (etag == null) {
+			throw new IOException("S3 UploadPart without ETag, " + key);
+		}
+		return etag;
+	}
+
+	private String request(String method, String bucket, String key, String query, Map<String, String> headers, String payloadHash, Path body, long offset, long length) throws IOException {
+		HttpURLConnection connection = open(method, bucket, key, query, headers, payloadHash, body != null ? length : 0);
+		if (connection.getDoOutput()) {
+			try (OutputStream out = connection.getOutputStream()) {
+				if (body != null) {
+					try (FileChannel in = FileChannel.open(body, StandardOpenOption.READ)) {
+						copy(in, offset, length, out);
+					}
+				}
+			}
+		}
+		return response(connection, method + " " + key);
+	}
+
+	private String request(String method, String bucket, String key, String query, Map<String, String> headers, String payloadHash, byte[] body) throws IOException {
+		HttpURLConnection connection = open(method, bucket, key, query, headers, payloadHash, body.length);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		return response(connection, method + " " + key);
+	}
+
+	/*
+	 * Region of file through a pooled buffer, never whole file in memory.
+	 */
+	private void copy(FileChannel in, long offset, long length, OutputStream out) throws IOException {
+		WritableByteChannel target = Channels.newChannel(out);
+		ByteBuffer buffer = bufferPool.acquire(length);
+		try {
+			long position = offset;
+			long end = offset + length;
+			while (position < end) {
+				buffer.clear();
+				if (end - position < buffer.capacity()) {
+					buffer.limit((int) (end - position));
+				}
+				int read = in.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("Spool file shorter than expected");
+				}
+				position += read;
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+			}
+		} finally {
+			bufferPool.release(buffer);
+		}
+	}
+
+	/*
+	 * Connection with signed headers, body of length streamed without buffering.
+	 */
+	private HttpURLConnection open(String method, String bucket, String key, String query, Map<String, String> headers, String payloadHash, long length) throws IOException {
+		URL base = new URL(endpoint);
+		String host = pathStyle ? base.getHost() : bucket + "." + base.getHost();
+		String hostHeader = base.getPort() < 0 || base.getPort() == base.getDefaultPort() ? host : host + ":" + base.getPort();
+		String path = (pathStyle ? "/" + encode(bucket, false) : "") + "/" + encode(key, false);
+		URL url = new URL(base.getProtocol(), host, base.getPort(), path + (query.isEmpty() ? "" : "?" + query));
+
+		String amzDate = ZonedDateTime.now(ZoneOffset.UTC).format(amzDateFormatter);
+		Map<String, String> signed = new TreeMap<String, String>(headers);
+		signed.put("host", hostHeader);
+		signed.put("x-amz-content-sha256", payloadHash);
+		signed.put("x-amz-date", amzDate);
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setRequestMethod(method);
+		signed.forEach((name, value) -> {
+			if (!"host".equals(name)) {
+				connection.setRequestProperty(name, value);
+			}
+		});
+		connection.setRequestProperty("Authorization", authorization(method, path, query, signed, payloadHash, amzDate));
+		if (!"DELETE".equals(method)) {
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(length);
+		}
+		return connection;
+	}
+
+	private String response(HttpURLConnection connection, String operation) throws IOException {
+		int status = connection.getResponseCode();
+		InputStream in = status < 300 ? connection.getInputStream() : connection.getErrorStream();
+		String body = "";
+		if (in != null) {
+			try (InputStream stream = in) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] chunk = new byte[8192];
+				int read;
+				while ((read = stream.read(chunk)) >= 0) {
+					out.write(chunk, 0, read);
+				}
+				body = new String(out.toByteArray(), StandardCharsets.UTF_8);
+			}
+		}
+		if (status >= 300) {
+			throw new IOException("S3 " + operation + " failed, " + status + " " + body);
+		}
+		return body;
+	}
+
+	/*
+	 * AWS Signature V4, service s3. Signed header names in lower case, sorted.
+	 */
+	String authorization(String method, String path, String query, Map<String, String> signed, String payloadHash, String amzDate) {
+		String date = amzDate.substring(0, 8);
+		String scope = date + "/" + region + "/s3/aws4_request";
+		StringBuilder canonicalHeaders = new StringBuilder();
+		signed.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value.trim()).append('\n'));
+		String signedHeaders = String.join(";", signed.keySet());
+
+		String canonicalRequest = method + "\n" + path + "\n" + canonicalQuery(query) + "\n" + canonicalHeaders + "\n" + signedHeaders + "\n" + payloadHash;
+		String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + hex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+		byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+		key = hmac(key, region);
+		key = hmac(key, "s3");
+		key = hmac(key, "aws4_request");
+		String signature = hex(hmac(key, stringToSign));
+
+		return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature;
+	}
+
+	/*
+	 * Sorted on name, values already encoded.
+	 */
+	private static String canonicalQuery(String query) {
+		if (query.isEmpty()) {
+			return "";
+		}
+		Map<String, String> sorted = new TreeMap<String, String>();
+		for (String parameter : query.split("&")) {
+			int eq = parameter.indexOf('=');
+			sorted.put(eq < 0 ? parameter : parameter.substring(0, eq), eq < 0 ? "" : parameter.substring(eq + 1));
+		}
+		StringBuilder sb = new StringBuilder();
+		sorted.forEach((name, value) -> sb.append(sb.length() == 0 ? "" : "&").append(name).append('=').append(value));
+		return sb.toString();
+	}
+
+	/*
+	 * RFC 3986 unreserved kept, '/' kept in keys.
+	 */
+	static String encode(String value, boolean encodeSlash) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			char c = (char) (b & 0xff);
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+				sb.append(c);
+			} else {
+				sb.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16))).append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static byte[] sha256(byte[] bytes) {
+		return StreamChecksum.digest("SHA-256").digest(bytes);
+	}
+
+	private static String hex(byte[] bytes) {
+		return StreamChecksum.toHex(bytes);
+	}
+
+	private static byte[] hmac(byte[] key, String data) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(key, "HmacSHA256"));
+			return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String join(CompletableFuture<String> part) throws IOException {
+		try {
+			return part.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package no.systema.altinn.integration;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * SHA-256 of an attachment, updated while the body streams to disk, so no second read is needed. <br>
+ *
+ * Verified against Content-Length, and server digest if sent: Digest: SHA-256=... (RFC 3230) or Content-MD5.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class StreamChecksum {
+	private final MessageDigest sha256;
+	private final MessageDigest md5;
+	private long bytes;
+	private String hex;
+
+	private StreamChecksum(boolean withMd5) {
+		sha256 = digest("SHA-256");
+		md5 = withMd5 ? digest("MD5") : null;
+	}
+
+	/**
+	 * @param headers of response, MD5 is only computed if Content-MD5 is sent
+	 * @return new checksum
+	 */
+	public static StreamChecksum forResponse(HttpHeaders headers) {
+		return new StreamChecksum(headers.getFirst("Content-MD5") != null);
+	}
+
+	/**
+	 * @param buffer, position to limit, buffer is not consumed
+	 */
+	public void update(ByteBuffer buffer) {
+		bytes += buffer.remaining();
+		if (md5 != null) {
+			md5.update(buffer.duplicate());
+		}
+		sha256.update(buffer.duplicate());
+	}
+
+	public void update(byte[] buffer, int offset, int length) {
+		bytes += length;
+		if (md5 != null) {
+			md5.update(buffer, offset, length);
+		}
+		sha256.update(buffer, offset, length);
+	}
+
+	/**
+	 * @return bytes seen
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return SHA-256 as lower case hex, no more updates after this
+	 */
+	public String getSha256() {
+		if (hex == null) {
+			hex = toHex(sha256.digest());
+		}
+		return hex;
+	}
+
+	/**
+	 * @param headers of response
+	 * @throws RuntimeException on short body or digest mismatch
+	 */
+	public void verify(HttpHeaders headers) {
+		long contentLength = headers.getContentLength();
+		if (contentLength >= 0 && contentLength != bytes) {
+			throw new RuntimeException("Content-Length " + contentLength + ", received " + bytes + " bytes");
+		}
+		String contentMd5 = headers.getFirst("Content-MD5");
+		if (contentMd5 != null && md5 != null && !contentMd5.trim().equals(Base64.getEncoder().encodeToString(md5.digest()))) {
+			throw new RuntimeException("Content-MD5 mismatch");
+		}
+		List<String> digests = headers.get("Digest");
+		if (digests != null) {
+			for (String digest : String.join(",", digests).split(",")) {
+				int eq = digest.indexOf('=');
+				if (eq > 0 && "SHA-256".equalsIgnoreCase(digest.substring(0, eq).trim())) {
+					String expected = toHex(Base64.getDecoder().decode(digest.substring(eq + 1).trim()));
+					if (!expected.equals(getSha256())) {
+						throw new RuntimeException("Digest SHA-256 mismatch");
+					}
+				}
+			}
+		}
+	}
+
+	static String toHex(byte[] digest) {
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	static MessageDigest digest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
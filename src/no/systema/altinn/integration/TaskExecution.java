@@ -0,0 +1,136 @@
+package no.systema.altinn.integration;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Execution of per-orgnr and per-attachment tasks, as altinn.execution.mode: <br>
+ * serial - in calling thread, one at a time. <br>
+ * platform - on a fixed pool of altinn.execution.platform.threads. <br>
+ * virtual - one virtual thread per task, requires Java 21 runtime, else falls back to platform. <br>
+ * 
+ * Tasks are forked in a {@linkplain TaskScope}. With platform, a scope opened inside a task runs serial. Concurrent downloads from Altinn are bounded by altinn.execution.altinn.permits, 
+ * file writes are handed off to {@linkplain AttachmentWriter}.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("taskExecution")
+public class TaskExecution {
+	private static Logger logger = LogManager.getLogger(TaskExecution.class);
+	public enum Mode { serial, platform, virtual }
+
+	@Value("${altinn.execution.mode}")
+	String modeProperty;
+
+	@Value("${altinn.execution.platform.threads}")
+	int platformThreads;
+
+	@Value("${altinn.execution.altinn.permits}")
+	int altinnPermits;
+
+	private Mode mode;
+	private ExecutorService executor;
+	private Semaphore altinn;
+
+	@PostConstruct
+	public void init() {
+		mode = Mode.valueOf(modeProperty.trim());
+		altinn = new Semaphore(altinnPermits, true);
+		if (mode == Mode.virtual) {
+			executor = newVirtualThreadPerTaskExecutor();
+			if (executor == null) {
+				logger.warn("Virtual threads not available in this runtime, using platform threads.");
+				mode = Mode.platform;
+			}
+		}
+		if (mode == Mode.platform) {
+			executor = Executors.newFixedThreadPool(platformThreads);
+		}
+		logger.info("TaskExecution initialized, mode=" + mode + ", altinn permits=" + altinnPermits);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @param fatal, exception that cancel siblings and is rethrown from {@link TaskScope#join()}
+	 * @return new scope, close when done
+	 */
+	public <T> TaskScope<T> open(Predicate<Throwable> fatal) {
+		//Nested scope on a bounded pool could wait for its own threads, run serial instead.
+		if (mode == Mode.platform && TaskScope.isInTask()) {
+			return new TaskScope<T>(null, fatal);
+		}
+		return new TaskScope<T>(executor, fatal);
+	}
+
+	/**
+	 * Run within altinn.execution.altinn.permits.
+	 */
+	public <T> T withAltinnPermit(Supplier<T> call) {
+		acquire(altinn);
+		try {
+			return call.get();
+		} finally {
+			altinn.release();
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	private void acquire(Semaphore semaphore) {
+		try {
+			semaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted waiting for permit", e);
+		}
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor() on Java 21+, null on older runtime. Compiled for Java 8.
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * For tasks not returning a value.
+	 */
+	public static <T> Callable<T> callable(Runnable task) {
+		return () -> {
+			task.run();
+			return null;
+		};
+	}
+
+}
@@ -0,0 +1,137 @@
+package no.systema.altinn.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Structured group of tasks, see {@linkplain TaskExecution}. <br>
+ * 
+ * All forked tasks are done when {@link #join()} returns. A fatal exception in one task cancels the others, and is rethrown from join. 
+ * Without executor (serial) tasks run on fork, and a fatal exception is thrown from fork.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class TaskScope<T> implements AutoCloseable {
+	private final ExecutorService executor;
+	private final Predicate<Throwable> fatal;
+	private final List<Future<T>> futures = new CopyOnWriteArrayList<Future<T>>();
+	private final List<T> results = new ArrayList<T>();
+	private volatile Throwable failure;
+	private static final ThreadLocal<Boolean> IN_TASK = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	TaskScope(ExecutorService executor, Predicate<Throwable> fatal) {
+		this.executor = executor;
+		this.fatal = fatal;
+	}
+
+	/**
+	 * @param task
+	 */
+	public void fork(Callable<T> task) {
+		if (executor == null) {
+			results.add(call(task));
+			return;
+		}
+		if (failure != null) {
+			return;
+		}
+		Future<T> future = executor.submit(() -> {
+			IN_TASK.set(Boolean.TRUE);
+			try {
+				return task.call();
+			} catch (Throwable e) {
+				if (fatal.test(e) && failure == null) {
+					failure = e;
+					cancelAll();
+				}
+				throw e;
+			} finally {
+				IN_TASK.remove();
+			}
+		});
+		futures.add(future);
+		if (failure != null) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Wait for all tasks.
+	 * 
+	 * @return results, in fork order, of completed tasks
+	 * @throws RuntimeException, fatal or first failure
+	 */
+	public List<T> join() {
+		RuntimeException first = null;
+		for (Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (CancellationException e) {
+				//sibling failed
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancelAll();
+				throw new RuntimeException("Interrupted joining tasks", e);
+			} catch (ExecutionException e) {
+				if (first == null) {
+					first = asRuntime(e.getCause());
+				}
+			}
+		}
+		futures.clear();
+		if (failure != null) {
+			throw asRuntime(failure);
+		}
+		if (first != null) {
+			throw first;
+		}
+		return results;
+	}
+
+	/**
+	 * @return true if current thread runs a forked task
+	 */
+	static boolean isInTask() {
+		return IN_TASK.get();
+	}
+
+	/**
+	 * Cancel unfinished tasks.
+	 */
+	@Override
+	public void close() {
+		cancelAll();
+	}
+
+	private void cancelAll() {
+		futures.forEach(future -> future.cancel(true));
+	}
+
+	private T call(Callable<T> task) {
+		try {
+			return task.call();
+		} catch (Exception e) {
+			throw asRuntime(e);
+		}
+	}
+
+	private static RuntimeException asRuntime(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new RuntimeException(e);
+	}
+
+}
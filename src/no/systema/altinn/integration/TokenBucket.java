@@ -0,0 +1,71 @@
+package no.systema.altinn.integration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter. <br>
+ * 
+ * Holds up to burst tokens, refilled with permitsPerSecond. Each request takes one token.
+ * 
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+public class TokenBucket {
+	private final double capacity;
+	private final double refillPerNano;
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+
+	/**
+	 * @param permitsPerSecond - must be > 0
+	 * @param burst
+	 * @throws IllegalArgumentException if permitsPerSecond <= 0, no refill would wait forever
+	 */
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (!(permitsPerSecond > 0)) {
+			throw new IllegalArgumentException("permitsPerSecond must be > 0, was " + permitsPerSecond);
+		}
+		this.capacity = Math.max(burst, 1);
+		this.refillPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.tokens = capacity;
+	}
+
+	/**
+	 * Take one token, waiting for refill if needed.
+	 * 
+	 * @param timeoutMs - max wait
+	 * @return false if no token could be taken within timeoutMs
+	 * @throws InterruptedException
+	 */
+	public boolean tryAcquire(long timeoutMs) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		while (true) {
+			long waitNanos;
+			synchronized (this) {
+				refill();
+				if (tokens >= 1) {
+					tokens -= 1;
+					return true;
+				}
+				waitNanos = (long) Math.ceil((1 - tokens) / refillPerNano);
+			}
+			if (System.nanoTime() + waitNanos > deadline) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	public synchronized double getAvailableTokens() {
+		refill();
+		return tokens;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+		lastRefill = now;
+	}
+
+}
@@ -0,0 +1,74 @@
+package no.systema.altinn.integration;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exclusive lock on a single-writer file in altinn.work.dir, e.g. run-checkpoint.log or retry-journal.json. <br>
+ *
+ * The file is rewritten from the memory of its owner, so a second owner, in this or another JVM on the same work dir,
+ * would drop the first one's records. Held as a {@link FileLock} on {file}.lock until {@link #release()}.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+class WorkFileLock {
+	private final FileChannel channel;
+	private final FileLock lock;
+
+	private WorkFileLock(FileChannel channel, FileLock lock) {
+		this.channel = channel;
+		this.lock = lock;
+	}
+
+	/**
+	 * @param file, single-writer file
+	 * @return lock held
+	 * @throws IllegalStateException if file is owned by other instance
+	 */
+	static WorkFileLock acquire(Path file) {
+		Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+		FileChannel channel = null;
+		try {
+			Files.createDirectories(lockFile.getParent());
+			channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock lock = channel.tryLock();
+			if (lock == null) {
+				throw new OverlappingFileLockException();
+			}
+			return new WorkFileLock(channel, lock);
+		} catch (OverlappingFileLockException e) {
+			close(channel);
+			throw new IllegalStateException(file + " is already owned by other instance, only one per altinn.work.dir.", e);
+		} catch (IOException e) {
+			close(channel);
+			throw new IllegalStateException("Could not lock " + lockFile, e);
+		}
+	}
+
+	void release() {
+		try {
+			lock.release();
+		} catch (IOException e) {
+			//released on close
+		}
+		close(channel);
+	}
+
+	private static void close(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				//nothing held
+			}
+		}
+	}
+
+}
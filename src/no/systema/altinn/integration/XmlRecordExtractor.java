@@ -0,0 +1,320 @@
+package no.systema.altinn.integration;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Optional extraction of settlement line items from XML attachments, altinn.extract.enabled. <br>
+ *
+ * Run by {@linkplain AttachmentWriter} as part of the write, the spool file is parsed with StAX, one element at a time, never as DOM.
+ * Each element named altinn.extract.record.element is one record: attributes as @name, leaf elements below it as path.to.leaf. <br>
+ *
+ * altinn.extract.format: <br>
+ * jsonl - sidecar {name}.jsonl, one JSON object per record. <br>
+ * csv - sidecar {name}.csv, columns altinn.extract.fields, or as first record if empty. <br>
+ * db - altinn.extract.sql, JDBC batches of altinn.extract.batch.size, parameters file name then altinn.extract.fields.
+ * Rows of an earlier extract of same file are deleted first, altinn.extract.delete.sql, in the same transaction as the inserts,
+ * so a file written again, e.g. on retry or forceAll, replaces its rows, and a failed extract leaves the earlier ones. <br>
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("xmlRecordExtractor")
+public class XmlRecordExtractor {
+	private static Logger logger = LogManager.getLogger(XmlRecordExtractor.class);
+	public enum Format { jsonl, csv, db }
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${altinn.extract.enabled}")
+	boolean enabled;
+
+	@Value("${altinn.extract.record.element}")
+	String recordElement;
+
+	@Value("${altinn.extract.format}")
+	String formatProperty;
+
+	@Value("${altinn.extract.fields}")
+	String fieldsProperty;
+
+	@Value("${altinn.extract.sql}")
+	String insertSql;
+
+	@Value("${altinn.extract.delete.sql}")
+	String deleteSql;
+
+	@Value("${altinn.extract.batch.size}")
+	int batchSize;
+
+	private Format format;
+	private List<String> fields;
+	private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	@PostConstruct
+	public void init() {
+		format = Format.valueOf(formatProperty.trim());
+		fields = Arrays.stream(fieldsProperty.split(",")).map(String::trim).filter(field -> !field.isEmpty()).collect(Collectors.toList());
+		if (enabled && format == Format.db && (insertSql.trim().isEmpty() || deleteSql.trim().isEmpty() || fields.isEmpty())) {
+			throw new IllegalStateException("altinn.extract.format=db needs altinn.extract.sql, altinn.extract.delete.sql and altinn.extract.fields");
+		}
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		logger.info("XmlRecordExtractor initialized, enabled=" + enabled + ", element=" + recordElement + ", format=" + format);
+	}
+
+	/**
+	 * @param fileName
+	 * @return true if fileName is XML, and extraction enabled
+	 */
+	public boolean accepts(String fileName) {
+		return enabled && fileName.toLowerCase().endsWith(".xml");
+	}
+
+	/**
+	 * @param fileName, of XML
+	 * @return name of sidecar
+	 */
+	public String sidecarName(String fileName) {
+		return fileName + "." + format;
+	}
+
+	/**
+	 * @param xml, complete attachment
+	 * @param fileName, as in aipath
+	 * @param sidecar, empty file to write records to
+	 * @return true if sidecar is written, false if no records, or format db
+	 * @throws IOException
+	 */
+	public boolean extract(Path xml, String fileName, Path sidecar) throws IOException {
+		long start = System.nanoTime();
+		boolean db = format == Format.db;
+		int records;
+		try (InputStream in = Files.newInputStream(xml)) {
+			if (db) {
+				records = parseToDb(in, fileName);
+			} else {
+				try (BufferedWriter writer = Files.newBufferedWriter(sidecar, StandardCharsets.UTF_8)) {
+					records = parse(in, format == Format.jsonl ? new JsonLinesSink(writer) : new CsvSink(writer));
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not parse " + fileName + ". " + e.getMessage(), e);
+		}
+		logger.info("Extracted " + records + " records from " + fileName + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+		return records > 0 && !db;
+	}
+
+	/*
+	 * Delete rows of fileName, and insert the new ones, in one transaction. Rolled back on any failure.
+	 */
+	private int parseToDb(InputStream in, String fileName) throws IOException {
+		try {
+			return transactionTemplate.execute(status -> {
+				int deleted = jdbcTemplate.update(deleteSql, fileName);
+				if (deleted > 0) {
+					logger.info("Deleted " + deleted + " earlier records of " + fileName + ".");
+				}
+				try {
+					return parse(in, new DbSink(fileName));
+				} catch (XMLStreamException e) {
+					throw new UncheckedIOException(new IOException("Could not parse " + fileName + ". " + e.getMessage(), e));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private interface RecordSink {
+		void accept(Map<String, String> record) throws IOException;
+
+		void close() throws IOException;
+	}
+
+	/*
+	 * One record per recordElement, closed at its end tag. Nested records are not expected, inner one wins.
+	 */
+	private int parse(InputStream in, RecordSink sink) throws XMLStreamException, IOException {
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+		try {
+			int records = 0;
+			Map<String, String> record = null;
+			List<String> path = new ArrayList<String>();
+			StringBuilder text = new StringBuilder();
+			boolean leaf = false;
+
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					String name = reader.getLocalName();
+					if (name.equals(recordElement)) {
+						record = new LinkedHashMap<String, String>();
+						path.clear();
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							record.put("@" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+						}
+					} else if (record != null) {
+						path.add(name);
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							record.put(String.join(".", path) + "@" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+						}
+					}
+					text.setLength(0);
+					leaf = true;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+					if (record != null && leaf) {
+						text.append(reader.getText());
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (record == null) {
+						break;
+					}
+					if (reader.getLocalName().equals(recordElement) && path.isEmpty()) {
+						sink.accept(record);
+						records++;
+						record = null;
+					} else if (!path.isEmpty()) {
+						if (leaf) {
+							record.put(String.join(".", path), text.toString().trim());
+						}
+						path.remove(path.size() - 1);
+					}
+					leaf = false;
+					break;
+				default:
+					break;
+				}
+			}
+			sink.close();
+			return records;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private class JsonLinesSink implements RecordSink {
+		private final BufferedWriter writer;
+
+		JsonLinesSink(BufferedWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void accept(Map<String, String> record) throws IOException {
+			JsonGenerator json = jsonFactory.createGenerator(writer);
+			json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			json.writeStartObject();
+			for (Map.Entry<String, String> field : record.entrySet()) {
+				json.writeStringField(field.getKey(), field.getValue());
+			}
+			json.writeEndObject();
+			json.close();
+			writer.write('\n');
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private class CsvSink implements RecordSink {
+		private final BufferedWriter writer;
+		private List<String> columns;
+
+		CsvSink(BufferedWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void accept(Map<String, String> record) throws IOException {
+			if (columns == null) {
+				columns = fields.isEmpty() ? new ArrayList<String>(record.keySet()) : fields;
+				writer.write(columns.stream().map(XmlRecordExtractor::quote).collect(Collectors.joining(";")));
+				writer.write('\n');
+			}
+			writer.write(columns.stream().map(column -> quote(record.getOrDefault(column, ""))).collect(Collectors.joining(";")));
+			writer.write('\n');
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static String quote(String value) {
+		if (value.indexOf(';') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private class DbSink implements RecordSink {
+		private final String fileName;
+		private final List<Object[]> batch = new ArrayList<Object[]>();
+
+		DbSink(String fileName) {
+			this.fileName = fileName;
+		}
+
+		@Override
+		public void accept(Map<String, String> record) {
+			Object[] args = new Object[fields.size() + 1];
+			args[0] = fileName;
+			for (int i = 0; i < fields.size(); i++) {
+				args[i + 1] = record.get(fields.get(i));
+			}
+			batch.add(args);
+			if (batch.size() >= batchSize) {
+				close();
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!batch.isEmpty()) {
+				jdbcTemplate.batchUpdate(insertSql, batch);
+				batch.clear();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,345 @@
+package no.systema.altinn.integration;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Attachments appended to a rolling ZIP archive per day and FIRMALT row, aipath as zip:/dir/. <br>
+ *
+ * Entries stream from spool file into .{yyyy-MM-dd}-{n}.zip.part. The archive is sealed, and renamed to {yyyy-MM-dd}-{n}.zip,
+ * on {@link #flush(String)} at end of each org run, or when day rolls. Next run opens next n, so a sealed archive is never rewritten. <br>
+ *
+ * The write of an entry completes when its archive is sealed, not when it is appended, so it is not counted as done in
+ * {@linkplain RunCheckpointLog} before. Entries of a .part archive left by a stopped process are downloaded again on resume. <br>
+ *
+ * SHA-256 of each entry is set as entry comment. Entries are appended to {@linkplain FileReadyLog} when sealed, with the archive
+ * as path and the entry as file name. Events that could not be appended are retried on next seal or flush, and flush fails until they are. <br>
+ *
+ * An entry failing half-way leaves the stream unusable. The archive is then cut back to the entries completed before it,
+ * and sealed with those, see {@link #salvage(Archive, long)}. The failed store throws, and is journaled for retry into next archive.
+ *
+ * @author Fredrik Möller
+ * @date 2026-10
+ *
+ */
+@Service("zipArchiveStorage")
+public class ZipArchiveStorage implements AttachmentStorage {
+	private static Logger logger = LogManager.getLogger(ZipArchiveStorage.class);
+	public static final String PREFIX = "zip:";
+
+	@Value("${altinn.writer.fsync}")
+	String fsyncProperty;
+
+	@Autowired
+	FileReadyLog fileReadyLog;
+
+	private final Map<String, Archive> open = new HashMap<String, Archive>();
+	private final List<Entry> unannounced = new ArrayList<Entry>();
+
+	/*
+	 * Completed entry, its write and file-ready event are completed when its archive is sealed.
+	 */
+	private static class Entry {
+		final Path archive;
+		final String fileName;
+		final long bytes;
+		final String sha256;
+		final String orgnr;
+		final String messageId;
+		final CompletableFuture<Long> done;
+
+		Entry(Path archive, String fileName, long bytes, String sha256, String orgnr, String messageId, CompletableFuture<Long> done) {
+			this.archive = archive;
+			this.fileName = fileName;
+			this.bytes = bytes;
+			this.sha256 = sha256;
+			this.orgnr = orgnr;
+			this.messageId = messageId;
+			this.done = done;
+		}
+	}
+
+	/*
+	 * Open archive, entries written under its own lock.
+	 */
+	private static class Archive {
+		final LocalDate day;
+		final Path temp;
+		final Path target;
+		final FileOutputStream file;
+		final ZipOutputStream out;
+		// completed entries, on name
+		final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+		boolean sealed;
+
+		Archive(LocalDate day, Path temp, Path target) throws IOException {
+			this.day = day;
+			this.temp = temp;
+			this.target = target;
+			this.file = new FileOutputStream(temp.toFile());
+			this.out = new ZipOutputStream(file);
+		}
+	}
+
+	@Override
+	public boolean accepts(String aipath) {
+		return aipath.startsWith(PREFIX);
+	}
+
+	@Override
+	public void store(Path spool, String aipath, String fileName, String sha256, String orgnr, String messageId, CompletableFuture<Long> done) throws IOException {
+		Archive archive = archive(aipath);
+		synchronized (archive) {
+			if (archive.sealed) {
+				// rolled by another thread meanwhile
+				store(spool, aipath, fileName, sha256, orgnr, messageId, done);
+				return;
+			}
+			Entry stored = archive.entries.get(fileName);
+			if (stored != null) {
+				logger.debug("Entry " + fileName + " already in " + archive.target + ", skipped.");
+				stored.done.whenComplete((bytes, e) -> {
+					if (e == null) {
+						done.complete(bytes);
+					} else {
+						done.completeExceptionally(e);
+					}
+				});
+				return;
+			}
+			long end = archive.file.getChannel().position();
+			long bytes;
+			try {
+				ZipEntry entry = new ZipEntry(fileName);
+				if (sha256 != null) {
+					entry.setComment("sha256:" + sha256);
+				}
+				archive.out.putNextEntry(entry);
+				bytes = Files.copy(spool, archive.out);
+				archive.out.closeEntry();
+			} catch (IOException | RuntimeException e) {
+				synchronized (open) {
+					open.remove(aipath, archive);
+				}
+				salvage(archive, end);
+				throw e;
+			}
+			archive.entries.put(fileName, new Entry(archive.target, fileName, bytes, sha256, orgnr, messageId, done));
+			logger.info("File: " + fileName + " added to " + archive.target);
+		}
+	}
+
+	@Override
+	public void flush(String aipath) throws IOException {
+		Archive archive;
+		synchronized (open) {
+			archive = open.remove(aipath);
+		}
+		if (archive != null) {
+			seal(archive);
+		} else {
+			announce(new ArrayList<Entry>());
+		}
+	}
+
+	/**
+	 * Seal all open archives.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		List<Archive> archives;
+		synchronized (open) {
+			archives = new ArrayList<Archive>(open.values());
+			open.clear();
+		}
+		for (Archive archive : archives) {
+			try {
+				seal(archive);
+			} catch (IOException e) {
+				logger.error("Could not seal " + archive.target + ". " + e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * Open archive for aipath and today, earlier day is sealed first.
+	 */
+	private Archive archive(String aipath) throws IOException {
+		LocalDate today = LocalDate.now();
+		Archive rolled = null;
+		Archive archive;
+		synchronized (open) {
+			archive = open.get(aipath);
+			if (archive != null && !archive.day.equals(today)) {
+				rolled = archive;
+				archive = null;
+			}
+			if (archive == null) {
+				archive = create(aipath.substring(PREFIX.length()), today);
+				open.put(aipath, archive);
+			}
+		}
+		if (rolled != null) {
+			seal(rolled);
+		}
+		return archive;
+	}
+
+	private Archive create(String dir, LocalDate day) throws IOException {
+		Files.createDirectories(Paths.get(dir));
+		for (int n = 1;; n++) {
+			String name = day + "-" + n + ".zip";
+			Path target = Paths.get(dir + name);
+			Path temp = Paths.get(dir + "." + name + ".part");
+			if (!Files.exists(target) && !Files.exists(temp)) {
+				return new Archive(day, temp, target);
+			}
+		}
+	}
+
+	private void seal(Archive archive) throws IOException {
+		synchronized (archive) {
+			archive.sealed = true;
+			try {
+				archive.out.finish();
+				if (!"none".equals(fsyncProperty.trim())) {
+					archive.file.getChannel().force(true);
+				}
+				archive.out.close();
+				move(archive.temp, archive.target);
+			} catch (IOException e) {
+				complete(archive, e);
+				throw e;
+			}
+			logger.info("Archive: " + archive.target + " sealed with " + archive.entries.size() + " entries.");
+			try {
+				announce(archive.entries.values());
+			} finally {
+				complete(archive, null);
+			}
+		}
+	}
+
+	/*
+	 * Writes of entries in archive, done when sealed, failed and journaled if it could not be.
+	 */
+	private static void complete(Archive archive, IOException failure) {
+		for (Entry entry : archive.entries.values()) {
+			if (failure == null) {
+				entry.done.complete(entry.bytes);
+			} else {
+				entry.done.completeExceptionally(failure);
+			}
+		}
+	}
+
+	/*
+	 * File-ready events for entries of sealed archive, after any left from earlier seals. Failed ones are kept for next call.
+	 */
+	private void announce(Iterable<Entry> entries) throws IOException {
+		synchronized (unannounced) {
+			entries.forEach(unannounced::add);
+			for (Iterator<Entry> iterator = unannounced.iterator(); iterator.hasNext();) {
+				Entry entry = iterator.next();
+				fileReadyLog.committed(entry.orgnr, entry.messageId, entry.archive.toString(), entry.fileName, entry.bytes, entry.sha256);
+				iterator.remove();
+			}
+		}
+	}
+
+	/*
+	 * Cut archive back to end, where the failed entry started, and seal completed entries. ZipOutputStream cannot drop an entry,
+	 * so they are copied into a new archive, with their comments, as central directory is not in the cut file.
+	 */
+	private void salvage(Archive archive, long end) {
+		archive.sealed = true;
+		try {
+			archive.out.close();
+		} catch (IOException e) {
+			logger.debug("Broken archive " + archive.temp + " closed. " + e.getMessage());
+		}
+		try {
+			archive.file.close();
+			if (archive.entries.isEmpty()) {
+				Files.deleteIfExists(archive.temp);
+				logger.warn("Archive: " + archive.temp + " discarded, no completed entries.");
+				return;
+			}
+			try (FileChannel channel = FileChannel.open(archive.temp, StandardOpenOption.WRITE)) {
+				channel.truncate(end);
+			}
+			Path salvaged = Files.createTempFile(archive.temp.getParent(), archive.temp.getFileName().toString(), ".salvage");
+			try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive.temp));
+					FileOutputStream file = new FileOutputStream(salvaged.toFile());
+					ZipOutputStream out = new ZipOutputStream(file)) {
+				for (ZipEntry read = in.getNextEntry(); read != null; read = in.getNextEntry()) {
+					ZipEntry entry = new ZipEntry(read.getName());
+					Entry completed = archive.entries.get(read.getName());
+					if (completed != null && completed.sha256 != null) {
+						entry.setComment("sha256:" + completed.sha256);
+					}
+					out.putNextEntry(entry);
+					copy(in, out);
+					out.closeEntry();
+				}
+				out.finish();
+				if (!"none".equals(fsyncProperty.trim())) {
+					file.getChannel().force(true);
+				}
+			}
+			move(salvaged, archive.target);
+			Files.delete(archive.temp);
+			logger.warn("Archive: " + archive.target + " sealed with " + archive.entries.size() + " entries, after failed entry.");
+			try {
+				announce(archive.entries.values());
+			} catch (IOException e) {
+				logger.error("File-ready events of " + archive.target + " not appended, retried on next flush. " + e.getMessage());
+			}
+			complete(archive, null);
+		} catch (IOException e) {
+			logger.error("Could not salvage " + archive.temp + ", left for manual recovery, entries journaled. " + e.getMessage());
+			complete(archive, e);
+		}
+	}
+
+	private static void copy(ZipInputStream in, ZipOutputStream out) throws IOException {
+		byte[] buffer = new byte[8192];
+		for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+			out.write(buffer, 0, read);
+		}
+	}
+
+	private static void move(Path from, Path to) throws IOException {
+		try {
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
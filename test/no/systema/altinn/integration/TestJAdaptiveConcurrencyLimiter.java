@@ -0,0 +1,153 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import no.systema.altinn.integration.AdaptiveConcurrencyLimiter.Outcome;
+
+public class TestJAdaptiveConcurrencyLimiter {
+	private static final String LISTING = AdaptiveConcurrencyLimiter.LISTING;
+	private static final String ATTACHMENT = AdaptiveConcurrencyLimiter.ATTACHMENT;
+
+	private AdaptiveConcurrencyLimiter limiter;
+
+	@Before
+	public void setUp() throws Exception {
+		limiter = new AdaptiveConcurrencyLimiter();
+		limiter.initialLimit = 4;
+		limiter.minLimit = 1;
+		limiter.maxLimit = 8;
+		limiter.backoff = 0.5;
+		limiter.tolerance = 2.0;
+		limiter.keepSamples = 10;
+		limiter.waitMs = 0;
+		limiter.rttWindow = 3;
+	}
+
+	@Test
+	public final void testAdditiveIncrease() {
+		// +1/limit per call, about limit calls per step
+		sample(LISTING, 10, Outcome.OK, 4);
+		assertEquals(4, (int) limiter.getLimit());
+		sample(LISTING, 10, Outcome.OK, 1);
+		assertEquals(5, (int) limiter.getLimit());
+	}
+
+	@Test
+	public final void testIncreaseStopsAtMax() {
+		sample(LISTING, 10, Outcome.OK, 200);
+		assertEquals(8, (int) limiter.getLimit());
+	}
+
+	@Test
+	public final void testMultiplicativeDecreaseOnDrop() {
+		sample(LISTING, 10, Outcome.DROPPED, 1);
+		assertEquals(2, (int) limiter.getLimit());
+		sample(LISTING, 10, Outcome.DROPPED, 5);
+		assertEquals("not below min", 1, (int) limiter.getLimit());
+	}
+
+	@Test
+	public final void testDecreaseOnLatencySpike() {
+		sample(LISTING, 10, Outcome.OK, 1);
+		double before = limiter.getLimit();
+		sample(LISTING, 25, Outcome.OK, 1);
+		assertEquals(before * 0.5, limiter.getLimit(), 0.001);
+	}
+
+	@Test
+	public final void testBaselinePerCallType() {
+		sample(LISTING, 10, Outcome.OK, 1);
+		double before = limiter.getLimit();
+		sample(ATTACHMENT, 5000, Outcome.OK, 1);
+		assertTrue("first attachment sets its own baseline, no spike", limiter.getLimit() > before);
+		assertEquals(10L, (long) limiter.getBaselines().get(LISTING));
+		assertEquals(5000L, (long) limiter.getBaselines().get(ATTACHMENT));
+	}
+
+	@Test
+	public final void testLastingShiftBecomesBaseline() {
+		sample(LISTING, 10, Outcome.OK, 3);
+		sample(LISTING, 100, Outcome.OK, 3);
+		assertEquals("window of 3 holds only the new latency", 100L, (long) limiter.getBaselines().get(LISTING));
+		double before = limiter.getLimit();
+		sample(LISTING, 100, Outcome.OK, 1);
+		assertTrue("no longer a spike", limiter.getLimit() > before);
+	}
+
+	@Test
+	public final void testRejectedIsNotSampled() {
+		sample(LISTING, 10, Outcome.REJECTED, 5);
+		assertEquals(4, (int) limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+		assertTrue(limiter.getSamples().isEmpty());
+		assertTrue(limiter.getBaselines().isEmpty());
+	}
+
+	@Test(expected = CircuitOpenException.class)
+	public final void testNoPermitAboveLimit() {
+		for (int i = 0; i < 5; i++) {
+			limiter.acquire();
+		}
+	}
+
+	@Test
+	public final void testCallReleasesPermitOnFailure() {
+		try {
+			limiter.call(LISTING, () -> {
+				throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+			});
+		} catch (HttpServerErrorException e) {
+			// expected
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(2, (int) limiter.getLimit());
+	}
+
+	@Test
+	public final void testCallIsNeutralOnCircuitOpen() {
+		try {
+			limiter.call(LISTING, () -> {
+				throw new CircuitOpenException("open");
+			});
+		} catch (CircuitOpenException e) {
+			// expected
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(4, (int) limiter.getLimit());
+	}
+
+	@Test
+	public final void testOnlyMarkedTimeIsSampled() {
+		String result = limiter.call(ATTACHMENT, rtt -> {
+			sleep(60); // e.g. waiting for a rate token
+			rtt.start();
+			rtt.stop();
+			sleep(60); // e.g. streaming the body
+			return "ok";
+		});
+		assertEquals("ok", result);
+		assertTrue(limiter.getSamples().get(0).getRttMs() < 50);
+	}
+
+	private void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void sample(String type, long rttMs, Outcome outcome, int times) {
+		for (int i = 0; i < times; i++) {
+			limiter.acquire();
+			limiter.release(type, rttMs, outcome);
+		}
+	}
+
+}
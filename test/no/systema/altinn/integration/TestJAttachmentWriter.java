@@ -0,0 +1,159 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import no.systema.altinn.entities.FileReadyEvent;
+
+public class TestJAttachmentWriter {
+
+	private AttachmentWriter writer;
+	private FileReadyLog fileReadyLog;
+	private Path root;
+	private Path workDir;
+	private Path spoolDir;
+	private String aipath;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("attachmentwriter");
+		aipath = root + "/";
+		workDir = Files.createTempDirectory("attachmentwriter-work");
+		spoolDir = Files.createTempDirectory("attachmentwriter-spool");
+		fileReadyLog = new FileReadyLog();
+		fileReadyLog.workDir = workDir.toString();
+		fileReadyLog.memory = 100;
+		fileReadyLog.maxBytes = 1024 * 1024;
+		fileReadyLog.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (writer != null) {
+			writer.shutdown();
+		}
+		fileReadyLog.close();
+		for (Path dir : new Path[] { root, workDir, spoolDir }) {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public final void testVisibleUnderNameWhenDone() throws IOException {
+		writer = newWriter("none");
+		Path spool = spool("hello");
+		CompletableFuture<Long> done = writer.publish(spool, aipath, "a.pdf", null, "810514442", "m1");
+
+		assertEquals(Long.valueOf(5), done.join());
+		assertEquals("hello", new String(Files.readAllBytes(root.resolve("a.pdf")), StandardCharsets.UTF_8));
+		assertEquals("no part left", Collections.singletonList("a.pdf"), list());
+		assertFalse("spool deleted", Files.exists(spool));
+		List<FileReadyEvent> events = fileReadyLog.after(0, null, 10);
+		assertEquals(1, events.size());
+		assertEquals(aipath + "a.pdf", events.get(0).getPath());
+	}
+
+	@Test
+	public final void testBatchRenamedAfterFsync() throws Exception {
+		writer = newWriter("batch");
+		List<CompletableFuture<Long>> written = new ArrayList<CompletableFuture<Long>>();
+		for (String name : new String[] { "a.pdf", "b.pdf", "c.pdf" }) {
+			written.add(writer.publish(spool(name), aipath, name, null, "810514442", "m1"));
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (writer.getUnsynced() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(3, writer.getUnsynced());
+		assertEquals("only temp files before fsync", 3, list().stream().filter(name -> name.startsWith(".") && name.endsWith(".part")).count());
+		assertFalse(Files.exists(root.resolve("a.pdf")));
+		assertFalse("not done before fsync", written.get(0).isDone());
+		assertEquals(0, fileReadyLog.getSeq());
+
+		//last batch on shutdown
+		writer.shutdown();
+		CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])).join();
+		assertEquals(0, writer.getUnsynced());
+		assertEquals(Arrays.asList("a.pdf", "b.pdf", "c.pdf"), list());
+		assertEquals(3, fileReadyLog.after(0, null, 10).size());
+	}
+
+	@Test
+	public final void testFailedWriteCompletesExceptionally() throws IOException {
+		writer = newWriter("none");
+		Files.write(root.resolve("notadir"), new byte[0]);
+		String badDir = aipath + "notadir/";
+		Path spool = spool("hello");
+		CompletableFuture<Long> done = writer.publish(spool, badDir, "a.pdf", null, "810514442", "m1");
+
+		try {
+			done.join();
+			fail("written below a file");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertFalse("spool deleted", Files.exists(spool));
+		writer.await(badDir);
+		assertEquals(0, fileReadyLog.getSeq());
+	}
+
+	private AttachmentWriter newWriter(String fsync) {
+		AttachmentWriter writer = new AttachmentWriter();
+		writer.threads = 1;
+		writer.queueSize = 10;
+		writer.fsyncProperty = fsync;
+		writer.fsyncBatchMs = 60_000;
+		writer.spoolDirProperty = spoolDir.toString();
+		writer.bufferPool = new ByteBufferPool();
+		writer.bufferPool.classesProperty = "65536";
+		writer.bufferPool.maxBytes = 1024 * 1024;
+		writer.bufferPool.waitMs = 1000;
+		writer.bufferPool.init();
+		writer.checksumManifest = new ChecksumManifest();
+		writer.blobStore = new BlobStore();
+		writer.blobStore.modeProperty = "link";
+		writer.blobStore.init();
+		writer.storages = Collections.emptyList();
+		writer.recordExtractor = new XmlRecordExtractor();
+		writer.fileReadyLog = fileReadyLog;
+		writer.init();
+		return writer;
+	}
+
+	private Path spool(String content) throws IOException {
+		Path spool = writer.newSpoolFile();
+		Files.write(spool, content.getBytes(StandardCharsets.UTF_8));
+		return spool;
+	}
+
+	private List<String> list() throws IOException {
+		List<String> names = new ArrayList<String>();
+		try (Stream<Path> files = Files.list(root)) {
+			files.forEach(file -> names.add(file.getFileName().toString()));
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+}
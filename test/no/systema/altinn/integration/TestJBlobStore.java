@@ -0,0 +1,97 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJBlobStore {
+	private static final String SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+	private static final byte[] HELLO = "hello".getBytes(StandardCharsets.US_ASCII);
+
+	private BlobStore store;
+	private Path root;
+	private String dir;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("blobstore");
+		dir = root.toString() + "/";
+		store = new BlobStore();
+		store.enabled = true;
+		store.modeProperty = "link";
+		store.blobDir = ".altinn-blobs/";
+		store.pruneGraceMs = 60_000;
+		store.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public final void testUnlinkedBlobIsPruned() throws IOException {
+		Path target = linked("a.pdf");
+		Files.delete(target);
+		age(store.blob(dir, SHA256));
+
+		assertEquals(1, store.prune(dir));
+		assertFalse(Files.exists(store.blob(dir, SHA256)));
+	}
+
+	@Test
+	public final void testLinkedBlobIsKept() throws IOException {
+		linked("a.pdf");
+		age(store.blob(dir, SHA256));
+		assertEquals(0, store.prune(dir));
+	}
+
+	@Test
+	public final void testYoungBlobIsKept() throws IOException {
+		Files.delete(linked("a.pdf"));
+		assertEquals("within grace", 0, store.prune(dir));
+	}
+
+	@Test
+	public final void testPinnedBlobIsKeptUntilUnpinned() throws IOException {
+		Files.delete(linked("a.pdf"));
+		age(store.blob(dir, SHA256));
+
+		assertTrue("deduplicated, pinned", store.exists(dir, SHA256, HELLO.length));
+		assertEquals(0, store.prune(dir));
+		store.link(dir, SHA256, root.resolve("b.pdf"), root.resolve(".b.pdf.part"));
+		store.unpin(dir, SHA256);
+
+		assertEquals("linked again", 0, store.prune(dir));
+		Files.delete(root.resolve("b.pdf"));
+		assertEquals(1, store.prune(dir));
+	}
+
+	private Path linked(String name) throws IOException {
+		Path temp = store.newTempFile(dir, SHA256);
+		Files.write(temp, HELLO);
+		store.store(temp, dir, SHA256);
+		Path target = root.resolve(name);
+		store.link(dir, SHA256, target, root.resolve("." + name + ".part"));
+		return target;
+	}
+
+	private void age(Path blob) throws IOException {
+		Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+	}
+
+}
@@ -0,0 +1,56 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJByteBufferPool {
+
+	private ByteBufferPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		pool = new ByteBufferPool();
+		pool.classesProperty = "1024,4096";
+		pool.maxBytes = 4096;
+		pool.waitMs = 0;
+		pool.init();
+	}
+
+	@Test
+	public final void testPicksClassOnSizeHint() {
+		ByteBuffer buffer = pool.acquire(100);
+		assertTrue(buffer.isDirect());
+		assertEquals(1024, buffer.capacity());
+		pool.release(buffer);
+		assertSame("reused", buffer, pool.acquire(1000));
+	}
+
+	@Test
+	public final void testIdleBufferIsLentNotDropped() {
+		ByteBuffer large = pool.acquire(4096);
+		pool.release(large);
+
+		ByteBuffer small = pool.acquire(100);
+		assertSame("idle large buffer lent at cap", large, small);
+		assertEquals("no direct memory given up or added", 4096, pool.getAllocatedBytes());
+		pool.release(small);
+		assertSame("back in its own class", large, pool.acquire(4096));
+	}
+
+	@Test
+	public final void testHeapFallbackWhenExhausted() {
+		pool.acquire(4096);
+		ByteBuffer fallback = pool.acquire(100);
+		assertFalse(fallback.isDirect());
+		assertEquals(4096, pool.getAllocatedBytes());
+		assertEquals(1, pool.getStatus().get(0).getHeap());
+	}
+
+}
@@ -0,0 +1,141 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import no.systema.altinn.integration.CircuitBreaker.State;
+
+public class TestJCircuitBreaker {
+
+	@Test
+	public final void testClosedUntilMinimumCalls() {
+		CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 60_000, 1);
+		for (int i = 0; i < 3; i++) {
+			breaker.onFailure(permit(breaker));
+		}
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals(-1, breaker.getFailureRate());
+	}
+
+	@Test
+	public final void testOpensOnFailureRate() {
+		CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 60_000, 1);
+		breaker.onSuccess(breaker.tryAcquire());
+		breaker.onSuccess(breaker.tryAcquire());
+		breaker.onFailure(breaker.tryAcquire());
+		assertEquals(State.CLOSED, breaker.getState());
+		breaker.onFailure(breaker.tryAcquire());
+
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+	}
+
+	@Test
+	public final void testWindowForgetsOldOutcomes() {
+		CircuitBreaker breaker = new CircuitBreaker(4, 4, 50, 60_000, 1);
+		breaker.onFailure(breaker.tryAcquire());
+		for (int i = 0; i < 4; i++) {
+			breaker.onSuccess(breaker.tryAcquire());
+		}
+		assertEquals(4, breaker.getCalls());
+		assertEquals(0, breaker.getFailureRate());
+	}
+
+	@Test
+	public final void testHalfOpenClosesOnTrialSuccess() {
+		CircuitBreaker breaker = open(2);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		long first = permit(breaker);
+		long second = permit(breaker);
+		assertEquals("only halfOpenCalls trial calls", CircuitBreaker.REJECTED, breaker.tryAcquire());
+		breaker.onSuccess(first);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		breaker.onSuccess(second);
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getCalls());
+	}
+
+	@Test
+	public final void testHalfOpenReopensOnTrialFailure() throws InterruptedException {
+		CircuitBreaker breaker = open(2, 50);
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+		Thread.sleep(60);
+		breaker.onFailure(permit(breaker));
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals("open again for openMs", CircuitBreaker.REJECTED, breaker.tryAcquire());
+	}
+
+	@Test
+	public final void testIgnoredReleasesTrialSlot() {
+		CircuitBreaker breaker = open(1);
+		long trial = permit(breaker);
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+		breaker.onIgnored(trial);
+
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertTrue("slot free again", breaker.tryAcquire() != CircuitBreaker.REJECTED);
+	}
+
+	@Test
+	public final void testIgnoredIsNotRecorded() {
+		CircuitBreaker breaker = new CircuitBreaker(10, 1, 50, 60_000, 1);
+		breaker.onIgnored(breaker.tryAcquire());
+		assertEquals(0, breaker.getCalls());
+	}
+
+	@Test
+	public final void testStaleSuccessIsNotATrial() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 2, 50, 0, 1);
+		long slow = permit(breaker);
+		breaker.onFailure(permit(breaker));
+		breaker.onFailure(permit(breaker));
+		long trial = permit(breaker);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		breaker.onSuccess(slow);
+		assertEquals("permitted while CLOSED, not a trial", State.HALF_OPEN, breaker.getState());
+		assertEquals("trial slot still taken", CircuitBreaker.REJECTED, breaker.tryAcquire());
+		breaker.onSuccess(trial);
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public final void testStaleFailureDoesNotReopen() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 2, 50, 0, 1);
+		long slow = permit(breaker);
+		breaker.onFailure(permit(breaker));
+		breaker.onFailure(permit(breaker));
+		breaker.onSuccess(permit(breaker));
+		assertEquals(State.CLOSED, breaker.getState());
+
+		breaker.onFailure(slow);
+		breaker.onIgnored(slow);
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getCalls());
+	}
+
+	private long permit(CircuitBreaker breaker) {
+		long permit = breaker.tryAcquire();
+		assertFalse("permitted", permit == CircuitBreaker.REJECTED);
+		return permit;
+	}
+
+	/*
+	 * Opened with openMs 0, so next check is HALF_OPEN.
+	 */
+	private CircuitBreaker open(int halfOpenCalls) {
+		return open(halfOpenCalls, 0);
+	}
+
+	private CircuitBreaker open(int halfOpenCalls, long openMs) {
+		CircuitBreaker breaker = new CircuitBreaker(2, 2, 50, openMs, halfOpenCalls);
+		breaker.onFailure(breaker.tryAcquire());
+		breaker.onFailure(breaker.tryAcquire());
+		return breaker;
+	}
+
+}
@@ -0,0 +1,100 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import no.systema.jservices.common.dao.FirmaltDao;
+import no.systema.jservices.common.dao.services.FirmaltDaoService;
+
+public class TestJDownloadStateWriter {
+	private static final String ORGNR = "810514442";
+
+	private DownloadStateWriter writer;
+	private final List<String> updated = new ArrayList<String>();
+	private boolean failing;
+
+	@Before
+	public void setUp() {
+		writer = new DownloadStateWriter();
+		writer.flushMs = 60_000;
+		writer.flushBatch = 100;
+		writer.firmaltDaoService = new FirmaltDaoService() {
+			@Override
+			public List<FirmaltDao> get() {
+				return new ArrayList<FirmaltDao>();
+			}
+
+			@Override
+			public FirmaltDao getFirmaltDao(String orgnr) {
+				return null;
+			}
+
+			@Override
+			public void updateAiDatoAndAiTid(FirmaltDao firmalt) {
+				if (failing) {
+					throw new RuntimeException("SQL0911 lock timeout");
+				}
+				updated.add(firmalt.getAiorg() + ":" + firmalt.getAidato());
+			}
+		};
+		writer.init();
+	}
+
+	@After
+	public void tearDown() {
+		failing = false;
+		writer.shutdown();
+	}
+
+	@Test
+	public final void testFailedFlushStaysPending() {
+		writer.enqueue(firmalt(ORGNR, 20261019));
+		failing = true;
+		writer.flush();
+
+		FirmaltDao read = firmalt(ORGNR, 20261001);
+		writer.overlay(read);
+		assertEquals("still overlaid", 20261019, read.getAidato());
+		assertEquals(0, updated.size());
+
+		failing = false;
+		writer.flush();
+		assertEquals(1, updated.size());
+		assertEquals(ORGNR + ":20261019", updated.get(0));
+		read = firmalt(ORGNR, 20261001);
+		writer.overlay(read);
+		assertEquals("written, no longer overlaid", 20261001, read.getAidato());
+	}
+
+	@Test
+	public final void testLatestWins() {
+		writer.enqueue(firmalt(ORGNR, 20261018));
+		writer.enqueue(firmalt(ORGNR, 20261019));
+		writer.flush();
+
+		assertEquals(1, updated.size());
+		assertEquals(ORGNR + ":20261019", updated.get(0));
+	}
+
+	@Test
+	public final void testWrittenOnShutdown() {
+		writer.enqueue(firmalt(ORGNR, 20261019));
+		writer.shutdown();
+		assertEquals(1, updated.size());
+	}
+
+	private FirmaltDao firmalt(String orgnr, int aidato) {
+		FirmaltDao firmalt = new FirmaltDao();
+		firmalt.setAiorg(orgnr);
+		firmalt.setAidato(aidato);
+		firmalt.setAitid(120000);
+		return firmalt;
+	}
+
+}
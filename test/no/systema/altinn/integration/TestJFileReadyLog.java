@@ -0,0 +1,132 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import no.systema.altinn.entities.FileReadyEvent;
+
+public class TestJFileReadyLog {
+
+	private FileReadyLog log;
+	private Path workDir;
+
+	@Before
+	public void setUp() throws Exception {
+		workDir = Files.createTempDirectory("fileready");
+		log = newLog(3, 1024 * 1024);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		log.close();
+		try (Stream<Path> files = Files.walk(workDir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public final void testOlderEventsAreReadFromFile() throws IOException {
+		for (int i = 1; i <= 5; i++) {
+			commit("810514442", "file" + i + ".xml");
+		}
+		List<FileReadyEvent> events = log.after(0, null, 10);
+		assertEquals("3 in memory, 2 from file", 5, events.size());
+		assertEquals(1, events.get(0).getSeq());
+		assertEquals(2, log.after(1, null, 2).size());
+		assertEquals(1, log.after(0, "810514442", 1).size());
+	}
+
+	@Test
+	public final void testRestartContinuesSeq() throws IOException {
+		commit("810514442", "a.xml");
+		commit("810514442", "b.xml");
+		log.close();
+		log = newLog(3, 1024 * 1024);
+		assertEquals(2, log.getSeq());
+		commit("810514442", "c.xml");
+		assertEquals(3, log.after(2, null, 10).get(0).getSeq());
+	}
+
+	@Test
+	public final void testRotatedEventsAreRead() throws IOException {
+		log.close();
+		log = newLog(1, 1);
+		commit("810514442", "a.xml");
+		commit("810514442", "b.xml");
+		commit("810514442", "c.xml");
+		assertTrue(Files.exists(workDir.resolve("file-ready.log.1")));
+		assertEquals("one generation kept", 2, log.after(0, null, 10).size());
+	}
+
+	@Test
+	public final void testFailedAppendThrowsAndPublishesNothing() throws IOException {
+		log.close();
+		Path notADir = Files.createFile(workDir.resolve("blocked"));
+		FileReadyLog blocked = new FileReadyLog();
+		blocked.workDir = notADir.toString();
+		blocked.memory = 3;
+		blocked.maxBytes = 1024;
+		blocked.init();
+		try {
+			blocked.committed("810514442", "m1", "/tmp/a.xml", "a.xml", 1, null);
+			fail("append under a file should fail");
+		} catch (IOException e) {
+			// expected, caller fails the write
+		}
+		assertEquals(0, blocked.getSeq());
+		assertTrue(blocked.after(0, null, 10).isEmpty());
+	}
+
+	@Test
+	public final void testPollAnswersAtOnce() throws IOException {
+		commit("810514442", "a.xml");
+		DeferredResult<String> result = new DeferredResult<String>();
+		log.poll(0, null, 10, result);
+		assertTrue(result.hasResult());
+		assertTrue(((String) result.getResult()).contains("a.xml"));
+	}
+
+	@Test
+	public final void testPollWaitsForItsOrgnr() throws IOException {
+		DeferredResult<String> result = new DeferredResult<String>();
+		log.poll(0, "810514442", 10, result);
+		assertFalse(result.hasResult());
+
+		commit("999999999", "other.xml");
+		assertFalse("other orgnr", result.hasResult());
+
+		commit("810514442", "a.xml");
+		assertTrue(result.hasResult());
+		String json = (String) result.getResult();
+		assertTrue(json.contains("a.xml"));
+		assertFalse(json.contains("other.xml"));
+	}
+
+	private void commit(String orgnr, String fileName) throws IOException {
+		log.committed(orgnr, "m1", workDir + "/" + fileName, fileName, 10, null);
+	}
+
+	private FileReadyLog newLog(int memory, long maxBytes) {
+		FileReadyLog log = new FileReadyLog();
+		log.workDir = workDir.toString();
+		log.memory = memory;
+		log.maxBytes = maxBytes;
+		log.init();
+		return log;
+	}
+
+}
@@ -0,0 +1,78 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import no.systema.altinn.entities.MessagesHalRepresentation;
+
+public class TestJInboxMirror {
+	private static final String ORGNR = "810514442";
+
+	@Test
+	public final void testDeltaUpsertsOnMessageId() {
+		InboxMirror mirror = new InboxMirror();
+		mirror.apply(ORGNR, Arrays.asList(message("m1", "2026-10-01T10:00:00"), message("m2", "2026-10-01T10:00:00")));
+		//ge watermark, m2 again
+		int added = mirror.apply(ORGNR, Arrays.asList(message("m2", "2026-10-01T10:00:00"), message("m3", "2026-10-01T10:00:00")));
+
+		assertEquals(1, added);
+		assertEquals(3, mirror.getMessages(ORGNR).size());
+		assertEquals(LocalDateTime.of(2026, 10, 1, 10, 0), mirror.getWatermark(ORGNR));
+	}
+
+	@Test
+	public final void testReconcileEvictsUnlisted() {
+		InboxMirror mirror = new InboxMirror();
+		mirror.apply(ORGNR, Arrays.asList(message("m1", "2026-10-01T10:00:00"), message("m2", "2026-10-01T11:00:00")));
+
+		int evicted = mirror.reconcile(ORGNR, Collections.singletonList(message("m2", "2026-10-01T11:00:00")));
+
+		assertEquals(1, evicted);
+		assertEquals(1, mirror.getMessages(ORGNR).size());
+		assertEquals("m2", mirror.getMessages(ORGNR).get(0).getMessageId());
+		assertEquals("evicted from index", 1, mirror.size());
+		assertTrue(mirror.find(MessageQuery.parse("Orgnr eq '" + ORGNR + "'"), 0).stream().noneMatch(m -> "m1".equals(m.getMessage().getMessageId())));
+	}
+
+	@Test
+	public final void testReconcileKeepsChangedAfterListing() {
+		InboxMirror mirror = new InboxMirror();
+		mirror.apply(ORGNR, Arrays.asList(message("m1", "2026-10-01T10:00:00"), message("m2", "2026-10-01T12:00:00")));
+
+		//listing taken before m2 was applied by a delta
+		int evicted = mirror.reconcile(ORGNR, Collections.singletonList(message("m1", "2026-10-01T10:00:00")));
+
+		assertEquals(0, evicted);
+		assertEquals(2, mirror.getMessages(ORGNR).size());
+	}
+
+	@Test
+	public final void testReconcileKeepsUnchanged() {
+		InboxMirror mirror = new InboxMirror();
+		MessagesHalRepresentation detailed = message("m1", "2026-10-01T10:00:00");
+		detailed.setTitle("with details");
+		mirror.apply(ORGNR, Collections.singletonList(detailed));
+
+		mirror.reconcile(ORGNR, Arrays.asList(message("m1", "2026-10-01T10:00:00"), message("m2", "2026-10-01T10:00:00")));
+
+		assertEquals(2, mirror.getMessages(ORGNR).size());
+		assertEquals("with details", mirror.getMessages(ORGNR).get(0).getTitle());
+	}
+
+	private MessagesHalRepresentation message(String messageId, String lastChanged) {
+		MessagesHalRepresentation message = new MessagesHalRepresentation();
+		message.setMessageId(messageId);
+		message.setLastChangedDateTime(lastChanged);
+		message.setCreatedDate("2026-10-01T09:00:00");
+		message.setServiceOwner("Skatteetaten");
+		message.setStatus("Ulest");
+		return message;
+	}
+
+}
@@ -0,0 +1,89 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.Test;
+
+import no.systema.altinn.integration.MessageQuery.Condition;
+import no.systema.altinn.integration.MessageQuery.Field;
+import no.systema.altinn.integration.MessageQuery.Op;
+
+public class TestJMessageQuery {
+
+	@Test
+	public final void testEmptyMatchesAll() {
+		assertTrue(MessageQuery.parse(null).getConditions().isEmpty());
+		assertTrue(MessageQuery.parse("  ").getConditions().isEmpty());
+	}
+
+	@Test
+	public final void testAsActionsUriBuilder() {
+		//as in ActionsUriBuilder.messages(host, orgnr, serviceOwner, serviceCode, serviceEdition, createdDate, status)
+		List<Condition> conditions = MessageQuery.parse("ServiceOwner eq 'Skatteetaten' and ServiceCode eq '5012' and ServiceEdition eq 171208 and Status eq 'Ulest' and CreatedDate gt datetime'2018-01-30'").getConditions();
+
+		assertEquals(5, conditions.size());
+		assertCondition(conditions.get(0), Field.ServiceOwner, Op.eq, "Skatteetaten");
+		assertCondition(conditions.get(1), Field.ServiceCode, Op.eq, "5012");
+		assertCondition(conditions.get(2), Field.ServiceEdition, Op.eq, "171208");
+		assertCondition(conditions.get(3), Field.Status, Op.eq, "Ulest");
+		assertCondition(conditions.get(4), Field.CreatedDate, Op.gt, LocalDateTime.of(2018, 1, 30, 0, 0));
+	}
+
+	@Test
+	public final void testAndIsCaseInsensitive() {
+		assertEquals(2, MessageQuery.parse("Orgnr eq '12345678' AND Status ne 'Lest'").getConditions().size());
+	}
+
+	@Test
+	public final void testCreatedDateWithTime() {
+		Condition condition = MessageQuery.parse("CreatedDate le datetime'2018-03-02T13:45:10'").getConditions().get(0);
+		assertCondition(condition, Field.CreatedDate, Op.le, LocalDateTime.of(2018, 3, 2, 13, 45, 10));
+	}
+
+	@Test
+	public final void testCreatedDateAsPlainString() {
+		Condition condition = MessageQuery.parse("CreatedDate ge '2018-03-02'").getConditions().get(0);
+		assertCondition(condition, Field.CreatedDate, Op.ge, LocalDateTime.of(2018, 3, 2, 0, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testUnknownField() {
+		MessageQuery.parse("Subject eq 'Dagsoppgjør'");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testUnknownOperator() {
+		MessageQuery.parse("Status like 'Ulest'");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testRangeOnlyOnCreatedDate() {
+		MessageQuery.parse("ServiceEdition gt 171208");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testNeNotOnCreatedDate() {
+		MessageQuery.parse("CreatedDate ne datetime'2018-01-30'");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testInvalidDateTime() {
+		MessageQuery.parse("CreatedDate gt datetime'30.01.2018'");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testUnquotedText() {
+		MessageQuery.parse("Status eq Ulest");
+	}
+
+	private void assertCondition(Condition condition, Field field, Op op, Object value) {
+		assertEquals(field, condition.getField());
+		assertEquals(op, condition.getOp());
+		assertEquals(value, condition.getValue());
+	}
+
+}
@@ -0,0 +1,102 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class TestJOrgRunCoordinator {
+	private static final String ORGNR = "810514442";
+
+	private final OrgRunCoordinator coordinator = new OrgRunCoordinator();
+
+	@Test
+	public final void testJoinerGetsRunnersResult() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		CompletableFuture<Integer> runner = CompletableFuture.supplyAsync(() -> coordinator.run(ORGNR, () -> {
+			await(release);
+			return runs.incrementAndGet();
+		}));
+		CompletableFuture<Integer> joiner = join(() -> coordinator.run(ORGNR, runs::incrementAndGet));
+
+		release.countDown();
+		assertEquals(Integer.valueOf(1), runner.get(5, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(1), joiner.get(5, TimeUnit.SECONDS));
+		assertEquals("run once", 1, runs.get());
+	}
+
+	@Test
+	public final void testJoinerGetsRunnersException() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		IllegalStateException failure = new IllegalStateException("FIRMALT not updated");
+		CompletableFuture<Object> runner = CompletableFuture.supplyAsync(() -> coordinator.run(ORGNR, () -> {
+			await(release);
+			throw failure;
+		}));
+		CompletableFuture<Object> joiner = join(() -> coordinator.run(ORGNR, () -> "own run"));
+
+		release.countDown();
+		assertSame(failure, cause(runner));
+		assertSame("same exception", failure, cause(joiner));
+		assertFalse(coordinator.isInFlight(ORGNR));
+	}
+
+	@Test
+	public final void testNewRunAfterCompletion() {
+		assertEquals("first", coordinator.run(ORGNR, () -> "first"));
+		assertFalse(coordinator.isInFlight(ORGNR));
+		assertEquals("second", coordinator.run(ORGNR, () -> "second"));
+	}
+
+	/*
+	 * Starts joiner once a run is in flight, returns when joiner waits on it.
+	 */
+	private <T> CompletableFuture<T> join(Supplier<T> call) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!coordinator.isInFlight(ORGNR) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		Thread thread = new Thread(() -> {
+			try {
+				result.complete(call.get());
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+		});
+		thread.start();
+		while (thread.getState() != Thread.State.WAITING && !result.isDone() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		return result;
+	}
+
+	private Throwable cause(CompletableFuture<?> future) {
+		try {
+			future.join();
+			fail("run failed");
+			return null;
+		} catch (CompletionException e) {
+			return e.getCause();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import no.systema.altinn.entities.RetryEntry;
+
+public class TestJRetryJournal {
+
+	private RetryJournal journal;
+	private Path workDir;
+
+	@Before
+	public void setUp() throws Exception {
+		workDir = Files.createTempDirectory("retryjournal");
+		journal = newJournal();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		journal.close();
+		try (Stream<Path> files = Files.walk(workDir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public final void testSameUnitIsJournaledOnce() {
+		journal.enqueue(attachment("a.pdf"), "first");
+		long nextAttempt = journal.getEntries().get(0).getNextAttempt();
+		journal.enqueue(attachment("a.pdf"), "second");
+		journal.enqueue(attachment("b.pdf"), "first");
+
+		List<RetryEntry> entries = journal.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals("second", entries.get(0).getLastError());
+		assertEquals("backoff kept", nextAttempt, entries.get(0).getNextAttempt());
+	}
+
+	@Test
+	public final void testReloadedAfterRestart() {
+		journal.enqueue(attachment("a.pdf"), "failed");
+		journal.close();
+		journal = newJournal();
+		assertEquals(1, journal.getEntries().size());
+		journal.enqueue(attachment("a.pdf"), "failed again");
+		assertEquals(1, journal.getEntries().size());
+	}
+
+	@Test
+	public final void testSecondInstanceIsRejected() {
+		try {
+			newJournal();
+			fail("journal is single writer");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("retry-journal.json"));
+		}
+	}
+
+	@Test
+	public final void testGivenUpAfterMaxAttempts() {
+		journal.enqueue(attachment("a.pdf"), "1");
+		RetryEntry entry = journal.getEntries().get(0);
+		journal.failed(entry, "2");
+		assertEquals(1, journal.getEntries().size());
+		journal.failed(entry, "3");
+		assertTrue(journal.getEntries().isEmpty());
+	}
+
+	private RetryEntry attachment(String writeFile) {
+		RetryEntry entry = new RetryEntry();
+		entry.setType(RetryEntry.ATTACHMENT);
+		entry.setOrgnr("810514442");
+		entry.setMessageId("m1");
+		entry.setUri("https://www.altinn.no/api/my/messages/m1/attachments/" + writeFile);
+		entry.setWriteFile(writeFile);
+		return entry;
+	}
+
+	private RetryJournal newJournal() {
+		RetryJournal journal = new RetryJournal();
+		journal.workDir = workDir.toString();
+		journal.baseMs = 60_000;
+		journal.maxMs = 3_600_000;
+		journal.maxAttempts = 3;
+		journal.init();
+		return journal;
+	}
+
+}
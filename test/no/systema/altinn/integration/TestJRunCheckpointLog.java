@@ -0,0 +1,122 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJRunCheckpointLog {
+	private static final String ORGNR = "810514442";
+	private static final String OTHER = "936796702";
+
+	private RunCheckpointLog log;
+	private Path workDir;
+
+	@Before
+	public void setUp() throws Exception {
+		workDir = Files.createTempDirectory("checkpointlog");
+		log = newLog();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		log.close();
+		try (Stream<Path> files = Files.walk(workDir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public final void testIncompleteRunReplayedAfterRestart() {
+		log.start(ORGNR, 20261018);
+		log.attachment(ORGNR, "a.pdf");
+		log.message(ORGNR, "m1");
+		log.attachment(ORGNR, "b.pdf");
+		restart();
+
+		assertEquals(Integer.valueOf(20261018), log.getIncomplete().get(ORGNR));
+		assertTrue(log.isDone(ORGNR, "a.pdf"));
+		assertTrue(log.isDone(ORGNR, "b.pdf"));
+		assertTrue(log.isMessageDone(ORGNR, "m1"));
+		assertFalse(log.isMessageDone(ORGNR, "m2"));
+
+		//resumed, same run
+		log.start(ORGNR, 20261019);
+		assertEquals(Integer.valueOf(20261018), log.getIncomplete().get(ORGNR));
+		assertTrue(log.isDone(ORGNR, "a.pdf"));
+	}
+
+	@Test
+	public final void testCompactedOnEnd() throws IOException {
+		log.start(ORGNR, 20261018);
+		log.attachment(ORGNR, "a.pdf");
+		log.start(OTHER, 20261017);
+		log.attachment(OTHER, "x.pdf");
+		log.attachment(OTHER, "x.pdf");
+		log.end(ORGNR);
+
+		List<String> lines = lines();
+		assertEquals("incomplete runs only", 2, lines.size());
+		assertTrue(lines.get(0).startsWith("START\t"));
+		assertTrue(lines.get(0).endsWith("\t" + OTHER + "\t20261017"));
+		assertTrue(lines.get(1).endsWith("\t" + OTHER + "\tx.pdf"));
+
+		restart();
+		assertEquals(1, log.getIncomplete().size());
+		assertFalse(log.isDone(ORGNR, "a.pdf"));
+		assertTrue(log.isDone(OTHER, "x.pdf"));
+	}
+
+	@Test
+	public final void testEndedRunStartsNew() {
+		log.start(ORGNR, 20261018);
+		log.attachment(ORGNR, "a.pdf");
+		log.end(ORGNR);
+		restart();
+
+		assertTrue(log.getIncomplete().isEmpty());
+		log.start(ORGNR, 20261019);
+		assertFalse(log.isDone(ORGNR, "a.pdf"));
+		assertEquals(Integer.valueOf(20261019), log.getIncomplete().get(ORGNR));
+	}
+
+	@Test
+	public final void testSecondInstanceIsRejected() {
+		try {
+			newLog();
+			fail("log is single writer");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("run-checkpoint.log"));
+		}
+	}
+
+	private void restart() {
+		log.close();
+		log = newLog();
+	}
+
+	private List<String> lines() throws IOException {
+		return Files.readAllLines(workDir.resolve("run-checkpoint.log"), StandardCharsets.UTF_8);
+	}
+
+	private RunCheckpointLog newLog() {
+		RunCheckpointLog log = new RunCheckpointLog();
+		log.workDir = workDir.toString();
+		log.fsync = false;
+		log.init();
+		return log;
+	}
+
+}
@@ -0,0 +1,131 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJTaskScope {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public final void testResultsInForkOrder() {
+		try (TaskScope<Integer> scope = new TaskScope<Integer>(executor, e -> false)) {
+			for (int i = 1; i <= 3; i++) {
+				int n = i;
+				scope.fork(() -> {
+					Thread.sleep(30 - n * 10);
+					return n;
+				});
+			}
+			assertEquals(Arrays.asList(1, 2, 3), scope.join());
+		}
+	}
+
+	@Test
+	public final void testFatalCancelsSiblings() throws InterruptedException {
+		IllegalStateException fatal = new IllegalStateException("circuit open");
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean interrupted = new AtomicBoolean();
+		try (TaskScope<Integer> scope = new TaskScope<Integer>(executor, e -> e == fatal)) {
+			scope.fork(() -> {
+				started.countDown();
+				try {
+					Thread.sleep(5000);
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+				return 1;
+			});
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			scope.fork(() -> {
+				throw fatal;
+			});
+			try {
+				scope.join();
+				fail("fatal rethrown");
+			} catch (IllegalStateException e) {
+				assertSame(fatal, e);
+			}
+		}
+		assertTrue("sibling cancelled", interrupted.get());
+	}
+
+	@Test
+	public final void testNonFatalLetsSiblingsComplete() {
+		AtomicInteger completed = new AtomicInteger();
+		try (TaskScope<Integer> scope = new TaskScope<Integer>(executor, e -> false)) {
+			scope.fork(() -> {
+				throw new IllegalArgumentException("one message");
+			});
+			for (int i = 0; i < 3; i++) {
+				scope.fork(() -> {
+					Thread.sleep(20);
+					return completed.incrementAndGet();
+				});
+			}
+			try {
+				scope.join();
+				fail("first failure rethrown");
+			} catch (IllegalArgumentException e) {
+				assertEquals("one message", e.getMessage());
+			}
+		}
+		assertEquals(3, completed.get());
+	}
+
+	@Test
+	public final void testSerialRunsOnFork() {
+		AtomicBoolean inTask = new AtomicBoolean(true);
+		try (TaskScope<Integer> scope = new TaskScope<Integer>(null, e -> true)) {
+			scope.fork(() -> {
+				inTask.set(TaskScope.isInTask());
+				return 1;
+			});
+			try {
+				scope.fork(() -> {
+					throw new IllegalStateException("thrown from fork");
+				});
+				fail("serial failure thrown from fork");
+			} catch (IllegalStateException e) {
+				assertEquals("thrown from fork", e.getMessage());
+			}
+			assertEquals(Arrays.asList(1), scope.join());
+		}
+		assertFalse("serial runs on caller", inTask.get());
+	}
+
+	@Test
+	public final void testInTaskOnForkedThread() {
+		try (TaskScope<Boolean> scope = new TaskScope<Boolean>(executor, e -> false)) {
+			scope.fork(TaskScope::isInTask);
+			assertEquals(Arrays.asList(true), scope.join());
+		}
+		assertFalse(TaskScope.isInTask());
+	}
+
+}
@@ -0,0 +1,61 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestJTokenBucket {
+
+	@Test
+	public final void testBurstIsAvailableAtOnce() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(0.001, 3);
+		assertTrue(bucket.tryAcquire(0));
+		assertTrue(bucket.tryAcquire(0));
+		assertTrue(bucket.tryAcquire(0));
+		assertFalse("burst used, refill far away", bucket.tryAcquire(0));
+	}
+
+	@Test
+	public final void testWaitsForRefill() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(100, 1);
+		assertTrue(bucket.tryAcquire(0));
+		long start = System.nanoTime();
+		assertTrue(bucket.tryAcquire(1000));
+		long waitedMs = (System.nanoTime() - start) / 1_000_000;
+		assertTrue("one token at 100/s is about 10 ms, waited " + waitedMs, waitedMs >= 5 && waitedMs < 500);
+	}
+
+	@Test
+	public final void testGivesUpBeforeDeadline() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1, 1);
+		assertTrue(bucket.tryAcquire(0));
+		long start = System.nanoTime();
+		assertFalse(bucket.tryAcquire(50));
+		assertTrue("no sleep past deadline", (System.nanoTime() - start) / 1_000_000 < 50);
+	}
+
+	@Test
+	public final void testRefillIsCappedAtBurst() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1000, 2);
+		Thread.sleep(20);
+		assertEquals(2, bucket.getAvailableTokens(), 0.001);
+	}
+
+	@Test
+	public final void testBurstBelowOneIsOne() {
+		assertEquals(1, new TokenBucket(1, 0).getAvailableTokens(), 0.001);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testZeroRateIsRejected() {
+		new TokenBucket(0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testNegativeRateIsRejected() {
+		new TokenBucket(-1, 1);
+	}
+
+}
@@ -0,0 +1,173 @@
+package no.systema.altinn.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import no.systema.altinn.entities.FileReadyEvent;
+
+public class TestJZipArchiveStorage {
+
+	private ZipArchiveStorage storage;
+	private FileReadyLog fileReadyLog;
+	private Path root;
+	private Path workDir;
+	private String aipath;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("zipstorage");
+		aipath = ZipArchiveStorage.PREFIX + root + "/";
+		workDir = Files.createTempDirectory("zipstorage-work");
+		fileReadyLog = new FileReadyLog();
+		fileReadyLog.workDir = workDir.toString();
+		fileReadyLog.memory = 100;
+		fileReadyLog.maxBytes = 1024 * 1024;
+		fileReadyLog.init();
+		storage = new ZipArchiveStorage();
+		storage.fsyncProperty = "none";
+		storage.fileReadyLog = fileReadyLog;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		storage.shutdown();
+		fileReadyLog.close();
+		for (Path dir : new Path[] { root, workDir }) {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public final void testSealedOnFlush() throws IOException {
+		CompletableFuture<Long> a = store(spool("a"), "a.xml", "sha-a");
+		store(spool("b"), "b.pdf", null);
+		assertEquals("no event before seal", 0, fileReadyLog.getSeq());
+		assertFalse("not done before seal", a.isDone());
+		storage.flush(aipath);
+		assertEquals(Long.valueOf(1), a.join());
+
+		assertEquals(Collections.singletonList(archive(1).getFileName().toString()), list());
+		List<FileReadyEvent> events = fileReadyLog.after(0, null, 10);
+		assertEquals(2, events.size());
+		assertEquals(archive(1).toString(), events.get(0).getPath());
+		assertEquals("a.xml", events.get(0).getFileName());
+		assertEquals("sha-a", events.get(0).getSha256());
+		assertEquals(1, events.get(1).getBytes());
+		try (ZipFile zip = new ZipFile(archive(1).toFile())) {
+			assertEquals(2, zip.size());
+			assertEquals("sha256:sha-a", zip.getEntry("a.xml").getComment());
+		}
+	}
+
+	@Test
+	public final void testSameNameIsSkipped() throws IOException {
+		store(spool("a"), "a.xml", null);
+		CompletableFuture<Long> again = store(spool("a"), "a.xml", null);
+		assertFalse(again.isDone());
+		storage.flush(aipath);
+		assertEquals("done with the stored entry", Long.valueOf(1), again.join());
+		try (ZipFile zip = new ZipFile(archive(1).toFile())) {
+			assertEquals(1, zip.size());
+		}
+	}
+
+	@Test
+	public final void testFailedEntrySealsCompletedEntries() throws IOException {
+		CompletableFuture<Long> a = store(spool("a"), "a.xml", "sha-a");
+		CompletableFuture<Long> b = store(spool("b"), "b.pdf", "sha-b");
+		try {
+			store(root.resolve("missing.spool"), "c.pdf", null);
+			fail("store of missing spool file should fail");
+		} catch (IOException e) {
+			// expected, journaled by caller
+		}
+		assertTrue("sealed at once", Files.exists(archive(1)));
+		assertTrue(a.isDone() && b.isDone());
+		assertFalse(a.isCompletedExceptionally() || b.isCompletedExceptionally());
+		assertEquals("events for completed entries", 2, fileReadyLog.getSeq());
+		try (ZipFile zip = new ZipFile(archive(1).toFile())) {
+			List<String> names = new ArrayList<String>();
+			for (ZipEntry entry : Collections.list(zip.entries())) {
+				names.add(entry.getName());
+			}
+			assertEquals(2, names.size());
+			assertFalse(names.contains("c.pdf"));
+			assertEquals("sha256:sha-b", zip.getEntry("b.pdf").getComment());
+			assertEquals("b", new String(readAll(zip, "b.pdf"), StandardCharsets.US_ASCII));
+		}
+
+		store(spool("c"), "c.pdf", null);
+		storage.flush(aipath);
+		assertTrue("retry goes to next archive", Files.exists(archive(2)));
+		assertEquals("no parts left", 2, list().size());
+	}
+
+	@Test
+	public final void testFailedFirstEntryDiscardsArchive() throws IOException {
+		try {
+			store(root.resolve("missing.spool"), "c.pdf", null);
+			fail("store of missing spool file should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(list().isEmpty());
+	}
+
+	private CompletableFuture<Long> store(Path spool, String fileName, String sha256) throws IOException {
+		CompletableFuture<Long> done = new CompletableFuture<Long>();
+		storage.store(spool, aipath, fileName, sha256, "810514442", "m1", done);
+		return done;
+	}
+
+	private Path spool(String content) throws IOException {
+		Path spool = Files.createTempFile(root, "attachment", ".spool");
+		return Files.write(spool, content.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private Path archive(int n) {
+		return root.resolve(LocalDate.now() + "-" + n + ".zip");
+	}
+
+	private List<String> list() throws IOException {
+		List<String> names = new ArrayList<String>();
+		try (Stream<Path> files = Files.list(root)) {
+			files.map(file -> file.getFileName().toString()).filter(name -> !name.endsWith(".spool")).sorted().forEach(names::add);
+		}
+		return names;
+	}
+
+	private byte[] readAll(ZipFile zip, String name) throws IOException {
+		byte[] bytes = new byte[(int) zip.getEntry(name).getSize()];
+		try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+			int offset = 0;
+			while (offset < bytes.length) {
+				offset += in.read(bytes, offset, bytes.length - offset);
+			}
+		}
+		return bytes;
+	}
+
+}